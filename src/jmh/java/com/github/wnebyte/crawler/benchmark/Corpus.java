@@ -0,0 +1,75 @@
+package com.github.wnebyte.crawler.benchmark;
+
+import com.github.wnebyte.crawler.util.UrlView;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class loads the pages of the fixture corpus, located in <code>src/jmh/resources/corpus</code>.
+ * <p>
+ * The pages are shaped like typical pages of a news site: an article, a listing of teasers with
+ * thumbnails, and a gallery of responsive images.
+ */
+final class Corpus {
+
+    // the url the pages are parsed as having been fetched from
+    static final String BASE_URI = "https://www.example.com/news/2020/";
+
+    // the domain name of the base uri
+    static final String DOMAIN_NAME = "example.com";
+
+    private Corpus() {}
+
+    /**
+     * Returns the html of the page with the specified <code>name</code>.
+     * @param name the name of the page, such as <code>article.html</code>.
+     * @return the html.
+     */
+    static String load(final String name) {
+        try (InputStream in = Corpus.class.getResourceAsStream("/corpus/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException(
+                        "no page named " + name + " in the corpus"
+                );
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the page with the specified <code>name</code>, parsed into a document.
+     * @param name the name of the page.
+     * @return the document.
+     */
+    static Document parse(final String name) {
+        return Jsoup.parse(load(name), BASE_URI);
+    }
+
+    /**
+     * Returns the absolute urls of every anchor tag of the specified pages, in document order.
+     * @param names the names of the pages.
+     * @return the urls.
+     */
+    static String[] urls(final String... names) {
+        List<String> urls = new ArrayList<>();
+        UrlView view = new UrlView();
+        for (String name : names) {
+            for (Element anchorTag : parse(name).select("a[href]")) {
+                String absUrl = anchorTag.absUrl("href");
+                if (view.parse(absUrl)) {
+                    urls.add(absUrl);
+                }
+            }
+        }
+        return urls.toArray(new String[0]);
+    }
+}
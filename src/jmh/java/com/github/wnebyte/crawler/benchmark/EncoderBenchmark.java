@@ -0,0 +1,53 @@
+package com.github.wnebyte.crawler.benchmark;
+
+import com.github.wnebyte.crawler.DigestEncoder;
+import com.github.wnebyte.crawler.Encoder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of encoding the urls linked to by the corpus into file names.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncoderBenchmark {
+
+    // the # of urls encoded per invocation, so that the reported time is per url
+    private static final int BATCH = 1024;
+
+    private final Encoder<String> digest = new DigestEncoder();
+
+    // the encoder used before DigestEncoder became the default
+    private final Encoder<String> base64 = value -> Base64.getUrlEncoder().encodeToString(value.getBytes());
+
+    private String[] urls;
+
+    @Setup
+    public void setup() {
+        urls = Corpus.urls("article.html", "listing.html", "gallery.html");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void digest(final Blackhole bh) {
+        encode(digest, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void base64(final Blackhole bh) {
+        encode(base64, bh);
+    }
+
+    private void encode(final Encoder<String> encoder, final Blackhole bh) {
+        for (int i = 0; i < BATCH; i++) {
+            bh.consume(encoder.encode(urls[i % urls.length]));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.wnebyte.crawler.benchmark;
+
+import com.github.wnebyte.crawler.struct.Node;
+import org.openjdk.jmh.annotations.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the cost of traversing a sitemap-like tree of urls, sequentially and in parallel,
+ * and of computing the depth of each of its nodes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int nodes;
+
+    private Node<String> root;
+
+    /*
+    attaches every node to a random earlier node, which yields a tree that is wide near the root and
+    a few dozen nodes deep
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(0L);
+        List<Node<String>> list = new ArrayList<>(nodes);
+        root = new Node<>(Corpus.BASE_URI);
+        list.add(root);
+        for (int i = 1; i < nodes; i++) {
+            Node<String> node = new Node<>(Corpus.BASE_URI + i);
+            list.get(random.nextInt(list.size())).addChild(node);
+            list.add(node);
+        }
+    }
+
+    @Benchmark
+    public long consume() {
+        LongAdder length = new LongAdder();
+        root.consume(node -> length.add(node.getValue().length()));
+        return length.sum();
+    }
+
+    @Benchmark
+    public long consumeParallel() {
+        LongAdder length = new LongAdder();
+        root.consumeParallel(node -> length.add(node.getValue().length()));
+        return length.sum();
+    }
+
+    @Benchmark
+    public long parallelStream() {
+        return root.parallelStream().mapToLong(node -> node.getValue().length()).sum();
+    }
+
+    @Benchmark
+    public int leafNodes() {
+        return root.leafNodes().size();
+    }
+
+    @Benchmark
+    public long depths() {
+        return root.stream().mapToLong(Node::getDepth).sum();
+    }
+}
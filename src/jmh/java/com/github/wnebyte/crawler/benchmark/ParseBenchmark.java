@@ -0,0 +1,49 @@
+package com.github.wnebyte.crawler.benchmark;
+
+import com.github.wnebyte.crawler.LinkScanner;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of parsing the html of a page into a document, and of scanning its bytes for the urls
+ * of its anchor tags instead, as a crawler does when only discovering urls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"article.html", "listing.html", "gallery.html"})
+    private String page;
+
+    private String html;
+
+    private byte[] bytes;
+
+    // the # of urls scanned, so that their consumption is not optimized away
+    private int urls;
+
+    @Setup
+    public void setup() {
+        html = Corpus.load(page);
+        bytes = html.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Document parse() {
+        return Jsoup.parse(html, Corpus.BASE_URI);
+    }
+
+    @Benchmark
+    public int scan() {
+        LinkScanner scanner = new LinkScanner(Corpus.BASE_URI, url -> urls++);
+        scanner.scan(bytes, 0, bytes.length);
+        return urls;
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.wnebyte.crawler.benchmark;
+
+import com.github.wnebyte.crawler.AbstractHtmlCrawler;
+import com.github.wnebyte.crawler.DigestEncoder;
+import com.github.wnebyte.crawler.DocumentRewriter;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of rewriting a parsed document with the {@link DocumentRewriter} of the crawler of
+ * <code>CrawlerManager</code>, minus the marking of urls and the requesting of assets, which are left to a
+ * listener that ignores them.
+ * <p>
+ * {@link #work()} processes the document in the single traversal of {@link AbstractHtmlCrawler#work()},
+ * while the other benchmarks select the elements of each step with a query of their own, as crawlers
+ * did before, and are kept as a baseline. Every invocation processes a fresh copy of the document,
+ * as processing modifies it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessBenchmark {
+
+    // the path from the file of a document to the html directory, for the default encoder
+    private static final String ROOT_HREF = "../../";
+
+    private static final String CSS_HREF = "../css/";
+
+    private static final String IMAGE_HREF = "../images/";
+
+    private static final DocumentRewriter.Listener IGNORED = new DocumentRewriter.Listener() {
+        @Override
+        public void onLink(final String absUrl, final boolean followed) {
+        }
+
+        @Override
+        public void onStylesheet(final String absUrl, final String fileName) {
+        }
+
+        @Override
+        public void onImage(final Element image, final String absUrl, final String fileName) {
+        }
+    };
+
+    @Param({"article.html", "listing.html", "gallery.html"})
+    private String page;
+
+    private final DocumentRewriter rewriter = new DocumentRewriter(new DigestEncoder(), Corpus.DOMAIN_NAME,
+            ROOT_HREF, CSS_HREF, IMAGE_HREF, true, IGNORED);
+
+    private final Crawler crawler = new Crawler();
+
+    private Document template;
+
+    private Document document;
+
+    @Setup(Level.Trial)
+    public void parse() {
+        template = Corpus.parse(page);
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        document = template.clone();
+    }
+
+    @Benchmark
+    public Document anchorTags() {
+        processAnchorTags();
+        return document;
+    }
+
+    @Benchmark
+    public Document stylesheets() {
+        processStylesheets();
+        return document;
+    }
+
+    @Benchmark
+    public Document images() {
+        processImages();
+        return document;
+    }
+
+    @Benchmark
+    public Document scripts() {
+        processScripts();
+        return document;
+    }
+
+    @Benchmark
+    public Document select() {
+        processAnchorTags();
+        processStylesheets();
+        processImages();
+        processScripts();
+        return document;
+    }
+
+    @Benchmark
+    public Document work() {
+        crawler.process();
+        return document;
+    }
+
+    private void processAnchorTags() {
+        for (Element anchorTag : document.select("a[href]")) {
+            if (!rewriter.rewriteAnchorTag(anchorTag)) {
+                anchorTag.remove();
+            }
+        }
+    }
+
+    private void processStylesheets() {
+        for (Element stylesheet : document.select("link[rel=stylesheet]")) {
+            if (!rewriter.rewriteStylesheet(stylesheet)) {
+                stylesheet.remove();
+            }
+        }
+    }
+
+    private void processImages() {
+        for (Element image : document.select("img")) {
+            if (!rewriter.rewriteImage(image)) {
+                image.remove();
+            }
+        }
+    }
+
+    private void processScripts() {
+        for (Element script : document.select("script")) {
+            if (!rewriter.rewriteScript(script)) {
+                script.remove();
+            }
+        }
+    }
+
+    /*
+    processes the document of the benchmark with the rewriter, one element at a time, as the crawler of
+    CrawlerManager does
+     */
+    private final class Crawler extends AbstractHtmlCrawler {
+
+        private void process() {
+            work();
+        }
+
+        @Override
+        protected Document getDocument() {
+            return document;
+        }
+
+        @Override
+        protected boolean processAnchorTag(final Element anchorTag) {
+            return rewriter.rewriteAnchorTag(anchorTag);
+        }
+
+        @Override
+        protected boolean processStylesheet(final Element stylesheet) {
+            return rewriter.rewriteStylesheet(stylesheet);
+        }
+
+        @Override
+        protected boolean processImage(final Element image) {
+            return rewriter.rewriteImage(image);
+        }
+
+        @Override
+        protected boolean processScript(final Element script) {
+            return rewriter.rewriteScript(script);
+        }
+
+        @Override
+        protected void connect() {
+        }
+
+        @Override
+        protected void write() {
+        }
+
+        @Override
+        protected void log() {
+        }
+
+        @Override
+        protected void cleanup() {
+        }
+    }
+}
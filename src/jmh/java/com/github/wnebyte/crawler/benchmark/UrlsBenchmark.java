@@ -0,0 +1,69 @@
+package com.github.wnebyte.crawler.benchmark;
+
+import com.github.wnebyte.crawler.util.UrlView;
+import com.github.wnebyte.crawler.util.Urls;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the url helpers applied to every url linked to by a document.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlsBenchmark {
+
+    // the # of urls processed per invocation, so that the reported time is per url
+    private static final int BATCH = 1024;
+
+    private final UrlView view = new UrlView();
+
+    private String[] urls;
+
+    @Setup
+    public void setup() {
+        urls = Corpus.urls("article.html", "listing.html", "gallery.html");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void isHttpOrHttps(final Blackhole bh) {
+        for (int i = 0; i < BATCH; i++) {
+            bh.consume(Urls.isHttpOrHttps(urls[i % urls.length]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void getDomainName(final Blackhole bh) {
+        for (int i = 0; i < BATCH; i++) {
+            bh.consume(Urls.getDomainName(urls[i % urls.length]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void canonicalize(final Blackhole bh) {
+        for (int i = 0; i < BATCH; i++) {
+            bh.consume(Urls.canonicalize(urls[i % urls.length]));
+        }
+    }
+
+    /*
+    the combination a crawler applies to each anchor tag, reusing a single view
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void view(final Blackhole bh) {
+        for (int i = 0; i < BATCH; i++) {
+            if (view.parse(urls[i % urls.length]) && view.isHttpOrHttps()) {
+                bh.consume(view.isInDomain(Corpus.DOMAIN_NAME));
+                bh.consume(view.canonicalize());
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.wnebyte.crawler.benchmark;
+
+import com.github.wnebyte.crawler.DocumentWriter;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of serializing a document, both into a channel that discards its bytes, to isolate
+ * the cost of encoding, and into a file, as a crawler writes it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+
+    @Param({"article.html", "listing.html", "gallery.html"})
+    private String page;
+
+    private final WritableByteChannel sink = new Sink();
+
+    private Document document;
+
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        document = Corpus.parse(page);
+        file = File.createTempFile("write-benchmark-", ".html");
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long channel() throws IOException {
+        return DocumentWriter.write(document, sink);
+    }
+
+    @Benchmark
+    public long file() throws IOException {
+        return DocumentWriter.write(document, file);
+    }
+
+    @Benchmark
+    public String outerHtml() {
+        return document.outerHtml();
+    }
+
+    /*
+    consumes every byte written to it
+     */
+    private static final class Sink implements WritableByteChannel {
+
+        @Override
+        public int write(final ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
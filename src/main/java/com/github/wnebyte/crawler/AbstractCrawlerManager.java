@@ -2,13 +2,16 @@ package com.github.wnebyte.crawler;
 
 public abstract class AbstractCrawlerManager {
 
-    private void start() {
-        scheduleCallback();
-        startCrawler();
-        await();
-        downloadStylesheets();
-        downloadImages();
-        cleanup();
+    public final void start() {
+        try {
+            scheduleCallback();
+            startCrawler();
+            await();
+            downloadStylesheets();
+            downloadImages();
+        } finally {
+            cleanup();
+        }
     }
 
     protected abstract void scheduleCallback();
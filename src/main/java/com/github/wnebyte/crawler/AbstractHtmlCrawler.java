@@ -1,20 +1,135 @@
 package com.github.wnebyte.crawler;
 
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 public abstract class AbstractHtmlCrawler extends AbstractCrawler {
 
+    /**
+     * Processes the document in a single traversal, dispatching each anchor tag, stylesheet, image and
+     * script to its process method, and every element to the handlers registered for its tag name.
+     * Elements that are removed are not descended into, and the traversal is stopped once a handler throws.
+     */
     @Override
     protected final void work() {
-        processAnchorTags();
-        processStylesheets();
-        processImages();
-        processScripts();
+        Document document = getDocument();
+        if (document == null) { return; }
+        NodeTraversor.filter(new Dispatcher(getElementHandlers()), document);
+    }
+
+    /**
+     * @return the document to process, or <code>null</code> if there is none.
+     */
+    protected abstract Document getDocument();
+
+    /**
+     * @return the handlers to call for elements, by tag name.
+     */
+    protected Map<String, List<ElementHandler>> getElementHandlers() {
+        return Collections.emptyMap();
     }
 
-    protected abstract void processAnchorTags();
+    /**
+     * Processes the failure of a handler, after which the document is no longer traversed.
+     * The exception is rethrown, unless overridden.
+     * @param element the element that the handler was called for.
+     * @param e the exception thrown by the handler.
+     */
+    protected void processHandlerFailure(final Element element, final RuntimeException e) {
+        throw e;
+    }
+
+    /**
+     * Processes an <code>a</code> element with a <code>href</code> attribute.
+     * @param anchorTag the element.
+     * @return <code>true</code> if the element should be kept, otherwise <code>false</code>.
+     */
+    protected abstract boolean processAnchorTag(final Element anchorTag);
+
+    /**
+     * Processes a <code>link</code> element with a <code>rel</code> attribute of <code>stylesheet</code>.
+     * @param stylesheet the element.
+     * @return <code>true</code> if the element should be kept, otherwise <code>false</code>.
+     */
+    protected abstract boolean processStylesheet(final Element stylesheet);
 
-    protected abstract void processStylesheets();
+    /**
+     * Processes an <code>img</code> element.
+     * @param image the element.
+     * @return <code>true</code> if the element should be kept, otherwise <code>false</code>.
+     */
+    protected abstract boolean processImage(final Element image);
 
-    protected abstract void processImages();
+    /**
+     * Processes a <code>script</code> element.
+     * @param script the element.
+     * @return <code>true</code> if the element should be kept, otherwise <code>false</code>.
+     */
+    protected abstract boolean processScript(final Element script);
 
-    protected abstract void processScripts();
-}
\ No newline at end of file
+    /*
+    removes an element by returning REMOVE from head, which the traversal does once it has moved past it
+     */
+    private final class Dispatcher implements NodeFilter {
+
+        private final Map<String, List<ElementHandler>> handlers;
+
+        private Dispatcher(final Map<String, List<ElementHandler>> handlers) {
+            this.handlers = handlers;
+        }
+
+        @Override
+        public FilterResult head(final Node node, final int depth) {
+            if (!(node instanceof Element)) {
+                return FilterResult.CONTINUE;
+            }
+            Element element = (Element) node;
+            String tagName = element.normalName();
+            if (!process(tagName, element)) {
+                return FilterResult.REMOVE;
+            }
+            List<ElementHandler> list = handlers.get(tagName);
+            if (list != null) {
+                for (ElementHandler handler : list) {
+                    boolean keep;
+                    try {
+                        keep = handler.handle(element);
+                    } catch (RuntimeException e) {
+                        processHandlerFailure(element, e);
+                        return FilterResult.STOP;
+                    }
+                    if (!keep) {
+                        return FilterResult.REMOVE;
+                    }
+                }
+            }
+            return FilterResult.CONTINUE;
+        }
+
+        @Override
+        public FilterResult tail(final Node node, final int depth) {
+            return FilterResult.CONTINUE;
+        }
+
+        private boolean process(final String tagName, final Element element) {
+            switch (tagName) {
+                case "a":
+                    return !element.hasAttr("href") || processAnchorTag(element);
+                case "link":
+                    return !element.attr("rel").trim().equalsIgnoreCase("stylesheet") || processStylesheet(element);
+                case "img":
+                    return processImage(element);
+                case "script":
+                    return processScript(element);
+                default:
+                    return true;
+            }
+        }
+    }
+}
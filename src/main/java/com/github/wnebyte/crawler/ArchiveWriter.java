@@ -0,0 +1,293 @@
+package com.github.wnebyte.crawler;
+
+import org.jsoup.nodes.Document;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class appends documents to rolling archive segment files, rather than writing one file per url.
+ * <p>
+ * Each document is written as a WARC <code>response</code> record, holding the url, the headers of the
+ * response and the document, and compressed as a gzip member of its own, so that any record can be
+ * decompressed independently, given its offset. A new segment is started once a segment exceeds
+ * <code>segmentSize</code> bytes, and every run of the crawler starts a new segment.
+ * <p>
+ * An index of <code>url segment offset length</code> lines is appended to, and flushed, as each record is
+ * appended, so that the index locates every appended record, even if the writer is never closed.
+ * <p>
+ * Records are serialized and compressed by the calling thread, and only appended to the segment while
+ * holding the lock. The document and the compressed record are written to buffers that are pooled and
+ * reused between records, and the record is appended to the segment straight from its buffer.
+ * Instances are safe for use by multiple concurrent crawler threads.
+ */
+public class ArchiveWriter implements Closeable {
+
+    private static final String INDEX = "archive.index";
+
+    private static final String PREFIX = "archive-";
+
+    private static final String SUFFIX = ".warc.gz";
+
+    // response headers that no longer describe the archived document
+    private static final Set<String> EXCLUDED_HEADERS =
+            Set.of("content-length", "content-type", "content-encoding", "transfer-encoding");
+
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    // buffers that have grown beyond this size are not returned to the pool
+    private static final int MAX_POOLED_SIZE = 1024 * 1024;
+
+    // buffers that are not currently in use by a writer
+    private static final Queue<Buffer> pool = new ConcurrentLinkedQueue<>();
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    private final Path directory;
+
+    private final long segmentSize;
+
+    // the # of the current segment
+    private int segment;
+
+    // null until the first record is written
+    private FileChannel channel;
+
+    // null until opened
+    private BufferedWriter index;
+
+    // whether close() has been called, after which records are rejected
+    private boolean closed;
+
+    /**
+     * Constructs a new instance that appends to segment files in the specified <code>directory</code>.
+     * @param directory the directory.
+     * @param segmentSize the size in bytes after which a new segment is started.
+     */
+    public ArchiveWriter(final Path directory, final long segmentSize) {
+        if (directory == null) {
+            throw new IllegalArgumentException(
+                    "directory must be non null"
+            );
+        }
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException(
+                    "segmentSize must be greater than 0"
+            );
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Creates the directory, and opens the index for appending. Records are appended to a new segment,
+     * following the segments of previous runs.
+     * @throws IOException if the directory could not be written to, or the writer has been closed.
+     */
+    public synchronized void open() throws IOException {
+        ensureOpen();
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    segment = Math.max(segment, Integer.parseInt(
+                            name.substring(PREFIX.length(), name.length() - SUFFIX.length())) + 1);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        index = Files.newBufferedWriter(directory.resolve(INDEX), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Appends the specified <code>document</code> as a record of the response of the specified
+     * <code>url</code>.
+     * @param url the url.
+     * @param statusCode the status code of the response.
+     * @param headers the headers of the response.
+     * @param document the document.
+     * @return the number of compressed bytes appended.
+     * @throws IOException if the record could not be appended, or the writer has been closed.
+     */
+    public long write(final String url, final int statusCode, final HttpHeaders headers, final Document document)
+            throws IOException {
+        Buffer body = Buffer.take();
+        Buffer record = Buffer.take();
+        try {
+            // the length of the document precedes it in the headers, so it can not be compressed as it is written
+            DocumentWriter.write(document, body);
+            byte[] http = getHttpHeader(statusCode, headers, body.size());
+            try (GZIPOutputStream gzip = new GZIPOutputStream(record, 8192)) {
+                gzip.write(getWarcHeader(url, http.length + body.size()));
+                gzip.write(http);
+                body.writeTo(gzip);
+                gzip.write(CRLF);
+                gzip.write(CRLF);
+            }
+            return append(url, record);
+        } finally {
+            body.release();
+            record.release();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            if (index != null) {
+                index.close();
+                index = null;
+            }
+        }
+    }
+
+    /*
+    appends the specified compressed record to the current segment, and indexes it
+     */
+    private synchronized long append(final String url, final Buffer record) throws IOException {
+        ensureOpen();
+        if ((channel == null) || (segmentSize <= channel.position())) {
+            roll();
+        }
+        long offset = channel.position();
+        ByteBuffer buffer = record.asByteBuffer();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (index != null) {
+            index.write(url + ' ' + getSegmentName(segment - 1) + ' ' + offset + ' ' + record.size());
+            index.newLine();
+            index.flush();
+        }
+        return record.size();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException(
+                    "archive writer is closed"
+            );
+        }
+    }
+
+    /*
+    closes the current segment, and starts the next one
+     */
+    private void roll() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        channel = FileChannel.open(directory.resolve(getSegmentName(segment++)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private static String getSegmentName(final int segment) {
+        return String.format(Locale.ROOT, "%s%05d%s", PREFIX, segment, SUFFIX);
+    }
+
+    private static byte[] getWarcHeader(final String url, final long contentLength) {
+        return ("WARC/1.1\r\n" +
+                "WARC-Type: response\r\n" +
+                "WARC-Record-ID: <urn:uuid:" + UUID.randomUUID() + ">\r\n" +
+                "WARC-Date: " + DateTimeFormatter.ISO_INSTANT.format(Instant.now().truncatedTo(ChronoUnit.SECONDS)) +
+                "\r\n" +
+                "WARC-Target-URI: " + url + "\r\n" +
+                "Content-Type: application/http;msgtype=response\r\n" +
+                "Content-Length: " + contentLength + "\r\n" +
+                "\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /*
+    the document is archived as UTF-8 and uncompressed, so the headers describing the body are replaced
+     */
+    private static byte[] getHttpHeader(final int statusCode, final HttpHeaders headers, final long contentLength) {
+        StringBuilder sb = new StringBuilder("HTTP/1.1 ").append(statusCode).append(" \r\n");
+        for (Map.Entry<String, List<String>> header : headers.map().entrySet()) {
+            String name = header.getKey();
+            if (name.startsWith(":") || EXCLUDED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                sb.append(name).append(": ").append(value).append("\r\n");
+            }
+        }
+        sb.append("Content-Type: text/html; charset=UTF-8\r\n");
+        sb.append("Content-Length: ").append(contentLength).append("\r\n");
+        sb.append("\r\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /*
+    a byte array output stream that can also be written to as a channel, and be read without being copied
+     */
+    private static final class Buffer extends ByteArrayOutputStream implements WritableByteChannel {
+
+        private Buffer() {
+            super(8192);
+        }
+
+        private static Buffer take() {
+            Buffer buffer = pool.poll();
+            return (buffer != null) ? buffer : new Buffer();
+        }
+
+        private void release() {
+            if (buf.length <= MAX_POOLED_SIZE) {
+                reset();
+                pool.offer(this);
+            }
+        }
+
+        private ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+        @Override
+        public int write(final ByteBuffer src) {
+            int n = src.remaining();
+            if (buf.length < count + n) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + n));
+            }
+            src.get(buf, count, n);
+            count += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.github.wnebyte.crawler;
+
+import com.github.wnebyte.crawler.struct.FingerprintSet;
+import com.github.wnebyte.crawler.struct.SeenSet;
+import com.github.wnebyte.crawler.util.Images;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class downloads the stylesheets and images referenced by crawled documents on a thread-pool
+ * of its own, so that slow assets never hold up a crawler.
+ * <p>
+ * Every asset is downloaded at most once, no matter how many documents reference it, and assets whose
+ * file already exists (from a previous crawl) are not downloaded again. An image is only kept if its leading
+ * bytes identify a supported image, whatever its url or declared content type, and its file is named with
+ * the extension of that content type. Requesting an image returns a future of its extension, so that
+ * documents can reference its file once it is known, without a crawler waiting for it.
+ * <p>
+ * Instances are safe for use by multiple concurrent crawler threads.
+ */
+public class AssetDownloader {
+
+    // the extensions of the files of supported images
+    private static final com.github.wnebyte.crawler.util.Files.Extension[] IMAGE_EXTENSIONS = {
+            com.github.wnebyte.crawler.util.Files.Extension.PNG,
+            com.github.wnebyte.crawler.util.Files.Extension.JPG,
+            com.github.wnebyte.crawler.util.Files.Extension.GIF,
+            com.github.wnebyte.crawler.util.Files.Extension.WEBP
+    };
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    private final Fetcher fetcher;
+
+    private final ExecutorService pool;
+
+    // urls of the stylesheets that have been requested
+    private final SeenSet requestedUrls = new FingerprintSet();
+
+    // the extension of the file of each requested image, which is null if the image was not kept
+    private final Map<String, CompletableFuture<com.github.wnebyte.crawler.util.Files.Extension>> extensions =
+            new ConcurrentHashMap<>();
+
+    // # of stylesheets requested but not yet downloaded, plus one until awaited
+    private final Completion stylesheets = new Completion();
+
+    // # of images requested but not yet downloaded, plus one until awaited
+    private final Completion images = new Completion();
+
+    private final AtomicInteger assetsDownloaded = new AtomicInteger(0);
+
+    private final AtomicLong bytesDownloaded = new AtomicLong(0L);
+
+    /**
+     * Constructs a new instance.
+     * @param fetcher the fetcher to download assets with.
+     * @param nThreads the number of threads to download assets on.
+     */
+    public AssetDownloader(final Fetcher fetcher, final int nThreads) {
+        if (fetcher == null) {
+            throw new IllegalArgumentException(
+                    "fetcher must be non null"
+            );
+        }
+        if (nThreads <= 0) {
+            throw new IllegalArgumentException(
+                    "nThreads must be greater than 0"
+            );
+        }
+        this.fetcher = fetcher;
+        this.pool = new ThreadPoolExecutor(nThreads, nThreads,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        // guards against the downloads being considered done before they have been awaited
+        stylesheets.register();
+        images.register();
+    }
+
+    /**
+     * Downloads the stylesheet located at the specified <code>url</code> to the specified <code>file</code>,
+     * unless it has already been requested.
+     * @param url the url of the stylesheet.
+     * @param file the file.
+     */
+    public void downloadStylesheet(final String url, final Path file) {
+        if (!requestedUrls.add(url)) { return; }
+        execute(stylesheets, () -> {
+            try {
+                if (!Files.isRegularFile(file)) {
+                    Files.createDirectories(file.getParent());
+                    bytesDownloaded.addAndGet(fetcher.download(url, file));
+                    assetsDownloaded.incrementAndGet();
+                }
+            } catch (IOException ignored) {
+                // the fetcher has removed the partially downloaded file
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * Downloads the image located at the specified <code>url</code> to the specified <code>file</code>,
+     * followed by the extension of its content type, unless it has already been requested.
+     * Responses that are not a supported image are discarded.
+     * @param url the url of the image.
+     * @param file the file, without an extension.
+     * @return a future of the extension of the file, which is completed with <code>null</code> if the image
+     * was not kept, and is shared by every request of the url.
+     */
+    public CompletableFuture<com.github.wnebyte.crawler.util.Files.Extension> downloadImage(
+            final String url, final Path file) {
+        CompletableFuture<com.github.wnebyte.crawler.util.Files.Extension> extension = new CompletableFuture<>();
+        CompletableFuture<com.github.wnebyte.crawler.util.Files.Extension> requested =
+                extensions.putIfAbsent(url, extension);
+        if (requested != null) {
+            return requested;
+        }
+        try {
+            execute(images, () -> {
+                com.github.wnebyte.crawler.util.Files.Extension value = null;
+                try {
+                    value = find(file);
+                    if (value == null) {
+                        Files.createDirectories(file.getParent());
+                        value = Images.getExtension(fetcher.downloadImage(url, file));
+                        bytesDownloaded.addAndGet(Files.size(Images.getFile(file, value)));
+                        assetsDownloaded.incrementAndGet();
+                    }
+                } catch (IOException ignored) {
+                    // the fetcher has removed the partially downloaded file
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    extension.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            extension.complete(null);
+            throw e;
+        }
+        return extension;
+    }
+
+    /**
+     * Blocks the calling thread until every requested stylesheet has been downloaded.
+     * Must be called at most once, after which no more stylesheets may be requested.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public void awaitStylesheets() throws InterruptedException {
+        await(stylesheets);
+    }
+
+    /**
+     * Blocks the calling thread until every requested image has been downloaded.
+     * Must be called at most once, after which no more images may be requested.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public void awaitImages() throws InterruptedException {
+        await(images);
+    }
+
+    /**
+     * @return the number of assets downloaded.
+     */
+    public int getAssetsDownloaded() {
+        return assetsDownloaded.get();
+    }
+
+    /**
+     * @return the number of bytes of the assets downloaded.
+     */
+    public long getBytesDownloaded() {
+        return bytesDownloaded.get();
+    }
+
+    /**
+     * Stops the thread-pool, abandoning any downloads that have not yet started.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /*
+    runs the specified download on the thread-pool, as part of the specified downloads
+     */
+    private void execute(final Completion completion, final Runnable download) {
+        completion.register();
+        try {
+            pool.execute(() -> {
+                try {
+                    download.run();
+                } finally {
+                    completion.arrive();
+                }
+            });
+        } catch (RuntimeException e) {
+            completion.arrive();
+            throw e;
+        }
+    }
+
+    /*
+    returns the extension of the file of the image that has already been downloaded to the specified file,
+    or null if there is none
+     */
+    private static com.github.wnebyte.crawler.util.Files.Extension find(final Path file) {
+        for (com.github.wnebyte.crawler.util.Files.Extension extension : IMAGE_EXTENSIONS) {
+            if (Files.isRegularFile(Images.getFile(file, extension))) {
+                return extension;
+            }
+        }
+        return null;
+    }
+
+    private static void await(final Completion completion) throws InterruptedException {
+        completion.arrive();
+        completion.await();
+    }
+}
@@ -0,0 +1,641 @@
+package com.github.wnebyte.crawler;
+
+import com.github.wnebyte.crawler.struct.Link;
+import com.github.wnebyte.crawler.struct.SeenSet;
+import com.github.wnebyte.crawler.util.Hashes;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class persists the progress of a crawl to a directory, so that it can be resumed after the JVM
+ * running it has died.
+ * <p>
+ * Every url that is marked or crawled is appended to the buffered log of the current epoch. A compaction
+ * starts the log of the next epoch, and then merges the logs of the previous epochs into a snapshot of the
+ * seen-set, the counters and the pending urls, while the crawler threads keep appending to the new log.
+ * Pending urls are streamed from the previous snapshot and the logs into the new snapshot, and are never
+ * held in memory. A snapshot is published by atomically replacing a small file that names its epoch, so
+ * that the logs and snapshots that it replaces are only deleted once it is complete.
+ * <p>
+ * The seen-set of a snapshot is written before the log of the next epoch is started, and the logs that the
+ * snapshot is merged from are synced to disk before it is published, so that every url in the seen-set of a
+ * snapshot is either pending in the snapshot, or has already been crawled. For this to hold, a url must be
+ * added to the seen-set and logged as marked between a call to {@link #beginMark()} and
+ * {@link #endMark(long)}.
+ * <p>
+ * Instances are safe for use by multiple concurrent crawler threads.
+ */
+public class Checkpoint implements Closeable {
+
+    private static final int MAGIC = 0x43524b51;
+
+    // names the epoch of the latest snapshot, and holds its counters
+    private static final String SNAPSHOT = "checkpoint.snapshot";
+
+    private static final String LOG = "log";
+
+    private static final String SEEN = "seen";
+
+    private static final String PENDING = "pending";
+
+    private static final Pattern FILE =
+            Pattern.compile("checkpoint-(\\d+)\\.(" + LOG + "|" + SEEN + "|" + PENDING + ")");
+
+    private static final byte MARKED = 'M';
+
+    private static final byte CRAWLED = 'C';
+
+    // a url of a snapshot that has been crawled, but was marked while its seen-set was being written
+    private static final byte SEEN_ONLY = 'S';
+
+    // the epoch of no snapshot
+    private static final long NONE = -1L;
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    private final Path directory;
+
+    // excludes marking urls while a compaction starts a new log
+    private final StampedLock marking = new StampedLock();
+
+    // held while compacting, or restoring a snapshot
+    private final Object compacting = new Object();
+
+    // the epoch of the latest snapshot, guarded by compacting
+    private long generation = NONE;
+
+    // # of urls marked and crawled per depth, as restored by load
+    private int[] marked = new int[0];
+
+    private int[] crawled = new int[0];
+
+    // # of distinct urls marked and crawled, as restored by load, which exclude revisits
+    private int markedCount;
+
+    private int crawledCount;
+
+    // the epoch of the current log, guarded by this
+    private long epoch = 0L;
+
+    // the log of the current epoch, or null until opened, guarded by this
+    private DataOutputStream log;
+
+    private FileOutputStream logFile;
+
+    /**
+     * Constructs a new instance that persists to the specified <code>directory</code>.
+     * @param directory the directory.
+     */
+    public Checkpoint(final Path directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException(
+                    "directory must be non null"
+            );
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * @return <code>true</code> if a previous crawl has persisted a snapshot to the directory,
+     * otherwise <code>false</code>.
+     */
+    public boolean exists() {
+        return Files.isRegularFile(directory.resolve(SNAPSHOT));
+    }
+
+    /**
+     * Restores the latest snapshot and replays the logs that follow it.
+     * The restored seen-set is added to the specified <code>seenSet</code>, and every url that was marked
+     * but not crawled is passed to the specified <code>pending</code> consumer.
+     * @param seenSet the set to restore the seen-set into.
+     * @param pending the consumer of the pending urls.
+     * @throws IOException if the snapshot could not be read.
+     */
+    public void load(final SeenSet seenSet, final Consumer<Link> pending) throws IOException {
+        synchronized (compacting) {
+            try (DataInputStream in = newInput(directory.resolve(SNAPSHOT))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException(
+                            "not a checkpoint snapshot"
+                    );
+                }
+                generation = in.readLong();
+                marked = readInts(in);
+                crawled = readInts(in);
+                markedCount = in.readInt();
+                crawledCount = in.readInt();
+            }
+            try (DataInputStream in = newInput(file(generation, SEEN))) {
+                seenSet.readFrom(in);
+            }
+            List<Path> logs = logs(generation, Long.MAX_VALUE);
+            Counts counts = new Counts();
+            for (Path log : logs) {
+                replay(log, (type, link) -> {
+                    if (type == MARKED) {
+                        seenSet.addAtDepth(link.getUrl(), link.getDepth());
+                        marked = increment(marked, link.getDepth());
+                        markedCount += link.isRevisit() ? 0 : 1;
+                    } else {
+                        crawled = increment(crawled, link.getDepth());
+                        crawledCount += link.isRevisit() ? 0 : 1;
+                    }
+                    counts.add(link, (type == MARKED) ? 1 : -1);
+                });
+            }
+            merge(generation, logs, counts, true, (type, link) -> {
+                seenSet.addAtDepth(link.getUrl(), link.getDepth());
+                if (type == MARKED) {
+                    pending.accept(link);
+                }
+            });
+            synchronized (this) {
+                // the snapshot's own files are never rewritten, as the next compaction seals a later epoch
+                epoch = logs.isEmpty() ? generation + 1 : epoch(logs.get(logs.size() - 1));
+            }
+        }
+    }
+
+    /**
+     * Starts a new log, following a snapshot of the current state.
+     * Unless a snapshot has been restored, every file of a previous crawl is deleted first.
+     * @param seenSet the seen-set of the crawl.
+     * @throws IOException if the directory could not be written to.
+     */
+    public void open(final SeenSet seenSet) throws IOException {
+        synchronized (compacting) {
+            Files.createDirectories(directory);
+            if (generation == NONE) {
+                Files.deleteIfExists(directory.resolve(SNAPSHOT));
+                delete(Long.MAX_VALUE);
+            }
+            compact(seenSet);
+        }
+    }
+
+    /**
+     * Starts a section in which urls are added to the seen-set and logged as marked, which a compaction
+     * does not start a new log during.
+     * @return the stamp to end the section with.
+     */
+    public long beginMark() {
+        return marking.readLock();
+    }
+
+    /**
+     * Ends the section started by {@link #beginMark()}.
+     * @param stamp the stamp returned by {@link #beginMark()}.
+     */
+    public void endMark(final long stamp) {
+        marking.unlockRead(stamp);
+    }
+
+    /**
+     * Appends the specified newly marked <code>link</code> to the log.
+     * @param link the link.
+     * @throws IOException if the log could not be written to.
+     */
+    public synchronized void marked(final Link link) throws IOException {
+        append(MARKED, link);
+    }
+
+    /**
+     * Appends the specified crawled <code>link</code> to the log.
+     * @param link the link.
+     * @throws IOException if the log could not be written to.
+     */
+    public synchronized void crawled(final Link link) throws IOException {
+        append(CRAWLED, link);
+    }
+
+    /**
+     * Writes every buffered record of the log to the filesystem.
+     * @throws IOException if the log could not be written to.
+     */
+    public synchronized void flush() throws IOException {
+        if (log != null) {
+            log.flush();
+        }
+    }
+
+    /**
+     * Starts the log of the next epoch, and merges the previous snapshot and the logs that follow it into a
+     * new snapshot. Urls can be marked and crawled concurrently, except while the new log is started.
+     * @param seenSet the seen-set of the crawl.
+     * @throws IOException if the directory could not be written to.
+     */
+    public void compact(final SeenSet seenSet) throws IOException {
+        synchronized (compacting) {
+            long epoch;
+            synchronized (this) {
+                epoch = this.epoch;
+            }
+            // every url in the seen-set is logged in this epoch or before, as the next log is started later
+            write(file(epoch, SEEN), seenSet::writeTo);
+            Path next = file(epoch + 1, LOG);
+            FileOutputStream file = new FileOutputStream(next.toFile());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+            out.writeInt(MAGIC);
+            out.writeLong(epoch + 1);
+            FileOutputStream sealed;
+            long stamp = marking.writeLock();
+            try {
+                synchronized (this) {
+                    if (log != null) {
+                        log.flush();
+                    }
+                    sealed = logFile;
+                    log = out;
+                    logFile = file;
+                    this.epoch = epoch + 1;
+                }
+            } finally {
+                marking.unlockWrite(stamp);
+            }
+            if (sealed != null) {
+                try {
+                    sealed.getFD().sync();
+                } finally {
+                    sealed.close();
+                }
+            }
+            int[] marked = new int[0];
+            int[] crawled = new int[0];
+            int[] totals = new int[2];
+            if (generation != NONE) {
+                try (DataInputStream in = newInput(directory.resolve(SNAPSHOT))) {
+                    in.readInt();
+                    in.readLong();
+                    marked = readInts(in);
+                    crawled = readInts(in);
+                    totals[0] = in.readInt();
+                    totals[1] = in.readInt();
+                }
+            }
+            List<Path> logs = logs(generation, epoch);
+            Counts counts = new Counts();
+            int[][] counters = { marked, crawled };
+            for (Path log : logs) {
+                replay(log, (type, link) -> {
+                    int i = (type == MARKED) ? 0 : 1;
+                    counters[i] = increment(counters[i], link.getDepth());
+                    totals[i] += link.isRevisit() ? 0 : 1;
+                    counts.add(link, (type == MARKED) ? 1 : -1);
+                });
+            }
+            write(file(epoch, PENDING), pending -> merge(generation, logs, counts, false, (type, link) -> {
+                write(pending, type, link);
+            }));
+            Path tmp = directory.resolve(SNAPSHOT + ".tmp");
+            write(tmp, snapshot -> {
+                snapshot.writeInt(MAGIC);
+                snapshot.writeLong(epoch);
+                writeInts(snapshot, counters[0]);
+                writeInts(snapshot, counters[1]);
+                snapshot.writeInt(totals[0]);
+                snapshot.writeInt(totals[1]);
+            });
+            Files.move(tmp, directory.resolve(SNAPSHOT),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            generation = epoch;
+            delete(generation);
+        }
+    }
+
+    /**
+     * @return the number of urls marked per depth, as restored by {@link #load(SeenSet, Consumer)}.
+     */
+    public int[] getMarked() {
+        synchronized (compacting) {
+            return marked.clone();
+        }
+    }
+
+    /**
+     * @return the number of urls crawled per depth, as restored by {@link #load(SeenSet, Consumer)}.
+     */
+    public int[] getCrawled() {
+        synchronized (compacting) {
+            return crawled.clone();
+        }
+    }
+
+    /**
+     * Unlike the sum of {@link #getMarked()}, a url that was marked again at a lower depth is counted once.
+     * @return the number of distinct urls marked, as restored by {@link #load(SeenSet, Consumer)}.
+     */
+    public int getMarkedCount() {
+        synchronized (compacting) {
+            return markedCount;
+        }
+    }
+
+    /**
+     * Unlike the sum of {@link #getCrawled()}, a url that was crawled again from a lower depth is counted once.
+     * @return the number of distinct urls crawled, as restored by {@link #load(SeenSet, Consumer)}.
+     */
+    public int getCrawledCount() {
+        synchronized (compacting) {
+            return crawledCount;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+            logFile = null;
+        }
+    }
+
+    private void append(final byte type, final Link link) throws IOException {
+        if (log == null) { return; }
+        write(log, type, link);
+    }
+
+    /*
+    passes the pending urls of the snapshot of the specified generation, followed by those of the specified
+    logs, to the specified sink as marked; every url counted by the specified counts is passed as many times
+    as it was marked rather than crawled. The other urls marked in the last of the logs are passed as seen
+    only, as they may have been marked after the seen-set was written, and so are the other urls of the
+    snapshot if the specified seen is true
+     */
+    private void merge(final long generation, final List<Path> logs, final Counts counts, final boolean seen,
+                       final Replay sink) throws IOException {
+        if (generation != NONE) {
+            try (DataInputStream in = newInput(file(generation, PENDING))) {
+                while (true) {
+                    byte type;
+                    try {
+                        type = in.readByte();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    Link link = readLink(in);
+                    if ((type != MARKED) || (counts.get(link) < 0)) {
+                        if (type == MARKED) {
+                            // crawled in a later epoch
+                            counts.add(link, 1);
+                        }
+                        if (seen) {
+                            sink.accept(SEEN_ONLY, link);
+                        }
+                    } else {
+                        sink.accept(MARKED, link);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < logs.size(); i++) {
+            boolean last = (i == logs.size() - 1);
+            replay(logs.get(i), (type, link) -> {
+                if (type != MARKED) { return; }
+                if (0 < counts.get(link)) {
+                    counts.add(link, -1);
+                    sink.accept(MARKED, link);
+                } else if (last) {
+                    sink.accept(SEEN_ONLY, link);
+                }
+            });
+        }
+    }
+
+    /*
+    passes every record of the specified log to the specified replay, up to the end of the log, or a record
+    that was only partially written
+     */
+    private static void replay(final Path log, final Replay replay) throws IOException {
+        try (DataInputStream in = newInput(log)) {
+            if ((in.readInt() != MAGIC) || (in.readLong() != epoch(log))) {
+                return;
+            }
+            while (true) {
+                byte type = in.readByte();
+                Link link = readLink(in);
+                if ((type == MARKED) || (type == CRAWLED)) {
+                    replay.accept(type, link);
+                }
+            }
+        } catch (EOFException ignored) {
+            // the end of the log
+        }
+    }
+
+    /*
+    returns the logs of the epochs after the specified epoch, up to and including the specified last epoch,
+    in order
+     */
+    private List<Path> logs(final long after, final long last) throws IOException {
+        List<Path> logs = new ArrayList<>();
+        if (!Files.isDirectory(directory)) { return logs; }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = FILE.matcher(file.getFileName().toString());
+                if (matcher.matches() && matcher.group(2).equals(LOG)) {
+                    long epoch = Long.parseLong(matcher.group(1));
+                    if ((after < epoch) && (epoch <= last)) {
+                        logs.add(file);
+                    }
+                }
+            }
+        }
+        logs.sort(Comparator.comparingLong(Checkpoint::epoch));
+        return logs;
+    }
+
+    /*
+    deletes the logs up to and including the specified generation, and the snapshots before it
+     */
+    private void delete(final long generation) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = FILE.matcher(file.getFileName().toString());
+                if (!matcher.matches()) { continue; }
+                long epoch = Long.parseLong(matcher.group(1));
+                if ((epoch < generation) || (epoch == generation && matcher.group(2).equals(LOG))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private Path file(final long epoch, final String type) {
+        return directory.resolve("checkpoint-" + epoch + "." + type);
+    }
+
+    private static long epoch(final Path file) {
+        Matcher matcher = FILE.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : NONE;
+    }
+
+    private static DataInputStream newInput(final Path path) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+    }
+
+    /*
+    writes the specified file, and syncs it to disk
+     */
+    private static void write(final Path path, final Output output) throws IOException {
+        try (FileOutputStream file = new FileOutputStream(path.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            output.writeTo(out);
+            out.flush();
+            file.getFD().sync();
+        }
+    }
+
+    private static int[] increment(int[] counts, final int depth) {
+        if (counts.length <= depth) {
+            counts = Arrays.copyOf(counts, depth + 1);
+        }
+        counts[depth]++;
+        return counts;
+    }
+
+    private static void writeInts(final DataOutputStream out, final int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(final DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    /*
+    writes a record of the specified type; a revisit is recorded, so that it is not counted as another url
+     */
+    private static void write(final DataOutputStream out, final byte type, final Link link) throws IOException {
+        out.writeByte(type);
+        out.writeInt(link.getDepth());
+        out.writeBoolean(link.isRevisit());
+        writeString(out, link.getUrl());
+    }
+
+    /*
+    reads the link of a record whose type has already been read
+     */
+    private static Link readLink(final DataInputStream in) throws IOException {
+        int depth = in.readInt();
+        boolean revisit = in.readBoolean();
+        return new Link(readString(in), depth, 0, revisit);
+    }
+
+    /*
+    DataOutput#writeUTF is limited to 64 KiB, which some urls exceed
+     */
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private interface Output {
+
+        void writeTo(final DataOutputStream out) throws IOException;
+    }
+
+    private interface Replay {
+
+        void accept(final byte type, final Link link) throws IOException;
+    }
+
+    /*
+    the # of times that urls were marked, less the # of times that they were crawled, by the fingerprint of
+    the url and depth, which is only held for the urls of the logs that are being merged; a url that was
+    marked again at a lower depth is crawled once at each depth
+     */
+    private static final class Counts {
+
+        private long[] keys = new long[64];
+
+        private int[] values = new int[64];
+
+        private boolean[] used = new boolean[64];
+
+        private int size;
+
+        private int get(final Link link) {
+            int i = indexOf(key(link));
+            return used[i] ? values[i] : 0;
+        }
+
+        private void add(final Link link, final int delta) {
+            long key = key(link);
+            int i = indexOf(key);
+            if (!used[i]) {
+                used[i] = true;
+                keys[i] = key;
+                if (keys.length < 2 * ++size) {
+                    values[i] = delta;
+                    grow();
+                    return;
+                }
+            }
+            values[i] += delta;
+        }
+
+        private static long key(final Link link) {
+            return Hashes.fingerprint64(link.getUrl()) + 0x9E3779B97F4A7C15L * link.getDepth();
+        }
+
+        private int indexOf(final long key) {
+            int mask = keys.length - 1;
+            int i = (int) key & mask;
+            while (used[i] && (keys[i] != key)) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private void grow() {
+            long[] keys = this.keys;
+            int[] values = this.values;
+            boolean[] used = this.used;
+            this.keys = new long[keys.length * 2];
+            this.values = new int[keys.length * 2];
+            this.used = new boolean[keys.length * 2];
+            for (int i = 0; i < keys.length; i++) {
+                if (used[i]) {
+                    int j = indexOf(keys[i]);
+                    this.used[j] = true;
+                    this.keys[j] = keys[i];
+                    this.values[j] = values[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package com.github.wnebyte.crawler;
+
+import com.github.wnebyte.crawler.struct.Link;
+import com.github.wnebyte.crawler.util.Hashes;
+import com.github.wnebyte.crawler.util.Urls;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * This class connects the crawler of one member of a cluster to the other members, so that a crawl can be
+ * spread over several JVMs without a coordinator.
+ * <p>
+ * Every url is owned by one member, chosen by the hash of its host and port, so that all links of a host
+ * are queued, and its politeness limits enforced, by the same member. Links to urls owned by another member
+ * are buffered per member, and forwarded in batches over a TCP connection to it.
+ * <p>
+ * The crawl is done once every member is idle and no batch is in flight, which is detected by Safra's
+ * algorithm: a token circulates the members in a ring, summing the # of batches each member has sent minus
+ * the # it has received, and is tainted by every member that has received a batch since the token last
+ * passed it. Members pass the token on only while idle, after forwarding their buffered links. The first
+ * member starts a new round whenever the token returns tainted or with a nonzero sum, and otherwise tells
+ * the other members that the crawl is done.
+ * <p>
+ * A cluster does not survive the loss of a member; a member that can not reach another ends its crawl.
+ */
+public class Cluster implements Closeable {
+
+    private static final byte LINKS = 'L';
+
+    private static final byte TOKEN = 'T';
+
+    private static final byte TERMINATE = 'X';
+
+    // the # of links in a batch, at which the batch is forwarded without waiting for the next flush
+    private static final int BATCH_SIZE = 512;
+
+    // the interval in ms at which partial batches are forwarded, and the token is passed on if idle
+    private static final long FLUSH_INTERVAL = 20L;
+
+    // the time in ms that a member keeps trying to connect to another, which may not have started yet
+    private static final long CONNECT_TIMEOUT = 30_000L;
+
+    // the maximum length in bytes of a forwarded url
+    private static final int MAX_URL_LENGTH = 1024 * 1024;
+
+    // queued after the last frame to a member, once the cluster is closed
+    private static final byte[] CLOSE = new byte[0];
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    private final InetSocketAddress[] members;
+
+    // the index of this member
+    private final int member;
+
+    // the connections to the other members, by index, where the index of this member is null
+    private final Peer[] peers;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(Cluster::newThread);
+
+    // null until started
+    private ServerSocket server;
+
+    private Consumer<List<Link>> receiver;
+
+    private BooleanSupplier idle;
+
+    private Runnable onTermination;
+
+    // the # of batches sent minus the # of batches received
+    private long count;
+
+    // whether a batch has been received since the token last passed this member
+    private boolean tainted;
+
+    private boolean holdingToken;
+
+    // the sum and taint of the token held
+    private long tokenCount;
+
+    private boolean tokenTainted;
+
+    private boolean terminated;
+
+    /**
+     * Constructs a new instance.
+     * @param members the addresses of the members, each of the form <code>host:port</code>.
+     * @param member the index of this member.
+     */
+    public Cluster(final List<String> members, final int member) {
+        if ((members == null) || members.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "members must be non null and non empty"
+            );
+        }
+        if ((member < 0) || (members.size() <= member)) {
+            throw new IllegalArgumentException(
+                    "member must be the index of a member"
+            );
+        }
+        this.members = new InetSocketAddress[members.size()];
+        this.peers = new Peer[members.size()];
+        for (int i = 0; i < members.size(); i++) {
+            this.members[i] = toAddress(members.get(i));
+            if (i != member) {
+                peers[i] = new Peer(this.members[i]);
+            }
+        }
+        this.member = member;
+    }
+
+    /**
+     * Starts listening for the other members, and connecting to them.
+     * @param receiver the receiver of the links forwarded by other members, which is called by one
+     * thread at a time.
+     * @param idle whether this member's crawl is idle, in that it has no links queued or being crawled.
+     * @param onTermination called once the crawl of every member is done.
+     * @throws IOException if the address of this member could not be listened on.
+     */
+    public void start(
+            final Consumer<List<Link>> receiver,
+            final BooleanSupplier idle,
+            final Runnable onTermination
+    ) throws IOException {
+        this.receiver = receiver;
+        this.idle = idle;
+        this.onTermination = onTermination;
+        // the first member starts out holding a token that can not signal termination
+        synchronized (this) {
+            holdingToken = (member == 0);
+            tokenTainted = true;
+        }
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(members[member]);
+        newThread(this::accept).start();
+        for (Peer peer : peers) {
+            if (peer != null) {
+                peer.thread.start();
+            }
+        }
+        scheduler.scheduleWithFixedDelay(this::tick, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param url the url.
+     * @return whether the specified <code>url</code> is owned by this member.
+     */
+    public boolean isLocal(final String url) {
+        return getOwner(url) == member;
+    }
+
+    /**
+     * @param url the url.
+     * @return the index of the member that owns the specified <code>url</code>.
+     */
+    public int getOwner(final String url) {
+        return (int) Math.floorMod(Hashes.fingerprint64(Urls.getHost(url)), (long) members.length);
+    }
+
+    /**
+     * Forwards the specified <code>link</code> to the member that owns its url, in a batch with other
+     * links to the same member.
+     * @param link the link, which must not be owned by this member.
+     */
+    public void forward(final Link link) {
+        Peer peer = peers[getOwner(link.getUrl())];
+        List<Link> batch = peer.add(link);
+        if (batch != null) {
+            send(peer, batch);
+        }
+    }
+
+    /**
+     * Stops forwarding, and closes the connections to the other members once every queued message
+     * has been sent.
+     */
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        for (Peer peer : peers) {
+            if (peer != null) {
+                peer.frames.add(CLOSE);
+            }
+        }
+        try {
+            for (Peer peer : peers) {
+                if (peer != null) {
+                    peer.thread.join(CONNECT_TIMEOUT);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /*
+    parses an address of the form host:port
+     */
+    static InetSocketAddress toAddress(final String address) {
+        int colon = (address == null) ? -1 : address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException(
+                    "the address of a member must be of the form host:port"
+            );
+        }
+        try {
+            return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    "the address of a member must be of the form host:port"
+            );
+        }
+    }
+
+    /*
+    forwards partial batches, and passes the token on if this member is idle
+     */
+    private void tick() {
+        for (Peer peer : peers) {
+            if (peer != null) {
+                List<Link> batch = peer.drain();
+                if (batch != null) {
+                    send(peer, batch);
+                }
+            }
+        }
+        passToken();
+    }
+
+    /*
+    counts the batch as sent before it is queued, so that the token never misses a batch in flight
+     */
+    private void send(final Peer peer, final List<Link> batch) {
+        synchronized (this) {
+            count++;
+        }
+        peer.frames.add(encode(batch));
+    }
+
+    private void passToken() {
+        boolean done = false;
+        synchronized (this) {
+            if (terminated || !holdingToken || !idle.getAsBoolean()) { return; }
+            // the batches buffered while active must be counted by this pass of the token
+            for (Peer peer : peers) {
+                if (peer != null) {
+                    List<Link> batch = peer.drain();
+                    if (batch != null) {
+                        count++;
+                        peer.frames.add(encode(batch));
+                    }
+                }
+            }
+            long sum = tokenCount + count;
+            boolean taint = tokenTainted || tainted;
+            if (member == 0) {
+                if (!taint && (sum == 0)) {
+                    terminated = true;
+                    done = true;
+                } else {
+                    // start a new round
+                    sum = 0;
+                    taint = false;
+                }
+            }
+            if (!done) {
+                holdingToken = false;
+                tainted = false;
+                int next = (member + 1) % members.length;
+                if (next == member) {
+                    // a cluster of one member
+                    holdingToken = true;
+                    tokenCount = sum;
+                    tokenTainted = taint;
+                } else {
+                    peers[next].frames.add(encodeToken(sum, taint));
+                }
+            } else {
+                for (Peer peer : peers) {
+                    if (peer != null) {
+                        peer.frames.add(new byte[]{TERMINATE});
+                    }
+                }
+            }
+        }
+        if (done) {
+            onTermination.run();
+        }
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                Socket socket = server.accept();
+                newThread(() -> read(socket)).start();
+            }
+        } catch (SocketException ignored) {
+            // the server has been closed
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void read(final Socket socket) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (type == LINKS) {
+                    List<Link> links = decode(in);
+                    synchronized (this) {
+                        receiver.accept(links);
+                        count--;
+                        tainted = true;
+                    }
+                } else if (type == TOKEN) {
+                    long sum = in.readLong();
+                    boolean taint = in.readBoolean();
+                    synchronized (this) {
+                        holdingToken = true;
+                        tokenCount = sum;
+                        tokenTainted = taint;
+                    }
+                    passToken();
+                } else if (type == TERMINATE) {
+                    terminate();
+                } else {
+                    throw new IOException(
+                            "unknown message type " + type
+                    );
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void terminate() {
+        synchronized (this) {
+            if (terminated) { return; }
+            terminated = true;
+        }
+        onTermination.run();
+    }
+
+    private void fail(final IOException e) {
+        synchronized (this) {
+            if (terminated) { return; }
+        }
+        e.printStackTrace();
+        terminate();
+    }
+
+    private static byte[] encode(final List<Link> batch) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.size() * 64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(LINKS);
+            out.writeInt(batch.size());
+            for (Link link : batch) {
+                byte[] url = link.getUrl().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(link.getDepth());
+                out.writeInt(url.length);
+                out.write(url);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<Link> decode(final DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if ((n < 0) || (BATCH_SIZE < n)) {
+            throw new IOException(
+                    "malformed batch of " + n + " links"
+            );
+        }
+        List<Link> links = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int depth = in.readInt();
+            int length = in.readInt();
+            if ((length < 0) || (MAX_URL_LENGTH < length)) {
+                throw new IOException(
+                        "malformed url of " + length + " bytes"
+                );
+            }
+            byte[] url = new byte[length];
+            in.readFully(url);
+            links.add(new Link(new String(url, StandardCharsets.UTF_8), depth));
+        }
+        return links;
+    }
+
+    private static byte[] encodeToken(final long sum, final boolean taint) {
+        byte[] bytes = new byte[1 + Long.BYTES + 1];
+        bytes[0] = TOKEN;
+        for (int i = 0; i < Long.BYTES; i++) {
+            bytes[1 + i] = (byte) (sum >>> (56 - 8 * i));
+        }
+        bytes[1 + Long.BYTES] = (byte) (taint ? 1 : 0);
+        return bytes;
+    }
+
+    private static Thread newThread(final Runnable runnable) {
+        Thread thread = new Thread(runnable, "cluster");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /*
+    the connection to another member, whose messages are written by a thread of its own so that
+    forwarding never blocks on the network
+     */
+    private final class Peer {
+
+        private final InetSocketAddress address;
+
+        // links waiting to be forwarded
+        private List<Link> batch = new ArrayList<>();
+
+        // messages waiting to be written
+        private final BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+
+        private final Thread thread = newThread(this::write);
+
+        private Peer(final InetSocketAddress address) {
+            this.address = address;
+        }
+
+        /*
+        returns the batch if it is full, otherwise null
+         */
+        private synchronized List<Link> add(final Link link) {
+            batch.add(link);
+            return (batch.size() < BATCH_SIZE) ? null : drain();
+        }
+
+        /*
+        returns the batch, or null if it is empty
+         */
+        private synchronized List<Link> drain() {
+            if (batch.isEmpty()) { return null; }
+            List<Link> links = batch;
+            batch = new ArrayList<>();
+            return links;
+        }
+
+        private void write() {
+            try (Socket socket = connect();
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+                while (true) {
+                    byte[] frame = frames.take();
+                    if (frame == CLOSE) { return; }
+                    out.write(frame);
+                    if (frames.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                fail(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /*
+        connects to the member, retrying until it has started or the connect timeout has passed
+         */
+        private Socket connect() throws IOException, InterruptedException {
+            long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+            while (true) {
+                Socket socket = new Socket();
+                try {
+                    socket.connect(address, (int) CONNECT_TIMEOUT);
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                } catch (IOException e) {
+                    socket.close();
+                    if (deadline < System.currentTimeMillis()) {
+                        throw e;
+                    }
+                    Thread.sleep(100L);
+                }
+            }
+        }
+    }
+}
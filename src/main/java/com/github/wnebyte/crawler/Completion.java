@@ -0,0 +1,74 @@
+package com.github.wnebyte.crawler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class keeps track of the number of tasks that have been registered but not yet completed,
+ * and completes its future once that number drops back to zero.
+ * <p>
+ * A task must be registered <b>before</b> it is handed to another thread, and any task it spawns
+ * must be registered before the spawning task arrives, otherwise the count may reach zero early.
+ */
+public class Completion {
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    // # of registered tasks that have not yet arrived
+    private final AtomicInteger pending = new AtomicInteger(0);
+
+    // completed once pending drops to zero
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    /**
+     * Registers a new task.
+     */
+    public void register() {
+        pending.incrementAndGet();
+    }
+
+    /**
+     * Signals that a previously registered task has completed.
+     */
+    public void arrive() {
+        if (pending.decrementAndGet() == 0) {
+            future.complete(null);
+        }
+    }
+
+    /**
+     * @return the number of registered tasks that have not yet arrived.
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * @return <code>true</code> if every registered task has arrived, otherwise <code>false</code>.
+     */
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * @return a future that is completed once every registered task has arrived.
+     */
+    public CompletableFuture<Void> getFuture() {
+        return future;
+    }
+
+    /**
+     * Blocks the calling thread until every registered task has arrived.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public void await() throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.github.wnebyte.crawler;
+
+import com.github.wnebyte.crawler.util.Hashes;
+import org.jsoup.nodes.Document;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class stores every unique document once, in a file named by the SHA-256 digest of its bytes.
+ * <p>
+ * The file of each url is a hard link to the object holding its document (or a copy, if the filesystem
+ * does not support hard links), and an index of <code>digest url</code> lines is appended to as urls
+ * are stored.
+ * <p>
+ * Responses are additionally keyed by the digest of their raw body, so that a response whose body has
+ * already been processed can be linked to the resulting object without being parsed again.
+ * <p>
+ * Instances are safe for use by multiple concurrent crawler threads.
+ */
+public class ContentStore implements Closeable {
+
+    private static final String INDEX = "index";
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    private final Path directory;
+
+    // the digest of the object produced by each processed response, by response key
+    private final Map<String, String> processed = new ConcurrentHashMap<>();
+
+    // null until opened
+    private BufferedWriter index;
+
+    /**
+     * Constructs a new instance that stores objects in the specified <code>directory</code>.
+     * @param directory the directory.
+     */
+    public ContentStore(final Path directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException(
+                    "directory must be non null"
+            );
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the key of a response, which is equal for responses that are processed into equal documents.
+     * <p>
+     * Relative links are resolved against the url of the response, so responses are only considered equal
+     * if their urls share a directory, as is the case when urls differ only by their query. Local paths
+     * are relative to the file of the url, so the files must also be equally deep within the html directory.
+     * @param bodyDigest the digest of the raw body of the response.
+     * @param url the url of the response.
+     * @param followLinks whether links of the document are rewritten to local paths.
+     * @param rootHref the relative path from the file of the url to the html directory.
+     * @return the key.
+     */
+    public static String getKey(
+            final String bodyDigest,
+            final String url,
+            final boolean followLinks,
+            final String rootHref
+    ) {
+        int end = url.indexOf('?');
+        end = (end == -1) ? url.indexOf('#') : end;
+        end = url.lastIndexOf('/', (end == -1) ? url.length() - 1 : end);
+        return bodyDigest + ' ' + (followLinks ? '+' : '-') + ' ' + rootHref + ' ' + url.substring(0, end + 1);
+    }
+
+    /**
+     * Creates the directory, and opens the index for appending.
+     * @throws IOException if the directory could not be written to.
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        index = Files.newBufferedWriter(directory.resolve(INDEX), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @param key the key of a response.
+     * @return <code>true</code> if a response with the specified <code>key</code> has been stored,
+     * otherwise <code>false</code>.
+     */
+    public boolean isProcessed(final String key) {
+        return processed.containsKey(key);
+    }
+
+    /**
+     * Links the specified <code>file</code> to the object stored for a response with the specified
+     * <code>key</code>.
+     * @param key the key of the response.
+     * @param file the file of the url.
+     * @param url the url.
+     * @return <code>true</code> if the file was linked, or <code>false</code> if no response with
+     * the specified <code>key</code> has been stored.
+     * @throws IOException if the file could not be linked.
+     */
+    public boolean link(final String key, final File file, final String url) throws IOException {
+        String digest = processed.get(key);
+        if (digest == null) { return false; }
+        link(digest, file.toPath());
+        append(digest, url);
+        return true;
+    }
+
+    /**
+     * Writes the specified <code>document</code> to the object named by its digest, unless that object
+     * already exists, and links the specified <code>file</code> to the object.
+     * @param key the key of the response the document was processed from.
+     * @param document the document.
+     * @param file the file of the url.
+     * @param url the url.
+     * @return the number of bytes of the document.
+     * @throws IOException if the document could not be written, or the file could not be linked.
+     */
+    public long write(final String key, final Document document, final File file, final String url)
+            throws IOException {
+        Path tmp = Files.createTempFile(directory, "object-", ".tmp");
+        MessageDigest md = Hashes.newSha256();
+        long size;
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                size = DocumentWriter.write(document, new DigestChannel(channel, md));
+            }
+            String digest = Hashes.toHex(md.digest());
+            Path object = getObject(digest);
+            if (!Files.exists(object)) {
+                Files.createDirectories(object.getParent());
+                // unlike a rename, neither of these replaces an object that was stored concurrently
+                try {
+                    try {
+                        Files.createLink(object, tmp);
+                    } catch (UnsupportedOperationException e) {
+                        Files.move(tmp, object);
+                    }
+                } catch (FileAlreadyExistsException ignored) {
+                    // an equal document was stored concurrently
+                }
+            }
+            link(digest, file.toPath());
+            processed.putIfAbsent(key, digest);
+            append(digest, url);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of unique responses processed.
+     */
+    public int size() {
+        return processed.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (index != null) {
+            index.close();
+            index = null;
+        }
+    }
+
+    /*
+    objects are spread over 256 subdirectories by the first byte of their digest
+     */
+    private Path getObject(final String digest) {
+        return directory.resolve(digest.substring(0, 2)).resolve(digest + ".html");
+    }
+
+    private void link(final String digest, final Path path) throws IOException {
+        Path object = getObject(digest);
+        Files.deleteIfExists(path);
+        try {
+            Files.createLink(path, object);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(object, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private synchronized void append(final String digest, final String url) throws IOException {
+        if (index == null) { return; }
+        index.write(digest);
+        index.write(' ');
+        index.write(url);
+        index.newLine();
+    }
+
+    /*
+    digests every byte written to the underlying channel
+     */
+    private static final class DigestChannel implements WritableByteChannel {
+
+        private final WritableByteChannel channel;
+
+        private final MessageDigest md;
+
+        private DigestChannel(final WritableByteChannel channel, final MessageDigest md) {
+            this.channel = channel;
+            this.md = md;
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            ByteBuffer view = src.duplicate();
+            int n = channel.write(src);
+            view.limit(view.position() + n);
+            md.update(view);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.github.wnebyte.crawler;
 
+import com.github.wnebyte.crawler.struct.SeenSet;
 import com.github.wnebyte.crawler.util.Urls;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * This class encapsulates shared state needed to crawl and archive a set of urls.
@@ -32,6 +36,54 @@ public class CrawlerContext {
 
     private final int nThreads;
 
+    private final Supplier<SeenSet> seenSet;
+
+    private final boolean virtualThreads;
+
+    private final int maxConcurrency;
+
+    private final int maxConnectionsPerHost;
+
+    private final double requestsPerSecondPerHost;
+
+    private final boolean strictBreadthFirst;
+
+    private final int maxDocuments;
+
+    private final String spillDirectory;
+
+    private final int spillThreshold;
+
+    private final long checkpointInterval;
+
+    private final boolean resume;
+
+    private final boolean incremental;
+
+    private final boolean deduplicate;
+
+    private final String archiveDirectory;
+
+    private final boolean downloadStylesheets;
+
+    private final boolean downloadImages;
+
+    private final long archiveSegmentSize;
+
+    private final Map<String, List<ElementHandler>> elementHandlers;
+
+    private final boolean discoveryOnly;
+
+    private final boolean writeRawBodies;
+
+    private final String linkGraphFile;
+
+    private final List<String> clusterMembers;
+
+    private final int clusterMember;
+
+    private final int maxPendingUrls;
+
     public CrawlerContext(
             final String rootUrl,
             final int linkDepth,
@@ -42,8 +94,31 @@ public class CrawlerContext {
             final String userAgent,
             final int connectionTimeout,
             final Consumer<CrawlerProgress> callback,
-            final int nThreads
-
+            final int nThreads,
+            final Supplier<SeenSet> seenSet,
+            final boolean virtualThreads,
+            final int maxConcurrency,
+            final int maxConnectionsPerHost,
+            final double requestsPerSecondPerHost,
+            final boolean strictBreadthFirst,
+            final int maxDocuments,
+            final String spillDirectory,
+            final int spillThreshold,
+            final long checkpointInterval,
+            final boolean resume,
+            final boolean incremental,
+            final boolean deduplicate,
+            final String archiveDirectory,
+            final long archiveSegmentSize,
+            final boolean downloadStylesheets,
+            final boolean downloadImages,
+            final Map<String, List<ElementHandler>> elementHandlers,
+            final boolean discoveryOnly,
+            final boolean writeRawBodies,
+            final String linkGraphFile,
+            final List<String> clusterMembers,
+            final int clusterMember,
+            final int maxPendingUrls
     ) {
         if (Urls.isMalformed(rootUrl)) {
             throw new IllegalArgumentException(
@@ -55,6 +130,11 @@ public class CrawlerContext {
                     "rootUrl must use either http or https protocol"
             );
         }
+        if (seenSet == null) {
+            throw new IllegalArgumentException(
+                    "seenSet must be non null"
+            );
+        }
         if (linkDepth < 0) {
             throw new IllegalArgumentException(
                     "the specified linkDepth must be greater than -1"
@@ -71,6 +151,30 @@ public class CrawlerContext {
         this.connectionTimeout = connectionTimeout;
         this.callback = callback;
         this.nThreads = nThreads;
+        this.seenSet = seenSet;
+        this.virtualThreads = virtualThreads;
+        this.maxConcurrency = maxConcurrency;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.requestsPerSecondPerHost = requestsPerSecondPerHost;
+        this.strictBreadthFirst = strictBreadthFirst;
+        this.maxDocuments = maxDocuments;
+        this.spillDirectory = spillDirectory;
+        this.spillThreshold = spillThreshold;
+        this.checkpointInterval = checkpointInterval;
+        this.resume = resume;
+        this.incremental = incremental;
+        this.deduplicate = deduplicate;
+        this.archiveDirectory = archiveDirectory;
+        this.archiveSegmentSize = archiveSegmentSize;
+        this.downloadStylesheets = downloadStylesheets;
+        this.downloadImages = downloadImages;
+        this.elementHandlers = (elementHandlers == null) ? Map.of() : elementHandlers;
+        this.discoveryOnly = discoveryOnly;
+        this.writeRawBodies = writeRawBodies;
+        this.linkGraphFile = linkGraphFile;
+        this.clusterMembers = clusterMembers;
+        this.clusterMember = clusterMember;
+        this.maxPendingUrls = maxPendingUrls;
     }
 
     public String getRootUrl() {
@@ -105,6 +209,9 @@ public class CrawlerContext {
         return callback;
     }
 
+    /**
+     * @return the registrable domain of the root url; urls of this domain and its subdomains are crawled.
+     */
     public String getDomainName() {
         return domainName;
     }
@@ -120,4 +227,175 @@ public class CrawlerContext {
     public String getImageDirectory() {
         return imageDirectory;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return a new, empty set to keep track of the urls that have been marked for crawling by a crawl.
+     */
+    public SeenSet newSeenSet() {
+        return seenSet.get();
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return the maximum number of urls that may be crawled concurrently.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return the maximum number of urls per host that may be crawled concurrently,
+     * or <code>0</code> if unlimited.
+     */
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * @return the maximum sustained rate of requests per host, or <code>0</code> if unlimited.
+     */
+    public double getRequestsPerSecondPerHost() {
+        return requestsPerSecondPerHost;
+    }
+
+    /**
+     * @return whether every url of a depth must have been crawled before any url of the next depth is crawled.
+     */
+    public boolean isStrictBreadthFirst() {
+        return strictBreadthFirst;
+    }
+
+    /**
+     * @return the maximum number of urls to mark for crawling, or <code>0</code> if unlimited.
+     */
+    public int getMaxDocuments() {
+        return maxDocuments;
+    }
+
+    /**
+     * @return the directory to spill pending urls to, or <code>null</code> if they are held in memory.
+     */
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * @return the number of pending urls, across all hosts and depths, to hold in memory before spilling
+     * to disk.
+     */
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    /**
+     * @return the interval in ms between checkpoints, or <code>0</code> if checkpointing is disabled.
+     */
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * @return whether to resume from the latest checkpoint in the html directory, if there is one.
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * @return whether to fetch previously crawled urls conditionally, and skip those that are unmodified.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * @return whether to store each unique document once, and link the files of urls to it.
+     */
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * @return the directory to append documents to archive segments in, or <code>null</code> if
+     * documents are written to one file per url in the html directory.
+     */
+    public String getArchiveDirectory() {
+        return archiveDirectory;
+    }
+
+    /**
+     * @return the size in bytes after which a new archive segment is started.
+     */
+    public long getArchiveSegmentSize() {
+        return archiveSegmentSize;
+    }
+
+    /**
+     * @return whether to download the stylesheets of documents to the css directory.
+     */
+    public boolean isDownloadStylesheets() {
+        return downloadStylesheets;
+    }
+
+    /**
+     * @return whether to download the images of documents to the image directory.
+     */
+    public boolean isDownloadImages() {
+        return downloadImages;
+    }
+
+    /**
+     * @return the handlers to call for the elements of each crawled document, by lower case tag name.
+     */
+    public Map<String, List<ElementHandler>> getElementHandlers() {
+        return elementHandlers;
+    }
+
+    /**
+     * @return whether to scan the bodies of responses for urls, rather than parse and write documents.
+     */
+    public boolean isDiscoveryOnly() {
+        return discoveryOnly;
+    }
+
+    /**
+     * @return whether to write the bodies of responses as they were received, when only discovering urls.
+     */
+    public boolean isWriteRawBodies() {
+        return writeRawBodies;
+    }
+
+    /**
+     * @return the file to write the graph of the links between the urls of the domain to, or
+     * <code>null</code> if the graph is not recorded.
+     */
+    public String getLinkGraphFile() {
+        return linkGraphFile;
+    }
+
+    /**
+     * @return the addresses of the members of the cluster that the crawl is spread over, or
+     * <code>null</code> if it is not spread over a cluster.
+     */
+    public List<String> getClusterMembers() {
+        return clusterMembers;
+    }
+
+    /**
+     * @return the index of this crawler in the members of the cluster.
+     */
+    public int getClusterMember() {
+        return clusterMember;
+    }
+
+    /**
+     * @return the maximum number of urls pending in the frontier before crawlers are made to wait,
+     * or <code>0</code> if unlimited.
+     */
+    public int getMaxPendingUrls() {
+        return maxPendingUrls;
+    }
+}
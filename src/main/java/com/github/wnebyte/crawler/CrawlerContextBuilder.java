@@ -1,8 +1,17 @@
 package com.github.wnebyte.crawler;
 
+import com.github.wnebyte.crawler.struct.FingerprintSet;
+import com.github.wnebyte.crawler.struct.SeenSet;
+import com.github.wnebyte.crawler.util.Threads;
 import java.io.File;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class CrawlerContextBuilder {
 
@@ -16,12 +25,7 @@ public class CrawlerContextBuilder {
 
     private String imageDirectory = "../images";
 
-    private Encoder<String> encoder = new Encoder<String>() {
-        @Override
-        public String encode(String value) {
-            return Base64.getUrlEncoder().encodeToString(value.getBytes());
-        }
-    };
+    private Encoder<String> encoder = new DigestEncoder();
 
     private Consumer<CrawlerProgress> callback;
 
@@ -35,6 +39,50 @@ public class CrawlerContextBuilder {
 
     private boolean downloadStylesheets = true;
 
+    private Supplier<SeenSet> seenSet = FingerprintSet::new;
+
+    private boolean virtualThreads = false;
+
+    private int maxConcurrency = 256;
+
+    private int maxConnectionsPerHost = 0;
+
+    private double requestsPerSecondPerHost = 0;
+
+    private boolean strictBreadthFirst = false;
+
+    private int maxDocuments = 0;
+
+    private String spillDirectory;
+
+    private int spillThreshold = 10000;
+
+    private long checkpointInterval = 0L;
+
+    private boolean resume = false;
+
+    private boolean incremental = false;
+
+    private boolean deduplicate = false;
+
+    private String archiveDirectory;
+
+    private long archiveSegmentSize = 1024L * 1024 * 1024;
+
+    private final Map<String, List<ElementHandler>> elementHandlers = new LinkedHashMap<>();
+
+    private boolean discoveryOnly = false;
+
+    private boolean writeRawBodies = false;
+
+    private String linkGraphFile;
+
+    private List<String> clusterMembers;
+
+    private int clusterMember;
+
+    private int maxPendingUrls = 100_000;
+
     /**
      * Sets the first url that should be crawled.
      * @param rootUrl the first url to be crawled.
@@ -60,16 +108,37 @@ public class CrawlerContextBuilder {
         return this;
     }
 
+    /**
+     * Sets the directory that stylesheets are downloaded to. A relative directory is resolved against
+     * the html directory.
+     * @param cssDirectory the directory.
+     * @return this.
+     */
     public CrawlerContextBuilder setCssDirectory(final String cssDirectory) {
         this.cssDirectory = cssDirectory;
         return this;
     }
 
+    /**
+     * Sets the directory that images are downloaded to. A relative directory is resolved against
+     * the html directory.
+     * @param imageDirectory the directory.
+     * @return this.
+     */
     public CrawlerContextBuilder setImageDirectory(final String imageDirectory) {
         this.imageDirectory = imageDirectory;
         return this;
     }
 
+    /**
+     * Sets the encoder of the file names of urls. An encoder may return names containing <code>/</code>,
+     * in which case files are written to subdirectories, and links between files are rewritten relative
+     * to the subdirectory of each file.
+     * <p>
+     * Defaults to a {@link DigestEncoder}.
+     * @param encoder the encoder.
+     * @return this.
+     */
     public CrawlerContextBuilder setEncoder(final Encoder<String> encoder) {
         if (encoder != null) {
             this.encoder = encoder;
@@ -108,16 +177,348 @@ public class CrawlerContextBuilder {
         return this;
     }
 
+    /**
+     * Sets whether to download the (png and jpeg) images of documents, and rewrite their references to
+     * the local copies. Otherwise, the references are left pointing at the remote images.
+     * <p>
+     * Each image is downloaded once, no matter how many documents reference it.
+     * @param value whether to download images.
+     * @return this.
+     */
     public CrawlerContextBuilder setDownloadImages(final boolean value) {
         this.downloadImages = value;
         return this;
     }
 
+    /**
+     * Sets whether to download the stylesheets of documents, and rewrite their references to the
+     * local copies. Otherwise, the references are removed.
+     * <p>
+     * Each stylesheet is downloaded once, no matter how many documents reference it.
+     * @param value whether to download stylesheets.
+     * @return this.
+     */
     public CrawlerContextBuilder setDownloadStylesheets(final boolean value) {
         this.downloadStylesheets = value;
         return this;
     }
 
+    /**
+     * Sets the supplier of the set used to keep track of the urls that have been marked for crawling,
+     * which is called once per crawl, so that crawls of the same context do not share a set.
+     * <p>
+     * Defaults to <code>FingerprintSet::new</code>. A {@link com.github.wnebyte.crawler.struct.BloomFilterSet}
+     * can be used to bound the memory of very large crawls.
+     * @param seenSet the supplier of a new, empty set.
+     * @return this.
+     */
+    public CrawlerContextBuilder setSeenSet(final Supplier<SeenSet> seenSet) {
+        if (seenSet != null) {
+            this.seenSet = seenSet;
+        }
+        return this;
+    }
+
+    /**
+     * Sets whether each url should be crawled on its own virtual thread, rather than on a thread-pool
+     * of {@link #setThreads(int)} platform threads.
+     * <p>
+     * Requires Java 21 or later.
+     * @param value whether to use virtual threads.
+     * @return this.
+     */
+    public CrawlerContextBuilder setVirtualThreads(final boolean value) {
+        this.virtualThreads = value;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of urls that may be crawled concurrently when using virtual threads.
+     * @param maxConcurrency the maximum number of concurrent crawls.
+     * @return this.
+     */
+    public CrawlerContextBuilder setMaxConcurrency(final int maxConcurrency) {
+        if (1 <= maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of urls per host that may be crawled concurrently.
+     * @param maxConnectionsPerHost the maximum number of concurrent crawls per host,
+     * or <code>0</code> if unlimited.
+     * @return this.
+     */
+    public CrawlerContextBuilder setMaxConnectionsPerHost(final int maxConnectionsPerHost) {
+        if (0 <= maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the maximum sustained rate of requests per host.
+     * A host may receive bursts of up to one second's worth of requests.
+     * @param requestsPerSecondPerHost the maximum rate, or <code>0</code> if unlimited.
+     * @return this.
+     */
+    public CrawlerContextBuilder setRequestsPerSecondPerHost(final double requestsPerSecondPerHost) {
+        if (0 <= requestsPerSecondPerHost) {
+            this.requestsPerSecondPerHost = requestsPerSecondPerHost;
+        }
+        return this;
+    }
+
+    /**
+     * Sets whether every url of a depth must have been crawled before any url of the next depth is crawled.
+     * <p>
+     * Urls of lower depths are always crawled first when available; this additionally prevents deeper
+     * urls from being crawled while the last urls of a depth are still being crawled, at the cost of
+     * idle threads at the end of each depth.
+     * @param value whether to crawl strictly breadth-first.
+     * @return this.
+     */
+    public CrawlerContextBuilder setStrictBreadthFirst(final boolean value) {
+        this.strictBreadthFirst = value;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of urls to mark for crawling, including the root url.
+     * Since urls are crawled breadth-first, the crawl stops early with the shallowest urls.
+     * @param maxDocuments the maximum number of urls, or <code>0</code> if unlimited.
+     * @return this.
+     */
+    public CrawlerContextBuilder setMaxDocuments(final int maxDocuments) {
+        if (0 <= maxDocuments) {
+            this.maxDocuments = maxDocuments;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the directory that pending urls are spilled to once more than {@link #setSpillThreshold(int)}
+     * urls are pending, so that crawls larger than the heap can be run. Spilled urls are deleted from disk
+     * as they are crawled, and once the crawl is done.
+     * <p>
+     * Defaults to <code>null</code>, meaning every pending url is held in memory.
+     * @param spillDirectory the directory, which should be on a local disk.
+     * @return this.
+     */
+    public CrawlerContextBuilder setSpillDirectory(final String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        return this;
+    }
+
+    /**
+     * Sets the number of pending urls, across all hosts and depths, that are held in memory when spilling
+     * to disk is enabled.
+     * <p>
+     * Defaults to <code>10000</code>.
+     * @param spillThreshold the number of urls.
+     * @return this.
+     */
+    public CrawlerContextBuilder setSpillThreshold(final int spillThreshold) {
+        if (1 <= spillThreshold) {
+            this.spillThreshold = spillThreshold;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the interval between checkpoints of the crawl's progress.
+     * <p>
+     * Marked and crawled urls are continuously appended to a log in the html directory, which is
+     * compacted into a snapshot once per interval.
+     * @param checkpointInterval the interval in ms, or <code>0</code> to disable checkpointing.
+     * @return this.
+     */
+    public CrawlerContextBuilder setCheckpointInterval(final long checkpointInterval) {
+        if (0 <= checkpointInterval) {
+            this.checkpointInterval = checkpointInterval;
+        }
+        return this;
+    }
+
+    /**
+     * Sets whether to resume from the latest checkpoint in the html directory, rather than starting over
+     * from the root url. Urls that were crawled before the checkpoint are not crawled again.
+     * <p>
+     * Requires checkpointing to be enabled. If there is no checkpoint, the crawl starts from the root url.
+     * @param value whether to resume.
+     * @return this.
+     */
+    public CrawlerContextBuilder setResume(final boolean value) {
+        this.resume = value;
+        return this;
+    }
+
+    /**
+     * Sets whether to re-crawl incrementally.
+     * <p>
+     * The <code>ETag</code>, <code>Last-Modified</code> and content hash of every crawled url are stored
+     * in the html directory. Urls that were crawled by a previous crawl are fetched conditionally, and
+     * are neither parsed nor written again if the host responds that they are not modified, or if their
+     * content is unchanged.
+     * @param value whether to re-crawl incrementally.
+     * @return this.
+     */
+    public CrawlerContextBuilder setIncremental(final boolean value) {
+        this.incremental = value;
+        return this;
+    }
+
+    /**
+     * Sets whether to de-duplicate documents.
+     * <p>
+     * Each unique document is stored once in the html directory, in a file named by the SHA-256 digest
+     * of its bytes, and the file of each url is a hard link to it. Responses whose body is byte-identical
+     * to one that has already been processed are linked to its document without being parsed.
+     * @param value whether to de-duplicate documents.
+     * @return this.
+     */
+    public CrawlerContextBuilder setDeduplicate(final boolean value) {
+        this.deduplicate = value;
+        return this;
+    }
+
+    /**
+     * Sets the directory that documents are archived to, rather than being written to one file per url.
+     * <p>
+     * Documents are appended as gzip-compressed WARC records to rolling segment files, alongside an
+     * index of the segment, offset and length of the record of each url.
+     * <p>
+     * Defaults to <code>null</code>, meaning every document is written to a file of its own in the
+     * html directory.
+     * @param archiveDirectory the directory.
+     * @return this.
+     */
+    public CrawlerContextBuilder setArchiveDirectory(final String archiveDirectory) {
+        this.archiveDirectory = archiveDirectory;
+        return this;
+    }
+
+    /**
+     * Sets the size in bytes after which a new archive segment is started.
+     * <p>
+     * Defaults to 1 GiB.
+     * @param archiveSegmentSize the size in bytes.
+     * @return this.
+     */
+    public CrawlerContextBuilder setArchiveSegmentSize(final long archiveSegmentSize) {
+        if (0 < archiveSegmentSize) {
+            this.archiveSegmentSize = archiveSegmentSize;
+        }
+        return this;
+    }
+
+    /**
+     * Adds a handler to be called for every element with the specified <code>tagName</code> of each
+     * crawled document, in the order the handlers were added.
+     * <p>
+     * Handlers are called after the crawler has processed the element, within the single traversal
+     * of the document.
+     * @param tagName the tag name, such as <code>meta</code>.
+     * @param handler the handler.
+     * @return this.
+     */
+    public CrawlerContextBuilder addElementHandler(final String tagName, final ElementHandler handler) {
+        if ((tagName != null) && (handler != null)) {
+            elementHandlers.computeIfAbsent(tagName.toLowerCase(Locale.ROOT), k -> new ArrayList<>()).add(handler);
+        }
+        return this;
+    }
+
+    /**
+     * Sets whether to only discover urls, rather than archive documents.
+     * <p>
+     * Documents are neither parsed nor rewritten. Instead, the body of each response is scanned for the
+     * urls of its anchor tags as it is received, and those urls are followed as usual. Stylesheets and
+     * images are not downloaded.
+     * <p>
+     * Can not be combined with incremental re-crawls, de-duplication, archiving, or element handlers,
+     * which all need the parsed document.
+     * @param value whether to only discover urls.
+     * @return this.
+     */
+    public CrawlerContextBuilder setDiscoveryOnly(final boolean value) {
+        this.discoveryOnly = value;
+        return this;
+    }
+
+    /**
+     * Sets whether to write the body of each response to the html directory as it was received,
+     * when only discovering urls.
+     * <p>
+     * Defaults to <code>false</code>, meaning nothing is written.
+     * @param value whether to write the raw bodies of responses.
+     * @return this.
+     */
+    public CrawlerContextBuilder setWriteRawBodies(final boolean value) {
+        this.writeRawBodies = value;
+        return this;
+    }
+
+    /**
+     * Sets the file that the graph of the links between the urls of the domain is written to once the
+     * crawl is done.
+     * <p>
+     * Defaults to <code>null</code>, meaning the graph is not recorded.
+     * @param linkGraphFile the file.
+     * @return this.
+     * @see com.github.wnebyte.crawler.struct.LinkGraph
+     */
+    public CrawlerContextBuilder setLinkGraphFile(final String linkGraphFile) {
+        this.linkGraphFile = linkGraphFile;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of urls that may be pending in the frontier before crawlers that discover
+     * more urls are made to wait for it to drain.
+     * <p>
+     * The crawler that is the last one still running is never made to wait, so the frontier may briefly
+     * hold more urls, but no url is ever dropped.
+     * <p>
+     * Defaults to <code>100000</code>.
+     * @param maxPendingUrls the maximum number of pending urls, or <code>0</code> if unlimited.
+     * @return this.
+     */
+    public CrawlerContextBuilder setMaxPendingUrls(final int maxPendingUrls) {
+        if (0 <= maxPendingUrls) {
+            this.maxPendingUrls = maxPendingUrls;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the members of a cluster to spread the crawl over, and which of them this crawler is.
+     * <p>
+     * Every member runs a crawler of its own, configured alike but for its member index and directories,
+     * with the same list of members, each given as the <code>host:port</code> that the member listens on.
+     * Urls are partitioned between the members by the hash of their host, so that every member crawls
+     * the urls of its own hosts, and forwards the others to the members that own them. The crawl of each
+     * member is done once the crawl of every member is.
+     * <p>
+     * Limits such as the maximum number of documents, and the order of a strictly breadth-first crawl,
+     * apply to each member separately. As links reach their owners with a delay, a url may first be marked
+     * at a greater depth than it would be by a single crawler, in which case it is crawled again once it is
+     * marked at a lower depth, without being counted twice. Checkpointing is not supported in a cluster.
+     * <p>
+     * Defaults to <code>null</code>, meaning the crawl is not spread over a cluster.
+     * @param member the index of this crawler in <code>members</code>.
+     * @param members the addresses of the members.
+     * @return this.
+     */
+    public CrawlerContextBuilder setCluster(final int member, final String... members) {
+        if ((members != null) && (members.length != 0)) {
+            this.clusterMembers = List.of(members);
+            this.clusterMember = member;
+        }
+        return this;
+    }
+
     public CrawlerContext build() {
         if ((rootUrl == null) || (rootUrl.equals(""))) {
             throw new IllegalArgumentException(
@@ -134,6 +535,34 @@ public class CrawlerContextBuilder {
                     "directory must be a directory on the filesystem"
             );
         }
+        if (virtualThreads && !Threads.isVirtualThreadsSupported()) {
+            throw new IllegalArgumentException(
+                    "virtual threads require Java 21 or later"
+            );
+        }
+        if (deduplicate && (archiveDirectory != null)) {
+            throw new IllegalArgumentException(
+                    "deduplicate is not supported when archiving"
+            );
+        }
+        if (discoveryOnly && (incremental || deduplicate || (archiveDirectory != null) || !elementHandlers.isEmpty())) {
+            throw new IllegalArgumentException(
+                    "incremental, deduplicate, archiving and element handlers are not supported when only discovering urls"
+            );
+        }
+        if (clusterMembers != null) {
+            if ((clusterMember < 0) || (clusterMembers.size() <= clusterMember)) {
+                throw new IllegalArgumentException(
+                        "the cluster member must be the index of one of the cluster members"
+                );
+            }
+            if (checkpointInterval != 0) {
+                throw new IllegalArgumentException(
+                        "checkpointing is not supported in a cluster"
+                );
+            }
+            clusterMembers.forEach(Cluster::toAddress);
+        }
         return new CrawlerContext(
                 rootUrl,
                 linkDepth,
@@ -144,7 +573,39 @@ public class CrawlerContextBuilder {
                 userAgent,
                 connectionTimeout,
                 callback,
-                nThreads
+                nThreads,
+                seenSet,
+                virtualThreads,
+                virtualThreads ? maxConcurrency : nThreads,
+                maxConnectionsPerHost,
+                requestsPerSecondPerHost,
+                strictBreadthFirst,
+                maxDocuments,
+                spillDirectory,
+                spillThreshold,
+                checkpointInterval,
+                resume,
+                incremental,
+                deduplicate,
+                archiveDirectory,
+                archiveSegmentSize,
+                downloadStylesheets && (cssDirectory != null) && !discoveryOnly,
+                downloadImages && (imageDirectory != null) && !discoveryOnly,
+                copyOf(elementHandlers),
+                discoveryOnly,
+                discoveryOnly && writeRawBodies,
+                linkGraphFile,
+                clusterMembers,
+                clusterMember,
+                maxPendingUrls
                 );
     }
+
+    private static Map<String, List<ElementHandler>> copyOf(final Map<String, List<ElementHandler>> map) {
+        Map<String, List<ElementHandler>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, List<ElementHandler>> entry : map.entrySet()) {
+            copy.put(entry.getKey(), List.copyOf(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
 }
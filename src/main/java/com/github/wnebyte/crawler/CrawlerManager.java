@@ -1,53 +1,174 @@
 package com.github.wnebyte.crawler;
 
+import com.github.wnebyte.crawler.struct.DepthCounts;
+import com.github.wnebyte.crawler.struct.DepthFrontier;
+import com.github.wnebyte.crawler.struct.Frontier;
+import com.github.wnebyte.crawler.struct.HostScheduler;
+import com.github.wnebyte.crawler.struct.LatencyHistogram;
+import com.github.wnebyte.crawler.struct.Link;
+import com.github.wnebyte.crawler.struct.LinkGraph;
+import com.github.wnebyte.crawler.struct.LinkGraphBuilder;
+import com.github.wnebyte.crawler.struct.SeenSet;
+import com.github.wnebyte.crawler.struct.SpillStore;
+import com.github.wnebyte.crawler.struct.SpillingFrontier;
 import com.github.wnebyte.crawler.util.Files;
+import com.github.wnebyte.crawler.util.Threads;
+import com.github.wnebyte.crawler.util.UrlView;
 import com.github.wnebyte.crawler.util.Urls;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /*
-needs to stay 'alive' for as long as there are active crawlers
+needs to stay 'alive' for as long as there are registered crawlers
  */
-public class CrawlerManager implements Runnable {
+public class CrawlerManager extends AbstractCrawlerManager implements Runnable {
+
+    // the maximum # of times a throttled or timed out link is attempted
+    private static final int MAX_ATTEMPTS = 3;
+
+    // the initial delay before a throttled or timed out host is retried, if it did not request one
+    private static final long BACKOFF_MILLIS = 1000L;
+
+    // the size in bytes of a frontier segment file, when spilling the frontier to disk
+    private static final int SPILL_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    // the directory within the html directory that checkpoints and metadata are persisted to
+    private static final String CHECKPOINT_DIRECTORY = ".crawler";
+
+    // the file within the checkpoint directory that metadata is persisted to
+    private static final String METADATA_FILE = "metadata";
+
+    // the directory within the checkpoint directory that de-duplicated documents are stored in
+    private static final String OBJECTS_DIRECTORY = "objects";
+
+    // status codes are counted if they are below this
+    private static final int MAX_STATUS_CODE = 600;
 
     /*################################
     #       INSTANCE VARIABLES       #
     #################################*/
 
-    // crawler thread-pool
- //   private final ExecutorService crawlerPool;
+    // crawler thread-pool, or a virtual thread per crawler
+    private final ExecutorService crawlerPool;
+
+    // bounds the # of crawlers handed to the crawler thread-pool at any one time
+    private final Semaphore permits;
+
+    // links marked for crawling that have not yet been handed to a crawler
+    private final HostScheduler frontier;
 
-    private final ThreadPoolExecutor crawlerPool;
+    // the thread executing the dispatch loop
+    private volatile Thread dispatcher;
 
     // callback scheduler
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 
     // discovered urls "marked" for crawling
-    private final Set<String> syncedAnchorTagUrls = Collections.synchronizedSet(new HashSet<>());
+    private final SeenSet markedUrls;
 
     private final AtomicInteger documentsMarked = new AtomicInteger(1);
 
     // # of downloaded resources (html)
     private final AtomicInteger documentsCrawled = new AtomicInteger(0);
 
+    // # of urls marked for crawling, per depth
+    private final DepthCounts documentsMarkedPerDepth = new DepthCounts();
+
+    // # of downloaded resources (html), per depth
+    private final DepthCounts documentsCrawledPerDepth = new DepthCounts();
+
     // # of downloaded resources (html) since the last callback
     private final AtomicInteger documentsCrawledRecently = new AtomicInteger(0);
 
     // # of downloaded bytes (html) since the last callback
     private final AtomicLong bytesDownloadedRecently = new AtomicLong(0L);
 
+    // time taken by each request
+    private final LatencyHistogram fetchLatency = new LatencyHistogram();
+
+    // time taken to parse each document and rewrite its references to local res
+    private final LatencyHistogram processLatency = new LatencyHistogram();
+
+    // time taken to write each document
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+
+    // # of responses per status code
+    private final AtomicIntegerArray responses = new AtomicIntegerArray(MAX_STATUS_CODE);
+
+    // # of urls that could not be fetched or parsed
+    private final AtomicInteger failedFetches = new AtomicInteger(0);
+
+    // # of documents that could not be written
+    private final AtomicInteger failedWrites = new AtomicInteger(0);
+
+    // # of documents that were not written, as an element handler threw
+    private final AtomicInteger failedDocuments = new AtomicInteger(0);
+
     // System.nanoTime() at object construction
     private final AtomicLong runtime = new AtomicLong(System.nanoTime());
 
+    // # of links that have been marked but not yet crawled
+    private final Completion completion = new Completion();
+
+    // # of crawlers that have been dispatched but have not yet finished
+    private final AtomicInteger crawling = new AtomicInteger(0);
+
+    // the monitor that crawlers wait on while the frontier is full
+    private final Object throttle = new Object();
+
+    // # of crawlers waiting on the throttle, guarded by the throttle
+    private int throttled;
+
+    // shared http client
+    private final Fetcher fetcher;
+
+    // persists the progress of the crawl, or null if disabled
+    private final Checkpoint checkpoint;
+
+    // the metadata of previously crawled urls, or null if not crawling incrementally
+    private final MetadataStore store;
+
+    // stores each unique document once, or null if not de-duplicating
+    private final ContentStore contents;
+
+    // appends documents to archive segments, or null if writing one file per url
+    private final ArchiveWriter archive;
+
+    // records the links between crawled urls, or null if the link graph is not recorded
+    private final LinkGraphBuilder graph;
+
+    // holds the pending urls that are spilled to disk by the queues of every host, or null if not spilling
+    private final SpillStore spill;
+
+    // forwards links to the members of the cluster that own them, or null if not crawling in a cluster
+    private final Cluster cluster;
+
+    // downloads stylesheets and images, or null if neither are downloaded
+    private final AssetDownloader assets;
+
+    // the directory stylesheets are downloaded to, or null if they are not downloaded
+    private final Path cssDirectory;
+
+    // the directory images are downloaded to, or null if they are not downloaded
+    private final Path imageDirectory;
+
+    // the path of the css directory relative to the html directory, as referenced by documents
+    private final String cssHref;
+
+    // the path of the image directory relative to the html directory, as referenced by documents
+    private final String imageHref;
+
     // param
     private final CrawlerContext context;
 
@@ -62,41 +183,529 @@ public class CrawlerManager implements Runnable {
             );
         }
         this.context = context;
-      //  this.crawlerPool = Executors.newFixedThreadPool(context.getThreads());
-        this.crawlerPool = new ThreadPoolExecutor(5, 10,
-                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(10000));
+        this.markedUrls = context.newSeenSet();
+        this.fetcher = new Fetcher(context);
+        this.frontier = new HostScheduler(
+                context.getMaxConnectionsPerHost(), context.getRequestsPerSecondPerHost(), this::newHostQueue);
+        this.crawlerPool = context.isVirtualThreads() ?
+                Threads.newVirtualThreadPerTaskExecutor() :
+                new ThreadPoolExecutor(context.getThreads(), context.getThreads(),
+                        0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        this.permits = new Semaphore(context.getMaxConcurrency());
+        this.checkpoint = (context.getCheckpointInterval() == 0) ? null :
+                new Checkpoint(Paths.get(context.getHtmlDirectory(), CHECKPOINT_DIRECTORY));
+        this.store = !context.isIncremental() ? null :
+                new MetadataStore(Paths.get(context.getHtmlDirectory(), CHECKPOINT_DIRECTORY, METADATA_FILE));
+        this.contents = !context.isDeduplicate() ? null :
+                new ContentStore(Paths.get(context.getHtmlDirectory(), CHECKPOINT_DIRECTORY, OBJECTS_DIRECTORY));
+        this.archive = (context.getArchiveDirectory() == null) ? null :
+                new ArchiveWriter(Paths.get(context.getArchiveDirectory()), context.getArchiveSegmentSize());
+        this.graph = (context.getLinkGraphFile() == null) ? null : new LinkGraphBuilder();
+        this.spill = (context.getSpillDirectory() == null) ? null :
+                new SpillStore(Paths.get(context.getSpillDirectory()), context.getSpillThreshold(), SPILL_SEGMENT_SIZE);
+        this.cluster = (context.getClusterMembers() == null) ? null :
+                new Cluster(context.getClusterMembers(), context.getClusterMember());
+        Path htmlDirectory = Paths.get(context.getHtmlDirectory()).toAbsolutePath().normalize();
+        this.cssDirectory = !context.isDownloadStylesheets() ? null :
+                htmlDirectory.resolve(context.getCssDirectory()).normalize();
+        this.imageDirectory = !context.isDownloadImages() ? null :
+                htmlDirectory.resolve(context.getImageDirectory()).normalize();
+        this.cssHref = (cssDirectory == null) ? null : toHref(htmlDirectory.relativize(cssDirectory));
+        this.imageHref = (imageDirectory == null) ? null : toHref(htmlDirectory.relativize(imageDirectory));
+        this.assets = ((cssDirectory == null) && (imageDirectory == null)) ? null :
+                new AssetDownloader(fetcher, context.getThreads());
     }
 
+    /**
+     * Crawls the root url and every url discovered from it, and blocks the calling thread until
+     * there are no more links marked for crawling, and every stylesheet and image has been downloaded.
+     * <p>
+     * The calling thread dispatches links from the frontier to the crawler thread-pool, but only
+     * while fewer than {@link CrawlerContext#getMaxConcurrency()} crawls are running, so that
+     * pending links are held by the frontier rather than as queued crawlers.
+     */
     @Override
     public void run() {
-        syncedAnchorTagUrls.add(context.getRootUrl());
-        crawlerPool.submit(new Crawler(context.getRootUrl(), 0));
+        start();
+        System.out.println("done!");
+    }
+
+    /**
+     * Opens the stores, and marks the root url, or the urls that were pending when the crawl
+     * was checkpointed.
+     */
+    @Override
+    protected void startCrawler() {
+        dispatcher = Thread.currentThread();
+        completion.getFuture().thenRun(() -> LockSupport.unpark(dispatcher));
+        if (cluster != null) {
+            // guards against the crawl being considered done before the crawl of every member is
+            completion.register();
+        }
+        // guards against the crawl being considered done while it is being seeded
+        completion.register();
+        try {
+            if (store != null) {
+                store.open();
+            }
+            if (contents != null) {
+                contents.open();
+            }
+            if (archive != null) {
+                archive.open();
+            }
+            if (cssDirectory != null) {
+                java.nio.file.Files.createDirectories(cssDirectory);
+            }
+            if (imageDirectory != null) {
+                java.nio.file.Files.createDirectories(imageDirectory);
+            }
+            if (context.isResume() && (checkpoint != null) && checkpoint.exists()) {
+                resume();
+            } else {
+                seed();
+            }
+        } catch (IOException e) {
+            // nothing has been marked, so the crawl is done as soon as it is awaited
+            e.printStackTrace();
+        } finally {
+            completion.arrive();
+        }
+        if (checkpoint != null) {
+            scheduleCheckpoint();
+        }
+        if (cluster != null) {
+            startCluster();
+        }
+    }
+
+    /**
+     * Dispatches links to the crawler thread-pool until the crawl is done.
+     */
+    @Override
+    protected void await() {
+        try {
+            dispatch();
+        } catch (InterruptedException e) {
+            crawlerPool.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            crawlerPool.shutdown();
+        }
+    }
+
+    /**
+     * Waits for the stylesheets that were requested during the crawl to be downloaded.
+     */
+    @Override
+    protected void downloadStylesheets() {
+        if ((assets == null) || Thread.currentThread().isInterrupted()) { return; }
+        try {
+            assets.awaitStylesheets();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the images that were requested during the crawl to be downloaded.
+     */
+    @Override
+    protected void downloadImages() {
+        if ((assets == null) || Thread.currentThread().isInterrupted()) { return; }
+        try {
+            assets.awaitImages();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the callbacks and the asset thread-pool, closes the stores, and writes the link graph.
+     */
+    @Override
+    protected void cleanup() {
+        stopCallback();
+        if (cluster != null) {
+            closeCluster();
+        }
+        if (assets != null) {
+            assets.shutdown();
+        }
+        if (checkpoint != null) {
+            closeCheckpoint();
+        }
+        closeStores();
+        if (graph != null) {
+            writeLinkGraph();
+        }
+    }
+
+    /**
+     * Returns the graph of the links between the urls of the domain that have been crawled so far,
+     * which may be called during or after the crawl.
+     * @return the graph, or <code>null</code> if the link graph is not recorded.
+     */
+    public LinkGraph getLinkGraph() {
+        return (graph == null) ? null : graph.build();
+    }
+
+    /*
+    returns the specified relative path as a url path prefix
+     */
+    private static String toHref(final Path path) {
+        StringBuilder sb = new StringBuilder();
+        for (Path name : path) {
+            if (!name.toString().isEmpty()) {
+                sb.append(name).append('/');
+            }
+        }
+        return sb.toString();
+    }
+
+    /*
+    marks the root url
+     */
+    private void seed() throws IOException {
+        Link root = new Link(Urls.canonicalize(context.getRootUrl()), 0);
+        if (checkpoint != null) {
+            // opened before the root url is marked, so that it is logged after the first snapshot
+            checkpoint.open(markedUrls);
+        }
+        markedUrls.add(root.getUrl());
+        if ((cluster != null) && !cluster.isLocal(root.getUrl())) {
+            // the root url is crawled by the member that owns it
+            documentsMarked.set(0);
+            return;
+        }
+        documentsMarkedPerDepth.increment(0);
+        if (checkpoint != null) {
+            checkpoint.marked(root);
+        }
+        mark(root);
+    }
+
+    /*
+    restores the seen-set and counters of the checkpoint, and marks the urls that were pending
+     */
+    private void resume() throws IOException {
+        checkpoint.load(markedUrls, this::mark);
+        int[] marked = checkpoint.getMarked();
+        int[] crawled = checkpoint.getCrawled();
+        for (int depth = 0; depth < marked.length; depth++) {
+            documentsMarkedPerDepth.add(depth, marked[depth]);
+        }
+        for (int depth = 0; depth < crawled.length; depth++) {
+            documentsCrawledPerDepth.add(depth, crawled[depth]);
+        }
+        // urls that were marked again at a lower depth are counted at each depth, but once by the totals
+        documentsMarked.set(checkpoint.getMarkedCount());
+        documentsCrawled.set(checkpoint.getCrawledCount());
+        checkpoint.open(markedUrls);
+    }
+
+    /*
+    starts exchanging links with the other members of the cluster; this member is idle once only
+    the cluster's guard is pending, and the crawl is done once the cluster is
+     */
+    private void startCluster() {
+        try {
+            cluster.start(this::receive, () -> (completion.getPending() == 1), completion::arrive);
+        } catch (IOException e) {
+            e.printStackTrace();
+            completion.arrive();
+        }
+    }
+
+    private void closeCluster() {
+        try {
+            cluster.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-        if (context.getCallback() != null) {
-            scheduleCallback();
+    /*
+    marks the links forwarded by other members of the cluster, unless they have already been marked at
+    the same or a lower depth
+     */
+    private void receive(final List<Link> links) {
+        for (Link link : links) {
+            Link marked = newLink(link.getUrl(), link.getDepth(),
+                    markedUrls.addAtDepth(link.getUrl(), link.getDepth()));
+            if (marked != null) {
+                mark(marked);
+            }
+        }
+    }
+
+    /*
+    returns the link to mark for the specified url, which was present in the seen-set at the specified
+    previous depth, or -1 if it was not, or null if it is not to be marked; a url that was present at a greater
+    depth is marked again, to follow the links of its document from the lower depth, but is not counted
+    as another document
+     */
+    private Link newLink(final String url, final int depth, final int previous) {
+        if (previous == -1) {
+            if (reserve(depth)) {
+                return new Link(url, depth);
+            }
+            // never marked again, as it was not counted
+            markedUrls.addAtDepth(url, 0);
+            return null;
         }
+        if (previous <= depth) { return null; }
+        documentsMarkedPerDepth.increment(depth);
+        return new Link(url, depth, 0, true);
+    }
+
+    /**
+     * Returns a future that is completed once every crawler has finished.
+     * @return the completion handle of this crawl.
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion.getFuture();
+    }
 
+    /*
+    registers the specified link before it is added to the frontier, so that the crawl
+    can not be considered done while the link is still pending
+     */
+    private void mark(final Link link) {
+        completion.register();
+        frontier.offer(link);
+        LockSupport.unpark(dispatcher);
+    }
+
+    /*
+    hands links to the crawler thread-pool, one per free permit, until the crawl is done
+     */
+    private void dispatch() throws InterruptedException {
         while (true) {
-            // documentsMarked is always 2 greater than documentsCrawled
-            if (crawlerPool.getActiveCount() == 0) {
-                stopCallback();
-                System.out.println("done!");
-                break;
+            permits.acquire();
+            Link link = take();
+            if (link == null) {
+                permits.release();
+                return;
+            }
+            crawling.incrementAndGet();
+            crawlerPool.execute(new Crawler(link));
+        }
+    }
+
+    /*
+    returns the next link, blocking while the frontier has none available, or null once the crawl is done
+     */
+    private Link take() throws InterruptedException {
+        Link link;
+        while ((link = frontier.poll(getMaxDispatchDepth())) == null) {
+            if (completion.isDone()) {
+                return null;
+            }
+            long delay = frontier.getDelay(getMaxDispatchDepth(), TimeUnit.NANOSECONDS);
+            if (delay < 0) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, delay);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        signalThrottled();
+        return link;
+    }
+
+    /*
+    blocks the calling crawler while the frontier holds the maximum # of pending urls, so that crawlers
+    discovering urls faster than they are crawled are slowed down rather than growing the frontier without
+    bound; the frontier is drained by crawlers that finish, so the last crawler that is still running is
+    never blocked, and the frontier may briefly hold more than the maximum
+     */
+    private void throttle() {
+        int max = context.getMaxPendingUrls();
+        if ((max == 0) || (frontier.size() < max)) { return; }
+        synchronized (throttle) {
+            while ((max <= frontier.size()) && (throttled + 1 < crawling.get())) {
+                throttled++;
+                try {
+                    throttle.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    throttled--;
+                }
+            }
+        }
+    }
+
+    /*
+    wakes a throttled crawler, once the frontier has been polled or a crawler has finished
+     */
+    private void signalThrottled() {
+        if (context.getMaxPendingUrls() == 0) { return; }
+        synchronized (throttle) {
+            if (throttled != 0) {
+                throttle.notify();
+            }
+        }
+    }
+
+    /*
+    constructs the queue of a host; the queue of each depth spills to the shared store, if enabled
+     */
+    private Frontier newHostQueue() {
+        if (spill == null) {
+            return new DepthFrontier();
+        }
+        return new DepthFrontier(() -> new SpillingFrontier(spill));
+    }
+
+    /*
+    returns the maximum depth of the links that may currently be dispatched; when strictly breadth-first,
+    this is the lowest depth that still has links that have not been crawled
+     */
+    private int getMaxDispatchDepth() {
+        if (!context.isStrictBreadthFirst()) {
+            return Integer.MAX_VALUE;
+        }
+        for (int depth = 0, n = documentsMarkedPerDepth.size(); depth < n; depth++) {
+            if (documentsCrawledPerDepth.get(depth) < documentsMarkedPerDepth.get(depth)) {
+                return depth;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /*
+    counts a newly marked url, unless the maximum # of documents have already been marked
+     */
+    private boolean reserve(final int depth) {
+        int max = context.getMaxDocuments();
+        if (max == 0) {
+            documentsMarked.incrementAndGet();
+        } else {
+            int n;
+            do {
+                n = documentsMarked.get();
+                if (max <= n) {
+                    return false;
+                }
+            } while (!documentsMarked.compareAndSet(n, n + 1));
+        }
+        documentsMarkedPerDepth.increment(depth);
+        return true;
+    }
+
+    @Override
+    protected void scheduleCallback() {
+        if (context.getCallback() == null) { return; }
+        scheduler.scheduleAtFixedRate(() -> context.getCallback().accept(
+                getProgress(documentsCrawledRecently.getAndSet(0), bytesDownloadedRecently.getAndSet(0L))),
+                5000, 5000, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the progress of the crawl, which may be called during or after the crawl. Unlike the
+     * callback, this does not start a new interval for the rates since the last callback.
+     * @return the progress.
+     */
+    public CrawlerProgress getProgress() {
+        return getProgress(documentsCrawledRecently.get(), bytesDownloadedRecently.get());
+    }
+
+    private CrawlerProgress getProgress(final int documentsCrawledRecently, final long bytesDownloadedRecently) {
+        return new CrawlerProgressBuilder()
+                .setFrequency(5000)
+                .setDocumentsMarked(documentsMarked.get())
+                .setDocumentsCrawled(documentsCrawled.get())
+                .setDocumentsMarkedPerDepth(documentsMarkedPerDepth.toArray())
+                .setDocumentsCrawledPerDepth(documentsCrawledPerDepth.toArray())
+                .setDocumentsCrawledRecently(documentsCrawledRecently)
+                .setAvgBitrate(bytesDownloadedRecently * 8)
+                .setRuntime(System.nanoTime() - runtime.get())
+                .setFetchLatency(fetchLatency.snapshot())
+                .setProcessLatency(processLatency.snapshot())
+                .setWriteLatency(writeLatency.snapshot())
+                .setResponses(getResponses())
+                .setFailedFetches(failedFetches.get())
+                .setFailedWrites(failedWrites.get())
+                .setFailedDocuments(failedDocuments.get())
+                .build();
+    }
+
+    private int[] getResponses() {
+        int[] values = new int[responses.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = responses.get(i);
+        }
+        return values;
+    }
+
+    /*
+    counts a response, unless its status code is out of range
+     */
+    private void countResponse(final int statusCode) {
+        if ((0 <= statusCode) && (statusCode < MAX_STATUS_CODE)) {
+            responses.incrementAndGet(statusCode);
+        }
+    }
+
+    /*
+    flushes the checkpoint log every second, and compacts it every checkpoint interval
+     */
+    private void scheduleCheckpoint() {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
+        }, 1000, 1000, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint.compact(markedUrls);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, context.getCheckpointInterval(), context.getCheckpointInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    private void closeCheckpoint() {
+        try {
+            checkpoint.compact(markedUrls);
+            checkpoint.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void closeStores() {
+        try {
+            if (store != null) {
+                store.close();
+            }
+            if (contents != null) {
+                contents.close();
+            }
+            if (archive != null) {
+                archive.close();
+            }
+            if (spill != null) {
+                spill.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 
-    private void scheduleCallback() {
-        scheduler.scheduleAtFixedRate(() -> {
-            context.getCallback().accept(new CrawlerProgressBuilder()
-                    .setFrequency(5000)
-                    .setDocumentsMarked(documentsMarked.get())
-                    .setDocumentsCrawled(documentsCrawled.get())
-                    .setDocumentsCrawledRecently(documentsCrawledRecently.getAndSet(0))
-                    .setAvgBitrate(bytesDownloadedRecently.getAndSet(0L) * 8)
-                    .setRuntime(System.nanoTime() - runtime.get())
-                    .build());
-        }, 5000, 5000, TimeUnit.MILLISECONDS);
+    private void writeLinkGraph() {
+        try {
+            graph.build().writeTo(Paths.get(context.getLinkGraphFile()));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     public void stopCallback() {
@@ -106,34 +715,89 @@ public class CrawlerManager implements Runnable {
     /*
     executed on a crawler thread
      */
-    private class Crawler extends AbstractHtmlCrawler implements Runnable {
+    private class Crawler extends AbstractHtmlCrawler implements DocumentRewriter.Listener, Runnable {
 
         /*################################
         #       INSTANCE VARIABLES       #
         #################################*/
 
+        // link to be crawled
+        private final Link link;
+
         // url to be crawled
         private final String url;
 
         // depth of this crawler
         private final int depth;
 
+        // whether the link has been marked to be retried
+        private boolean retried;
+
         // file where the resulting document (html) is to be stored
         private final File location;
 
+        // the relative path from the location to the html directory, which local paths are prefixed by
+        private final String rootHref;
+
         // html document representation
         private Document document;
 
+        // the fetched response
+        private Page page;
+
+        // the digest of the raw body of the response
+        private String bodyDigest;
+
+        // the content store key of the response, or null if not de-duplicating
+        private String key;
+
+        // whether a byte-identical response has already been processed
+        private boolean duplicate;
+
+        // the metadata of the previously crawled copy, or null if there is none
+        private Metadata previous;
+
+        // whether the previously crawled copy is up to date
+        private boolean unchanged;
+
+        // the in-scope urls linked to by the document, if crawling incrementally or recording the link graph
+        private final List<String> links = new ArrayList<>();
+
+        // parses the urls referenced by the document
+        private final UrlView view = new UrlView();
+
+        // rewrites the urls referenced by the document to their local res
+        private final DocumentRewriter rewriter;
+
+        // # of bytes written to location
+        private long size;
+
+        // System.nanoTime() when parsing of the document started
+        private long processStart;
+
+        // the downloaded images of the document, whose src is replaced once their files are known
+        private final List<ImageDownload> images = new ArrayList<>();
+
+        // whether the document is written once its images have been downloaded, rather than by start()
+        private boolean deferred;
+
         /**
-         * Constructs a new instance using the specified <code>url</code> and <code>depth</code>.
-         * @param url the url of the website to be crawled.
-         * @param depth the depth of this crawler, where <code>0</code> is the depth of the root crawler.
+         * Constructs a new instance using the specified <code>link</code>.
+         * @param link the link of the website to be crawled.
          */
-        private Crawler(final String url, final int depth) {
-            this.url = url;
-            this.depth = depth;
-            this.location =
-                    Files.mk(context.getHtmlDirectory(), context.getEncoder().encode(url), Files.Extension.HTML);
+        private Crawler(final Link link) {
+            this.link = link;
+            this.url = link.getUrl();
+            this.depth = link.getDepth();
+            String fileName = context.getEncoder().encode(url);
+            this.location = Files.mk(context.getHtmlDirectory(), fileName, Files.Extension.HTML);
+            StringBuilder sb = new StringBuilder();
+            for (int i = fileName.indexOf('/'); i != -1; i = fileName.indexOf('/', i + 1)) {
+                sb.append("../");
+            }
+            this.rootHref = sb.toString();
+            this.rewriter = new DocumentRewriter(context.getEncoder(), context.getDomainName(), rootHref,
+                    cssHref, imageHref, depth + 1 <= context.getLinkDepth(), this);
         }
 
         /**
@@ -142,92 +806,205 @@ public class CrawlerManager implements Runnable {
         @Override
         protected void connect() {
             try {
-                document = Jsoup.connect(url)
-                        .timeout(context.getConnectionTimeout())
-                        .userAgent(context.getUserAgent())
-                        .followRedirects(false)
-                        .get();
-            } catch (IOException ignored) { }
+                if (context.isDiscoveryOnly()) {
+                    scan();
+                    return;
+                }
+                // the previously crawled copy is only reusable if it is still on the filesystem
+                previous = ((store != null) && ((archive != null) || location.isFile())) ? store.get(url) : null;
+                page = fetch();
+                if (page.isNotModified()) {
+                    unchanged = true;
+                    return;
+                }
+                if ((store == null) && (contents == null)) {
+                    processStart = System.nanoTime();
+                    document = page.parse();
+                    return;
+                }
+                bodyDigest = page.getDigest();
+                unchanged = (previous != null) && bodyDigest.equals(previous.getContentHash());
+                if (unchanged) { return; }
+                if (contents != null) {
+                    key = ContentStore.getKey(bodyDigest, url, depth + 1 <= context.getLinkDepth(), rootHref);
+                    // its links have already been marked, unless the url is revisited to mark them at a lower depth
+                    duplicate = !link.isRevisit() && contents.isProcessed(key);
+                }
+                if (!duplicate) {
+                    processStart = System.nanoTime();
+                    document = page.parse();
+                }
+            } catch (StatusCodeException e) {
+                failedFetches.incrementAndGet();
+                if (e.isThrottled()) {
+                    retry(e.getRetryAfter());
+                }
+            } catch (HttpTimeoutException e) {
+                failedFetches.incrementAndGet();
+                retry(-1L);
+            } catch (IOException e) {
+                failedFetches.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
 
-        /**
-         * Processes any anchorTags present in the document.
-         */
         @Override
-        protected void processAnchorTags() {
-            if (document == null) { return; }
-            // replace anchor tags with local res
-            Elements anchorTags = document.select("a[href]");
-            for (Element anchorTag : anchorTags) {
-                String absUrl = anchorTag.absUrl("href");
-                if (skipAnchorTag(absUrl)) {
-                    anchorTag.attr("href", "#");
-                    continue;
-                }
-                anchorTag.attr("href",
-                        Files.toPath(context.getEncoder().encode(absUrl), Files.Extension.HTML));
-                synchronized (syncedAnchorTagUrls) {
-                    boolean success = syncedAnchorTagUrls.add(absUrl);
-                    if (success) {
-                        documentsMarked.incrementAndGet();
-                        crawlerPool.submit(new Crawler(absUrl, depth + 1));
-                    }
-                }
-            }
+        protected Document getDocument() {
+            return document;
         }
 
-        /**
-         * Processes any stylesheets present in the document.
-         */
         @Override
-        protected void processStylesheets() {
-            if (document == null) { return; }
-            // replace stylesheets href with local path
-            Elements stylesheets = document.select("link[rel=stylesheet]");
-            stylesheets.remove();
+        protected Map<String, List<ElementHandler>> getElementHandlers() {
+            return context.getElementHandlers();
         }
 
         /**
-         * Processes any images present in the document.
+         * Counts the document as failed, and discards it, as it has only been partially processed.
+         * The links that it has already marked are still crawled.
          */
         @Override
-        protected void processImages() {
-            if (document == null) { return; }
-            Elements images = document.select("picture img[srcSet], img[srcSet], img[data-srcSet]");
-            images.remove();
-            images = document.select("img[src~(?i)\\.(png|jpe?g)]");
+        protected void processHandlerFailure(final Element element, final RuntimeException e) {
+            failedDocuments.incrementAndGet();
+            document = null;
+        }
 
+        @Override
+        protected boolean processAnchorTag(final Element anchorTag) {
+            return rewriter.rewriteAnchorTag(anchorTag);
+        }
+
+        @Override
+        protected boolean processStylesheet(final Element stylesheet) {
+            return rewriter.rewriteStylesheet(stylesheet);
+        }
+
+        @Override
+        protected boolean processImage(final Element image) {
+            return rewriter.rewriteImage(image);
+        }
+
+        @Override
+        protected boolean processScript(final Element script) {
+            return rewriter.rewriteScript(script);
+        }
+
+        @Override
+        public void onLink(final String absUrl, final boolean followed) {
+            if ((store != null) || (graph != null)) {
+                links.add(absUrl);
+            }
+            if (followed) {
+                markUrl(absUrl);
+            }
         }
 
-        /**
-         * Processes any script tags present in the document.
-         */
         @Override
-        protected void processScripts() {
-            if (document == null) { return; }
-            // remove js files
-            Elements scripts = document.select("script");
-            scripts.remove();
+        public void onStylesheet(final String absUrl, final String fileName) {
+            assets.downloadStylesheet(absUrl, cssDirectory.resolve(fileName));
+        }
+
+        @Override
+        public void onImage(final Element image, final String absUrl, final String fileName) {
+            images.add(new ImageDownload(image, fileName,
+                    assets.downloadImage(absUrl, imageDirectory.resolve(fileName))));
         }
 
         /**
-         * Writes the document (html) to the filesystem.
+         * Writes the document (html) to the filesystem, unless an image of the document has yet to be
+         * downloaded, in which case the document is written once it has been, without this thread waiting.
          */
         @Override
         protected void write() {
-            if (document == null) { return; }
-            try (FileWriter writer = new FileWriter(location)) {
-                writer.write(document.html());
+            if (document != null) {
+                // the document has been processed since it was parsed
+                processLatency.record(System.nanoTime() - processStart);
+                if (!setImageSources()) {
+                    deferred = true;
+                    return;
+                }
+            }
+            writeDocument();
+        }
+
+        /*
+        replaces the src of every image whose file was kept with its local path, and returns true,
+        unless an image has yet to be downloaded, in which case no src is replaced
+         */
+        private boolean setImageSources() {
+            for (ImageDownload image : images) {
+                if (!image.extension.isDone()) {
+                    return false;
+                }
+            }
+            for (ImageDownload image : images) {
+                // the extension is never completed exceptionally
+                Files.Extension extension = image.extension.join();
+                if (extension != null) {
+                    image.element.attr("src", rewriter.getImageSource(image.fileName, extension));
+                }
+            }
+            images.clear();
+            return true;
+        }
+
+        private void writeDocument() {
+            long start = System.nanoTime();
+            try {
+                if (unchanged) {
+                    // the stored document already links to the local res of these urls
+                    links.addAll(store.getLinks(url));
+                    if (depth + 1 <= context.getLinkDepth()) {
+                        for (String absUrl : links) {
+                            markUrl(absUrl);
+                        }
+                    }
+                    store.refetched(url, System.currentTimeMillis());
+                    return;
+                }
+                if ((archive == null) && (duplicate || (document != null))) {
+                    // the encoder may have placed the file in a subdirectory
+                    java.nio.file.Files.createDirectories(location.toPath().getParent());
+                }
+                if (duplicate) {
+                    // no metadata is stored, as the links of the document were not extracted
+                    contents.link(key, location, url);
+                    return;
+                }
+                if (document == null) { return; }
+                if (archive != null) {
+                    size = archive.write(url, page.getStatusCode(), page.getHeaders(), document);
+                } else if (contents != null) {
+                    size = contents.write(key, document, location, url);
+                } else {
+                    size = DocumentWriter.write(document, location);
+                }
+                if (store != null) {
+                    store.put(url, new Metadata(page.getETag(), page.getLastModified(),
+                            bodyDigest, System.currentTimeMillis(), links));
+                }
             } catch (IOException e) {
+                failedWrites.incrementAndGet();
                 e.printStackTrace();
+            } finally {
+                if (duplicate || (document != null)) {
+                    writeLatency.record(System.nanoTime() - start);
+                }
             }
         }
 
         @Override
         public void log() {
-            long size = Files.size(location);
+            if (retried || deferred) { return; }
+            if (graph != null) {
+                // the links of an unchanged document have been read back from its previously crawled copy
+                graph.addLinks(url, depth, links);
+            }
             bytesDownloadedRecently.addAndGet(size);
-            documentsCrawled.incrementAndGet();
+            if (!link.isRevisit()) {
+                // the url has already been counted by the link it was first marked at
+                documentsCrawled.incrementAndGet();
+            }
             documentsCrawledRecently.incrementAndGet();
         }
 
@@ -236,20 +1013,217 @@ public class CrawlerManager implements Runnable {
          */
         @Override
         protected void cleanup() {
+            if (deferred) { return; }
             document = null;
+            page = null;
         }
 
         @Override
         public void run() {
-            start();
+            try {
+                if (isSuperseded()) {
+                    // crawled by the link of the lower depth instead, but counted by this one, if it is the first
+                    if (!link.isRevisit()) {
+                        documentsCrawled.incrementAndGet();
+                    }
+                } else {
+                    start();
+                }
+            } finally {
+                if (deferred) {
+                    // the crawl of the link is finished by whichever crawler thread writes the document
+                    CompletableFuture.allOf(images.stream().map(image -> image.extension)
+                            .toArray(CompletableFuture[]::new))
+                            .whenCompleteAsync((result, throwable) -> resume(), crawlerPool);
+                } else {
+                    finish();
+                }
+            }
+        }
+
+        /*
+        writes the document once its images have been downloaded
+         */
+        private void resume() {
+            try {
+                deferred = false;
+                setImageSources();
+                writeDocument();
+                log();
+                cleanup();
+            } finally {
+                finish();
+            }
+        }
+
+        private void finish() {
+            // counted even if the crawl failed, as the depth can not be completed otherwise
+            if (!retried) {
+                documentsCrawledPerDepth.increment(depth);
+                logCrawled();
+            }
+            frontier.release(link);
+            crawling.decrementAndGet();
+            signalThrottled();
+            permits.release();
+            LockSupport.unpark(dispatcher);
+            completion.arrive();
         }
 
         /**
-         * Returns whether the specified <code>absUrl</code> should <b>not</b> be crawled.
+         * Fetches the url, and records the time taken and the status code of the response.
          */
-        private boolean skipAnchorTag(final String absUrl) {
-            return ((absUrl == null) || !(absUrl.contains(context.getDomainName())) || (absUrl.startsWith("#")) ||
-                    (context.getLinkDepth() < depth + 1) || !(Urls.isHttpOrHttps(absUrl)));
+        private Page fetch() throws IOException, InterruptedException {
+            long start = System.nanoTime();
+            try {
+                // the body is only buffered if its digest is needed before it is parsed
+                Page page = fetcher.fetch(url, previous, (store != null) || (contents != null));
+                countResponse(page.getStatusCode());
+                return page;
+            } catch (StatusCodeException e) {
+                countResponse(e.getStatusCode());
+                throw e;
+            } finally {
+                fetchLatency.record(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Fetches the url, scanning its body for the urls of its anchor tags as it is received, and writing
+         * it to the location if raw bodies are written, and records the time taken and the status code of
+         * the response.
+         */
+        private void scan() throws IOException, InterruptedException {
+            boolean follow = depth + 1 <= context.getLinkDepth();
+            LinkScanner scanner = (follow || (graph != null)) ? new LinkScanner(url, href -> {
+                String absUrl = canonicalize(href);
+                if ((absUrl == null) || !view.isInDomain(context.getDomainName())) { return; }
+                if (graph != null) {
+                    links.add(absUrl);
+                }
+                if (follow) {
+                    markUrl(absUrl);
+                }
+            }) : null;
+            Path file = null;
+            if (context.isWriteRawBodies()) {
+                // the encoder may have placed the file in a subdirectory
+                java.nio.file.Files.createDirectories(location.toPath().getParent());
+                file = location.toPath();
+            }
+            long start = System.nanoTime();
+            try {
+                countResponse(fetcher.scan(url, scanner, file));
+            } catch (StatusCodeException e) {
+                countResponse(e.getStatusCode());
+                throw e;
+            } finally {
+                fetchLatency.record(System.nanoTime() - start);
+            }
+            if (file != null) {
+                size = java.nio.file.Files.size(file);
+            }
+        }
+
+        /**
+         * Penalizes the host of the link, and marks the link to be crawled again once the penalty
+         * has expired, unless it has already been attempted {@link #MAX_ATTEMPTS} times.
+         * @param retryAfter the delay in ms requested by the host, or <code>-1</code> to back off
+         * exponentially.
+         */
+        private void retry(final long retryAfter) {
+            if (MAX_ATTEMPTS <= link.getAttempts() + 1) { return; }
+            long delay = (0 <= retryAfter) ? retryAfter : (BACKOFF_MILLIS << link.getAttempts());
+            frontier.penalize(link, delay, TimeUnit.MILLISECONDS);
+            mark(link.retry());
+            retried = true;
+        }
+
+        /**
+         * Marks the specified <code>absUrl</code> for crawling at the next depth, unless it has already
+         * been marked at the same or a lower depth, or the maximum number of documents have been marked.
+         * Urls owned by another member of the cluster are forwarded to it instead, once per depth
+         * that is lower than the depths they were forwarded at before.
+         */
+        private void markUrl(final String absUrl) {
+            Link link = null;
+            // a compaction of the checkpoint does not start a new log between the url being seen and logged
+            long stamp = (checkpoint == null) ? 0L : checkpoint.beginMark();
+            try {
+                int previous = markedUrls.addAtDepth(absUrl, depth + 1);
+                if ((previous != -1) && (previous <= depth + 1)) { return; }
+                if ((cluster != null) && !cluster.isLocal(absUrl)) {
+                    // the member that owns the url keeps the lowest depth it has been forwarded at
+                    cluster.forward(new Link(absUrl, depth + 1));
+                    return;
+                }
+                link = newLink(absUrl, depth + 1, previous);
+                if (link == null) { return; }
+                if (checkpoint != null) {
+                    checkpoint.marked(link);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                if (checkpoint != null) {
+                    checkpoint.endMark(stamp);
+                }
+            }
+            throttle();
+            mark(link);
+        }
+
+        /*
+        returns whether the url has since been marked at a lower depth than this link, which crawls it instead
+         */
+        private boolean isSuperseded() {
+            int lowest = markedUrls.getDepth(url);
+            return (lowest != -1) && (lowest < depth);
+        }
+
+        /*
+        logs the link as crawled to the checkpoint, if there is one
+         */
+        private void logCrawled() {
+            if (checkpoint == null) { return; }
+            try {
+                checkpoint.crawled(link);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Parses the specified <code>absUrl</code> into the view, and returns its canonical form,
+         * so that urls that only differ by case, default port, fragment or parameter order are
+         * considered equal.
+         * @return the canonical url, or <code>null</code> if the specified <code>absUrl</code> is not
+         * a http or https url.
+         */
+        private String canonicalize(final String absUrl) {
+            if (!view.parse(absUrl) || !view.isHttpOrHttps()) { return null; }
+            return view.canonicalize();
+        }
+    }
+
+    /*
+    an image of a document, whose src is replaced with the local path of its file once its extension is known
+     */
+    private static final class ImageDownload {
+
+        private final Element element;
+
+        // the name of the file, without an extension
+        private final String fileName;
+
+        // null if the image was not kept
+        private final CompletableFuture<Files.Extension> extension;
+
+        private ImageDownload(final Element element, final String fileName,
+                              final CompletableFuture<Files.Extension> extension) {
+            this.element = element;
+            this.fileName = fileName;
+            this.extension = extension;
         }
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,9 @@
 package com.github.wnebyte.crawler;
 
+import com.github.wnebyte.crawler.struct.LatencyHistogram;
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * This class represents the progress of a crawl.
  */
@@ -17,13 +21,41 @@ public class CrawlerProgress {
 
     private final double currentUrlsPerSecond;
 
+    private final int[] documentsMarkedPerDepth;
+
+    private final int[] documentsCrawledPerDepth;
+
+    private final LatencyHistogram.Snapshot fetchLatency;
+
+    private final LatencyHistogram.Snapshot processLatency;
+
+    private final LatencyHistogram.Snapshot writeLatency;
+
+    // # of responses per status code
+    private final int[] responses;
+
+    private final int failedFetches;
+
+    private final int failedWrites;
+
+    private final int failedDocuments;
+
     public CrawlerProgress(
             final long avgBitRate,
             final int documentsCrawled,
             final int documentsMarked,
             final long runtime,
             final double avgUrlsPerSecond,
-            final double currentUrlsPerSecond
+            final double currentUrlsPerSecond,
+            final int[] documentsMarkedPerDepth,
+            final int[] documentsCrawledPerDepth,
+            final LatencyHistogram.Snapshot fetchLatency,
+            final LatencyHistogram.Snapshot processLatency,
+            final LatencyHistogram.Snapshot writeLatency,
+            final int[] responses,
+            final int failedFetches,
+            final int failedWrites,
+            final int failedDocuments
             ) {
         this.avgBitRate = avgBitRate;
         this.documentsCrawled = documentsCrawled;
@@ -31,6 +63,15 @@ public class CrawlerProgress {
         this.runtime = runtime;
         this.avgUrlsPerSecond = avgUrlsPerSecond;
         this.currentUrlsPerSecond = currentUrlsPerSecond;
+        this.documentsMarkedPerDepth = documentsMarkedPerDepth;
+        this.documentsCrawledPerDepth = documentsCrawledPerDepth;
+        this.fetchLatency = fetchLatency;
+        this.processLatency = processLatency;
+        this.writeLatency = writeLatency;
+        this.responses = responses;
+        this.failedFetches = failedFetches;
+        this.failedWrites = failedWrites;
+        this.failedDocuments = failedDocuments;
     }
 
     /**
@@ -72,4 +113,95 @@ public class CrawlerProgress {
     public double getCurrentUrlsPerSecond() {
         return currentUrlsPerSecond;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the deepest depth that has had urls marked for crawling, where <code>0</code> is the depth
+     * of the root url.
+     */
+    public int getDepth() {
+        return documentsMarkedPerDepth.length - 1;
+    }
+
+    /**
+     * @param depth the depth.
+     * @return the number of urls of the specified <code>depth</code> that have been marked for crawling.
+     */
+    public int getDocumentsMarked(final int depth) {
+        return ((0 <= depth) && (depth < documentsMarkedPerDepth.length)) ? documentsMarkedPerDepth[depth] : 0;
+    }
+
+    /**
+     * @param depth the depth.
+     * @return the number of urls of the specified <code>depth</code> that have been crawled.
+     */
+    public int getDocumentsCrawled(final int depth) {
+        return ((0 <= depth) && (depth < documentsCrawledPerDepth.length)) ? documentsCrawledPerDepth[depth] : 0;
+    }
+
+    /**
+     * @return the time in ns taken by each request, including requests that failed, since the
+     * initialisation of the crawler.
+     */
+    public LatencyHistogram.Snapshot getFetchLatency() {
+        return fetchLatency;
+    }
+
+    /**
+     * @return the time in ns taken to parse each document and rewrite its references to local res,
+     * since the initialisation of the crawler.
+     */
+    public LatencyHistogram.Snapshot getProcessLatency() {
+        return processLatency;
+    }
+
+    /**
+     * @return the time in ns taken to write each document, since the initialisation of the crawler.
+     */
+    public LatencyHistogram.Snapshot getWriteLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * @param statusCode the status code.
+     * @return the number of responses with the specified <code>statusCode</code>, including responses
+     * to attempts that were retried.
+     */
+    public int getResponses(final int statusCode) {
+        return ((0 <= statusCode) && (statusCode < responses.length)) ? responses[statusCode] : 0;
+    }
+
+    /**
+     * @return the number of responses per status code, for every status code that has been received,
+     * in ascending order.
+     */
+    public Map<Integer, Integer> getResponses() {
+        Map<Integer, Integer> map = new TreeMap<>();
+        for (int statusCode = 0; statusCode < responses.length; statusCode++) {
+            if (responses[statusCode] != 0) {
+                map.put(statusCode, responses[statusCode]);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * @return the number of urls that could not be fetched or parsed, including attempts that were retried.
+     */
+    public int getFailedFetches() {
+        return failedFetches;
+    }
+
+    /**
+     * @return the number of documents that could not be written.
+     */
+    public int getFailedWrites() {
+        return failedWrites;
+    }
+
+    /**
+     * @return the number of documents that were not written, as an element handler threw while processing them.
+     */
+    public int getFailedDocuments() {
+        return failedDocuments;
+    }
+}
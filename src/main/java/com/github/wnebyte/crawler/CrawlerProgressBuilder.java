@@ -1,5 +1,7 @@
 package com.github.wnebyte.crawler;
 
+import com.github.wnebyte.crawler.struct.LatencyHistogram;
+
 public class CrawlerProgressBuilder {
 
     private double s;
@@ -14,6 +16,24 @@ public class CrawlerProgressBuilder {
 
     private long runtime;
 
+    private int[] documentsMarkedPerDepth = new int[0];
+
+    private int[] documentsCrawledPerDepth = new int[0];
+
+    private LatencyHistogram.Snapshot fetchLatency = new LatencyHistogram().snapshot();
+
+    private LatencyHistogram.Snapshot processLatency = fetchLatency;
+
+    private LatencyHistogram.Snapshot writeLatency = fetchLatency;
+
+    private int[] responses = new int[0];
+
+    private int failedFetches;
+
+    private int failedWrites;
+
+    private int failedDocuments;
+
     public CrawlerProgressBuilder setFrequency(final long millis) {
         this.s = millis / 1000.0;
         return this;
@@ -44,6 +64,63 @@ public class CrawlerProgressBuilder {
         return this;
     }
 
+    public CrawlerProgressBuilder setDocumentsMarkedPerDepth(final int[] documentsMarkedPerDepth) {
+        if (documentsMarkedPerDepth != null) {
+            this.documentsMarkedPerDepth = documentsMarkedPerDepth;
+        }
+        return this;
+    }
+
+    public CrawlerProgressBuilder setDocumentsCrawledPerDepth(final int[] documentsCrawledPerDepth) {
+        if (documentsCrawledPerDepth != null) {
+            this.documentsCrawledPerDepth = documentsCrawledPerDepth;
+        }
+        return this;
+    }
+
+    public CrawlerProgressBuilder setFetchLatency(final LatencyHistogram.Snapshot fetchLatency) {
+        if (fetchLatency != null) {
+            this.fetchLatency = fetchLatency;
+        }
+        return this;
+    }
+
+    public CrawlerProgressBuilder setProcessLatency(final LatencyHistogram.Snapshot processLatency) {
+        if (processLatency != null) {
+            this.processLatency = processLatency;
+        }
+        return this;
+    }
+
+    public CrawlerProgressBuilder setWriteLatency(final LatencyHistogram.Snapshot writeLatency) {
+        if (writeLatency != null) {
+            this.writeLatency = writeLatency;
+        }
+        return this;
+    }
+
+    public CrawlerProgressBuilder setResponses(final int[] responses) {
+        if (responses != null) {
+            this.responses = responses;
+        }
+        return this;
+    }
+
+    public CrawlerProgressBuilder setFailedFetches(final int failedFetches) {
+        this.failedFetches = failedFetches;
+        return this;
+    }
+
+    public CrawlerProgressBuilder setFailedWrites(final int failedWrites) {
+        this.failedWrites = failedWrites;
+        return this;
+    }
+
+    public CrawlerProgressBuilder setFailedDocuments(final int failedDocuments) {
+        this.failedDocuments = failedDocuments;
+        return this;
+    }
+
     public CrawlerProgress build() {
         double urlsSince = documentsCrawledRecently / s;
         double urls = (runtime != 0) ?
@@ -55,7 +132,16 @@ public class CrawlerProgressBuilder {
                 documentsMarked,
                 runtime,
                 urls,
-                urlsSince
+                urlsSince,
+                documentsMarkedPerDepth,
+                documentsCrawledPerDepth,
+                fetchLatency,
+                processLatency,
+                writeLatency,
+                responses,
+                failedFetches,
+                failedWrites,
+                failedDocuments
         );
     }
 }
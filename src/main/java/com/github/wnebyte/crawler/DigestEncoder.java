@@ -0,0 +1,43 @@
+package com.github.wnebyte.crawler;
+
+import com.github.wnebyte.crawler.util.Hashes;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class is an {@link Encoder} that encodes urls into fixed-length file names, spread over a two-level
+ * directory layout.
+ * <p>
+ * A url is encoded as the hex of the first 128 bits of its SHA-256 digest, prefixed by two directories
+ * named by the first two pairs of hex digits, for example <code>3f/a2/3fa2...c9</code>. Names are therefore
+ * always short enough for any filesystem, collisions are practically impossible, and no directory holds
+ * more than 256 subdirectories, or more than a 65536th of the files.
+ * <p>
+ * Digests are pooled and reused between urls, rather than held by every thread that has encoded a url.
+ * Instances are safe for use by multiple concurrent crawler threads.
+ */
+public class DigestEncoder implements Encoder<String> {
+
+    // the # of bytes of the digest used
+    private static final int DIGEST_BYTES = 16;
+
+    // digests that are not currently in use by an encoder
+    private static final Queue<MessageDigest> pool = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public String encode(final String value) {
+        MessageDigest md = pool.poll();
+        if (md == null) {
+            md = Hashes.newSha256();
+        }
+        // digest() resets the digest, so it can be returned to the pool as is
+        byte[] digest = md.digest(value.getBytes(StandardCharsets.UTF_8));
+        pool.offer(md);
+        byte[] bytes = new byte[DIGEST_BYTES];
+        System.arraycopy(digest, 0, bytes, 0, DIGEST_BYTES);
+        String hex = Hashes.toHex(bytes);
+        return hex.substring(0, 2) + '/' + hex.substring(2, 4) + '/' + hex;
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.wnebyte.crawler;
+
+import com.github.wnebyte.crawler.util.Files;
+import com.github.wnebyte.crawler.util.UrlView;
+import org.jsoup.nodes.Element;
+
+/**
+ * This class rewrites the urls referenced by the elements of a crawled document to the local res of the
+ * crawl, and reports each url that is to be crawled or downloaded to its {@link Listener}.
+ * <p>
+ * Each rewrite method returns whether the element should be kept, as the process methods of
+ * {@link AbstractHtmlCrawler} do. An instance rewrites a single document, and is not safe for use by
+ * multiple concurrent threads.
+ */
+public class DocumentRewriter {
+
+    /**
+     * This interface declares the methods called for the urls of a document that are to be crawled or
+     * downloaded.
+     */
+    public interface Listener {
+
+        /**
+         * Called for the canonical url of every anchor tag that links to the domain.
+         * @param absUrl the url.
+         * @param followed whether the href of the anchor tag was replaced with the local res of the url.
+         */
+        void onLink(final String absUrl, final boolean followed);
+
+        /**
+         * Called for every stylesheet, whose href has been replaced with the local path of its file.
+         * @param absUrl the url of the stylesheet.
+         * @param fileName the name of its file, relative to the css directory.
+         */
+        void onStylesheet(final String absUrl, final String fileName);
+
+        /**
+         * Called for every image that is to be downloaded, whose src has been replaced with its url.
+         * As the extension of its file is only known once it has been downloaded, the listener is to replace
+         * the src with the local path of its file, if it is kept.
+         * @param image the element.
+         * @param absUrl the url of the image.
+         * @param fileName the name of its file, relative to the image directory, without an extension.
+         */
+        void onImage(final Element image, final String absUrl, final String fileName);
+    }
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    private final Encoder<String> encoder;
+
+    private final String domainName;
+
+    // the relative path from the document to the html directory, which local paths are prefixed by
+    private final String rootHref;
+
+    // the relative paths from the html directory to the css and image directories, or null if not downloaded
+    private final String cssHref;
+
+    private final String imageHref;
+
+    // whether anchor tags are rewritten to the local res of their urls
+    private final boolean follow;
+
+    private final Listener listener;
+
+    // parses the urls referenced by the document
+    private final UrlView view = new UrlView();
+
+    /**
+     * Constructs a new instance.
+     * @param encoder the encoder of the file names of urls.
+     * @param domainName the domain name of the crawl.
+     * @param rootHref the relative path from the document to the html directory.
+     * @param cssHref the relative path from the html directory to the css directory,
+     * or <code>null</code> if stylesheets are not downloaded.
+     * @param imageHref the relative path from the html directory to the image directory,
+     * or <code>null</code> if images are not downloaded.
+     * @param follow whether the urls of anchor tags are to be crawled.
+     * @param listener the listener.
+     */
+    public DocumentRewriter(final Encoder<String> encoder, final String domainName, final String rootHref,
+                            final String cssHref, final String imageHref, final boolean follow,
+                            final Listener listener) {
+        if (encoder == null) {
+            throw new IllegalArgumentException(
+                    "encoder must be non null"
+            );
+        }
+        if (domainName == null) {
+            throw new IllegalArgumentException(
+                    "domainName must be non null"
+            );
+        }
+        if (rootHref == null) {
+            throw new IllegalArgumentException(
+                    "rootHref must be non null"
+            );
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException(
+                    "listener must be non null"
+            );
+        }
+        this.encoder = encoder;
+        this.domainName = domainName;
+        this.rootHref = rootHref;
+        this.cssHref = cssHref;
+        this.imageHref = imageHref;
+        this.follow = follow;
+        this.listener = listener;
+    }
+
+    /**
+     * Replaces the href of the anchor tag with the local res of its url, or <code>#</code> if the url
+     * is not to be crawled.
+     * @param anchorTag the element.
+     * @return <code>true</code>.
+     */
+    public boolean rewriteAnchorTag(final Element anchorTag) {
+        String absUrl = canonicalize(anchorTag.absUrl("href"));
+        if ((absUrl == null) || !view.isInDomain(domainName)) {
+            anchorTag.attr("href", "#");
+            return true;
+        }
+        anchorTag.attr("href", follow ? rootHref + Files.toPath(encoder.encode(absUrl), Files.Extension.HTML) : "#");
+        listener.onLink(absUrl, follow);
+        return true;
+    }
+
+    /**
+     * Replaces the href of the stylesheet with its local path.
+     * @param stylesheet the element.
+     * @return <code>false</code> if stylesheets are not downloaded, or its url is not http(s),
+     * otherwise <code>true</code>.
+     */
+    public boolean rewriteStylesheet(final Element stylesheet) {
+        if (cssHref == null) { return false; }
+        String absUrl = canonicalize(stylesheet.absUrl("href"));
+        if (absUrl == null) { return false; }
+        String fileName = Files.toPath(encoder.encode(absUrl), Files.Extension.CSS);
+        stylesheet.attr("href", rootHref + cssHref + fileName);
+        listener.onStylesheet(absUrl, fileName);
+        return true;
+    }
+
+    /**
+     * Replaces the src of the image with its url, if images are downloaded, which the listener replaces
+     * with its local path once it has been downloaded.
+     * @param image the element.
+     * @return <code>false</code> if the image is responsive, otherwise <code>true</code>.
+     */
+    public boolean rewriteImage(final Element image) {
+        if (image.hasAttr("srcset") || image.hasAttr("data-srcset")) { return false; }
+        if ((imageHref == null) || !image.hasAttr("src")) { return true; }
+        String absUrl = canonicalize(image.absUrl("src"));
+        if (absUrl == null) { return true; }
+        image.attr("src", absUrl);
+        listener.onImage(image, absUrl, encoder.encode(absUrl));
+        return true;
+    }
+
+    /**
+     * Returns the local path of the file of an image reported to the listener, relative to the document.
+     * @param fileName the name of the file, as reported to the listener.
+     * @param extension the extension of the file.
+     * @return the local path.
+     */
+    public String getImageSource(final String fileName, final Files.Extension extension) {
+        return rootHref + imageHref + Files.toPath(fileName, extension);
+    }
+
+    /**
+     * Scripts are never kept.
+     * @param script the element.
+     * @return <code>false</code>.
+     */
+    public boolean rewriteScript(final Element script) {
+        return false;
+    }
+
+    private String canonicalize(final String absUrl) {
+        if (!view.parse(absUrl) || !view.isHttpOrHttps()) { return null; }
+        return view.canonicalize();
+    }
+}
@@ -0,0 +1,313 @@
+package com.github.wnebyte.crawler;
+
+import com.github.wnebyte.crawler.util.Files;
+import org.jsoup.SerializationException;
+import org.jsoup.nodes.Document;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class serializes documents as UTF-8 directly into a channel, without first materializing
+ * the document as a String.
+ * <p>
+ * Encoding buffers are pooled and reused between writes, so a write allocates no buffers of its own.
+ * <p>
+ * The bytes written are those of {@link Document#outerHtml()} encoded as UTF-8, which is trimmed of leading
+ * and trailing whitespace when the document is pretty printed.
+ */
+public class DocumentWriter extends Writer {
+
+    private static final int CHAR_BUFFER_SIZE = 8 * 1024;
+
+    private static final int BYTE_BUFFER_SIZE = 32 * 1024;
+
+    // buffers that are not currently in use by a writer
+    private static final Queue<Buffers> pool = new ConcurrentLinkedQueue<>();
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    private final WritableByteChannel channel;
+
+    private final Buffers buffers;
+
+    // true if leading and trailing whitespace is trimmed, as Document#outerHtml trims it when pretty printing
+    private final boolean trim;
+
+    // false until a non whitespace char has been written, if the output is trimmed
+    private boolean started;
+
+    // # of bytes written to the channel
+    private long count;
+
+    private DocumentWriter(final WritableByteChannel channel, final boolean trim) {
+        this.channel = channel;
+        this.trim = trim;
+        Buffers buffers = pool.poll();
+        this.buffers = (buffers != null) ? buffers : new Buffers();
+    }
+
+    /**
+     * Writes the specified <code>document</code> to the specified <code>file</code>, replacing it,
+     * and declares the document's charset as UTF-8.
+     * The document is written to a temporary file that is then moved onto the file, so that a file that is
+     * a hard link to a stored document is replaced rather than overwritten.
+     * @param document the document.
+     * @param file the file.
+     * @return the number of bytes written.
+     * @throws IOException if the file could not be written.
+     */
+    public static long write(final Document document, final File file) throws IOException {
+        Path tmp = Files.newTempFile(file.toPath());
+        try {
+            long size;
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                size = write(document, channel);
+            }
+            Files.replace(tmp, file.toPath());
+            return size;
+        } finally {
+            java.nio.file.Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Writes the specified <code>document</code> to the specified <code>channel</code>,
+     * and declares the document's charset as UTF-8.
+     * The channel is not closed.
+     * @param document the document.
+     * @param channel the channel.
+     * @return the number of bytes written.
+     * @throws IOException if the channel could not be written to.
+     */
+    public static long write(final Document document, final WritableByteChannel channel) throws IOException {
+        document.charset(StandardCharsets.UTF_8);
+        DocumentWriter writer = new DocumentWriter(channel, document.outputSettings().prettyPrint());
+        try {
+            document.html(writer);
+            writer.finish();
+            return writer.count;
+        } catch (SerializationException e) {
+            // Jsoup wraps IOExceptions thrown by the Appendable
+            throw (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException(e);
+        } finally {
+            writer.release();
+        }
+    }
+
+    @Override
+    public void write(final int c) throws IOException {
+        if (trim) {
+            if (c <= ' ') {
+                if (started) {
+                    buffers.whitespace.append((char) c);
+                }
+                return;
+            }
+            started = true;
+            putWhitespace();
+        }
+        put((char) c);
+    }
+
+    @Override
+    public void write(final char[] cbuf, int off, final int len) throws IOException {
+        int end = off + len;
+        if (trim) {
+            if (!started) {
+                while ((off < end) && (cbuf[off] <= ' ')) { off++; }
+                if (off == end) { return; }
+                started = true;
+            }
+            int last = end;
+            while ((off < last) && (cbuf[last - 1] <= ' ')) { last--; }
+            if (off < last) {
+                putWhitespace();
+                put(cbuf, off, last - off);
+            }
+            buffers.whitespace.append(cbuf, last, end - last);
+        } else {
+            put(cbuf, off, len);
+        }
+    }
+
+    @Override
+    public void write(final String str, int off, final int len) throws IOException {
+        int end = off + len;
+        if (trim) {
+            if (!started) {
+                while ((off < end) && (str.charAt(off) <= ' ')) { off++; }
+                if (off == end) { return; }
+                started = true;
+            }
+            int last = end;
+            while ((off < last) && (str.charAt(last - 1) <= ' ')) { last--; }
+            if (off < last) {
+                putWhitespace();
+                put(str, off, last - off);
+            }
+            buffers.whitespace.append(str, last, end);
+        } else {
+            put(str, off, len);
+        }
+    }
+
+    @Override
+    public Writer append(final CharSequence csq) throws IOException {
+        String str = String.valueOf(csq);
+        write(str, 0, str.length());
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        encode(false);
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    private void put(final char c) throws IOException {
+        CharBuffer chars = buffers.chars;
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put(c);
+    }
+
+    private void put(final char[] cbuf, int off, int len) throws IOException {
+        CharBuffer chars = buffers.chars;
+        while (0 < len) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int n = Math.min(len, chars.remaining());
+            chars.put(cbuf, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void put(final String str, int off, int len) throws IOException {
+        CharBuffer chars = buffers.chars;
+        while (0 < len) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int n = Math.min(len, chars.remaining());
+            chars.put(str, off, off + n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /*
+    writes the whitespace held back since the last non whitespace char, now that it is not trailing
+     */
+    private void putWhitespace() throws IOException {
+        StringBuilder whitespace = buffers.whitespace;
+        for (int i = 0; i < whitespace.length(); i++) {
+            put(whitespace.charAt(i));
+        }
+        whitespace.setLength(0);
+    }
+
+    /*
+    encodes every buffered char, and writes every encoded byte to the channel; trailing whitespace is
+    never written if the output is trimmed
+     */
+    private void finish() throws IOException {
+        encode(true);
+        ByteBuffer bytes = buffers.bytes;
+        while (buffers.encoder.flush(bytes) == CoderResult.OVERFLOW) {
+            drain();
+        }
+        drain();
+    }
+
+    /*
+    encodes the buffered chars into the byte buffer, draining it into the channel whenever it fills up;
+    unless endOfInput, a trailing high surrogate is kept until its low surrogate has been written
+     */
+    private void encode(final boolean endOfInput) throws IOException {
+        CharBuffer chars = buffers.chars;
+        ByteBuffer bytes = buffers.bytes;
+        chars.flip();
+        try {
+            while (true) {
+                CoderResult result = buffers.encoder.encode(chars, bytes, endOfInput);
+                if (result.isOverflow()) {
+                    drain();
+                } else if (result.isUnderflow()) {
+                    break;
+                } else {
+                    try {
+                        result.throwException();
+                    } catch (CharacterCodingException e) {
+                        throw new IOException(e);
+                    }
+                }
+            }
+        } finally {
+            chars.compact();
+        }
+    }
+
+    /*
+    writes the encoded bytes to the channel
+     */
+    private void drain() throws IOException {
+        ByteBuffer bytes = buffers.bytes;
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            count += channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    /*
+    resets the buffers and returns them to the pool
+     */
+    private void release() {
+        buffers.chars.clear();
+        buffers.bytes.clear();
+        buffers.whitespace.setLength(0);
+        buffers.encoder.reset();
+        pool.offer(buffers);
+    }
+
+    /*
+    the reusable state of a writer
+     */
+    private static final class Buffers {
+
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+
+        // whitespace held back until it is followed by a non whitespace char
+        private final StringBuilder whitespace = new StringBuilder();
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.wnebyte.crawler;
+
+import org.jsoup.nodes.Element;
+
+/**
+ * This functional interface declares a method for processing an element of a crawled document.
+ * <p>
+ * Handlers are registered by tag name with {@link CrawlerContextBuilder#addElementHandler(String, ElementHandler)},
+ * and are called during the single traversal of each document, after the element has been processed
+ * by the crawler. Handlers are called by multiple concurrent crawler threads.
+ * <p>
+ * A handler that throws stops the traversal of the document, which is then not written, and is counted by
+ * {@link CrawlerProgress#getFailedDocuments()}.
+ */
+public interface ElementHandler {
+
+    /**
+     * Processes the specified <code>element</code>, which may be modified, but must not be removed
+     * from, or moved within, the document by the handler.
+     * @param element the element.
+     * @return <code>true</code> if the element should be kept, or <code>false</code> if it should be
+     * removed from the document, in which case its children are not traversed.
+     */
+    boolean handle(final Element element);
+}
@@ -0,0 +1,679 @@
+package com.github.wnebyte.crawler;
+
+import com.github.wnebyte.crawler.util.Hashes;
+import com.github.wnebyte.crawler.util.Images;
+import org.jsoup.nodes.Document;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.regex.Pattern;
+
+/**
+ * This class fetches documents over a single shared {@link HttpClient}, so that connections are
+ * kept alive and reused, and multiplexed over HTTP/2 where the host supports it.
+ * <p>
+ * Instances are safe for use by multiple concurrent crawler threads.
+ */
+public class Fetcher {
+
+    // content types that can be parsed into a document, mirrors what Jsoup#connect accepts
+    private static final Pattern XML_CONTENT_TYPE = Pattern.compile("(application|text)/\\w*\\+?xml.*");
+
+    /**
+     * The # of bytes of a document's body that are read, mirrors the default of <code>Jsoup#connect</code>.
+     */
+    public static final int MAX_BODY_SIZE = 1024 * 1024;
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    private final HttpClient client;
+
+    private final String userAgent;
+
+    // null if requests should never time out
+    private final Duration timeout;
+
+    /**
+     * Constructs a new instance using the user agent and connection timeout of the specified
+     * <code>context</code>.
+     * @param context the context.
+     */
+    public Fetcher(final CrawlerContext context) {
+        this.userAgent = context.getUserAgent();
+        this.timeout = (context.getConnectionTimeout() == 0) ?
+                null : Duration.ofMillis(context.getConnectionTimeout());
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NEVER);
+        if (timeout != null) {
+            builder.connectTimeout(timeout);
+        }
+        this.client = builder.build();
+    }
+
+    /**
+     * Fetches and parses the document located at the specified <code>url</code>.
+     * @param url the url of the document.
+     * @return the document, using the url it was fetched from as its base uri.
+     * @throws StatusCodeException if the response was not a successful (2xx) response.
+     * @throws IOException if the request failed, or if the response's content type can not be
+     * parsed into a document.
+     * @throws InterruptedException if the calling thread was interrupted while waiting for the response.
+     */
+    public Document get(final String url) throws IOException, InterruptedException {
+        return fetch(url, null, false).parse();
+    }
+
+    /**
+     * Fetches the document located at the specified <code>url</code>, conditionally on it having been
+     * modified since the specified <code>metadata</code> was recorded.
+     * <p>
+     * The body of an unsuccessful response, or of a response whose content type can not be parsed, is
+     * discarded as it is received. Any other body is truncated after {@link #MAX_BODY_SIZE} bytes,
+     * as <code>Jsoup#connect</code> does, and is only buffered if its digest is requested;
+     * otherwise it is parsed as it is received.
+     * @param url the url of the document.
+     * @param metadata the metadata of the previously fetched copy, or <code>null</code> if there is none.
+     * @param digest <code>true</code> if the body should be buffered, so that its digest is known
+     * before it is parsed, otherwise <code>false</code>.
+     * @return the page, which is {@link Page#isNotModified() not modified} if the previously fetched
+     * copy is still up to date.
+     * @throws StatusCodeException if the response was neither a successful (2xx) response nor,
+     * when <code>metadata</code> was specified, a not modified (304) response.
+     * @throws IOException if the request failed, or if the response's content type can not be
+     * parsed into a document.
+     * @throws InterruptedException if the calling thread was interrupted while waiting for the response.
+     */
+    public Page fetch(final String url, final Metadata metadata, final boolean digest)
+            throws IOException, InterruptedException {
+        HttpResponse<Body> response = client.send(newRequest(url, metadata), info -> {
+            if (!isSuccessful(info.statusCode())) {
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+            Optional<String> contentType = info.headers().firstValue("Content-Type");
+            if (contentType.isPresent() && !isParsable(contentType.get())) {
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+            return digest ? new BufferSubscriber() : HttpResponse.BodySubscribers.mapping(
+                    HttpResponse.BodySubscribers.ofInputStream(),
+                    in -> new Body(new LimitedInputStream(in, MAX_BODY_SIZE), null));
+        });
+        int status = response.statusCode();
+        String uri = response.uri().toString();
+        if ((status == 304) && (metadata != null)) {
+            return new Page(uri, status, response.headers(), InputStream.nullInputStream(), null, null);
+        }
+        if (!isSuccessful(status)) {
+            throw new StatusCodeException(url, status,
+                    response.headers().firstValue("Retry-After").map(Fetcher::getRetryAfter).orElse(-1L));
+        }
+        Optional<String> contentType = response.headers().firstValue("Content-Type");
+        if (response.body() == null) {
+            throw new IOException(
+                    "unsupported content type " + contentType.orElse(null) + " for url " + url
+            );
+        }
+        return new Page(uri, status, response.headers(), response.body().in, response.body().digest,
+                contentType.map(Fetcher::getCharset).orElse(null));
+    }
+
+    /**
+     * Downloads the resource located at the specified <code>url</code> to the specified <code>file</code>,
+     * streaming the body straight to a temporary file, which replaces the file once the body is complete.
+     * @param url the url of the resource.
+     * @param file the file, which is replaced if it exists.
+     * @return the number of bytes downloaded.
+     * @throws StatusCodeException if the response was not a successful (2xx) response,
+     * in which case the file is left untouched.
+     * @throws IOException if the request failed, or the file could not be written,
+     * in which case the file is left untouched.
+     * @throws InterruptedException if the calling thread was interrupted while waiting for the response.
+     */
+    public long download(final String url, final Path file) throws IOException, InterruptedException {
+        // the file is never seen partially written, so that a failed download is attempted again
+        Path tmp = com.github.wnebyte.crawler.util.Files.newTempFile(file);
+        try {
+            HttpResponse<Path> response = client.send(newRequest(url, null), info ->
+                    isSuccessful(info.statusCode()) ?
+                            HttpResponse.BodySubscribers.ofFile(tmp) :
+                            HttpResponse.BodySubscribers.replacing(null));
+            if (!isSuccessful(response.statusCode())) {
+                throw new StatusCodeException(url, response.statusCode(),
+                        response.headers().firstValue("Retry-After").map(Fetcher::getRetryAfter).orElse(-1L));
+            }
+            long size = Files.size(tmp);
+            com.github.wnebyte.crawler.util.Files.replace(tmp, file);
+            return size;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Downloads the image located at the specified <code>url</code> to the specified <code>file</code>,
+     * followed by the extension of its content type.
+     * <p>
+     * The content type of the image is identified from its leading bytes before the file is created, and
+     * the download is abandoned unless they are the signature of a supported image. The rest of the body
+     * is written to the file as it is received, without ever holding the whole image in memory.
+     * @param url the url of the image.
+     * @param file the file, without an extension, whose file with the extension is replaced if it exists.
+     * @return the content type of the image.
+     * @throws StatusCodeException if the response was not a successful (2xx) response.
+     * @throws IOException if the request failed, the body is not a supported image,
+     * or the file could not be written.
+     * @throws InterruptedException if the calling thread was interrupted while waiting for the response.
+     */
+    public String downloadImage(final String url, final Path file) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(newRequest(url, null), info ->
+                isSuccessful(info.statusCode()) ?
+                        new ImageSubscriber(url, file) :
+                        HttpResponse.BodySubscribers.replacing(null));
+        if (!isSuccessful(response.statusCode())) {
+            throw new StatusCodeException(url, response.statusCode(),
+                    response.headers().firstValue("Retry-After").map(Fetcher::getRetryAfter).orElse(-1L));
+        }
+        return response.body();
+    }
+
+    /**
+     * Fetches the document located at the specified <code>url</code>, feeding its body to the specified
+     * <code>scanner</code> as it is received, without ever holding the whole document in memory.
+     * @param url the url of the document.
+     * @param scanner the scanner, whose charset is set from the response's content type,
+     * or <code>null</code> if the body should only be received.
+     * @param file the file the raw body is also written to, which is replaced if it exists,
+     * or <code>null</code> if the body should not be kept.
+     * @return the status code of the response.
+     * @throws StatusCodeException if the response was not a successful (2xx) response,
+     * in which case the file is left untouched.
+     * @throws IOException if the request failed, the response's content type can not be
+     * parsed into a document, or the file could not be written.
+     * @throws InterruptedException if the calling thread was interrupted while waiting for the response.
+     */
+    public int scan(final String url, final LinkScanner scanner, final Path file)
+            throws IOException, InterruptedException {
+        HttpResponse<Long> response = client.send(newRequest(url, null), info -> {
+            if (!isSuccessful(info.statusCode())) {
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+            Optional<String> contentType = info.headers().firstValue("Content-Type");
+            if (contentType.isPresent() && !isParsable(contentType.get())) {
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+            String charset = contentType.map(Fetcher::getCharset).orElse(null);
+            if ((scanner != null) && (charset != null)) {
+                scanner.setCharset(Charset.forName(charset));
+            }
+            return new ScanSubscriber(scanner, file);
+        });
+        if (!isSuccessful(response.statusCode())) {
+            throw new StatusCodeException(url, response.statusCode(),
+                    response.headers().firstValue("Retry-After").map(Fetcher::getRetryAfter).orElse(-1L));
+        }
+        if (response.body() == null) {
+            throw new IOException(
+                    "unsupported content type " + response.headers().firstValue("Content-Type").orElse(null) +
+                            " for url " + url
+            );
+        }
+        return response.statusCode();
+    }
+
+    private HttpRequest newRequest(final String url, final Metadata metadata) throws IOException {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(URI.create(url));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+        builder.header("User-Agent", userAgent).GET();
+        if (timeout != null) {
+            builder.timeout(timeout);
+        }
+        if (metadata != null) {
+            if (metadata.getETag() != null) {
+                builder.header("If-None-Match", metadata.getETag());
+            }
+            if (metadata.getLastModified() != null) {
+                builder.header("If-Modified-Since", metadata.getLastModified());
+            }
+        }
+        return builder.build();
+    }
+
+    private static boolean isSuccessful(final int status) {
+        return (200 <= status) && (status < 300);
+    }
+
+    private static boolean isParsable(final String contentType) {
+        String value = contentType.toLowerCase(Locale.ROOT);
+        return value.startsWith("text/") || XML_CONTENT_TYPE.matcher(value).matches();
+    }
+
+    /*
+    returns the value of the charset parameter of the specified content type, or null if it has none,
+    in which case Jsoup detects the charset from the document itself
+     */
+    private static String getCharset(final String contentType) {
+        for (String param : contentType.split(";")) {
+            String[] pair = param.trim().split("=", 2);
+            if ((pair.length == 2) && pair[0].trim().equalsIgnoreCase("charset")) {
+                String charset = pair[1].trim().replace("\"", "");
+                return isSupported(charset) ? charset : null;
+            }
+        }
+        return null;
+    }
+
+    /*
+    returns the delay in ms requested by the specified Retry-After header value, which is either
+    a number of seconds or a http-date, or -1 if the value is malformed
+     */
+    private static long getRetryAfter(final String value) {
+        try {
+            return Math.max(0L, Long.parseLong(value.trim()) * 1000L);
+        } catch (NumberFormatException ignored) { }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0L, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+        } catch (DateTimeParseException e) {
+            return -1L;
+        }
+    }
+
+    private static boolean isSupported(final String charset) {
+        try {
+            return Charset.isSupported(charset);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /*
+    writes the specified buffers to the specified channel with as few system calls as possible
+     */
+    private static void write(final FileChannel channel, final List<ByteBuffer> items) throws IOException {
+        ByteBuffer[] buffers = items.toArray(new ByteBuffer[0]);
+        long remaining = 0L;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (0 < remaining) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    /*
+    the body of a fetched document, and its digest if it was buffered
+     */
+    private static final class Body {
+
+        private final InputStream in;
+
+        // null if the body was not buffered
+        private final String digest;
+
+        private Body(final InputStream in, final String digest) {
+            this.in = in;
+            this.digest = digest;
+        }
+    }
+
+    /*
+    buffers at most MAX_BODY_SIZE bytes of the body, digesting every buffer as it is received;
+    completes with the buffered body once it is complete, or once the limit is reached
+     */
+    private static final class BufferSubscriber implements HttpResponse.BodySubscriber<Body> {
+
+        private final CompletableFuture<Body> result = new CompletableFuture<>();
+
+        private final MessageDigest md = Hashes.newSha256();
+
+        private byte[] bytes = new byte[8192];
+
+        private int count;
+
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(final List<ByteBuffer> items) {
+            for (ByteBuffer item : items) {
+                int n = Math.min(item.remaining(), MAX_BODY_SIZE - count);
+                if (bytes.length < count + n) {
+                    bytes = Arrays.copyOf(bytes, Math.min(MAX_BODY_SIZE, Math.max(count + n, 2 * bytes.length)));
+                }
+                item.get(bytes, count, n);
+                md.update(bytes, count, n);
+                count += n;
+            }
+            if (count == MAX_BODY_SIZE) {
+                // the rest of the body is truncated
+                subscription.cancel();
+                onComplete();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(new Body(new ByteArrayInputStream(bytes, 0, count), Hashes.toHex(md.digest())));
+        }
+
+        @Override
+        public CompletionStage<Body> getBody() {
+            return result;
+        }
+    }
+
+    /*
+    reads at most the specified # of bytes of a stream, closing it stops the rest of it from being received
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private LimitedInputStream(final InputStream in, final long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) { return -1; }
+            int b = in.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (remaining <= 0) { return -1; }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n != -1) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /*
+    buffers the body until its content type has been identified, after which every received buffer
+    is written straight to the file with the extension of the content type; completes with the content type
+     */
+    private static final class ImageSubscriber implements HttpResponse.BodySubscriber<String> {
+
+        private final String url;
+
+        // without an extension
+        private final Path file;
+
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        // the leading bytes of the body
+        private final byte[] header = new byte[Images.HEADER_BYTES];
+
+        private int headerLength;
+
+        // buffers received before the content type was identified
+        private final List<ByteBuffer> pending = new ArrayList<>();
+
+        private Flow.Subscription subscription;
+
+        // null until the content type has been identified
+        private FileChannel channel;
+
+        // the file written until the body is complete, null until the content type has been identified
+        private Path tmp;
+
+        // the file with the extension of the content type, null until the content type has been identified
+        private Path target;
+
+        private ImageSubscriber(final String url, final Path file) {
+            this.url = url;
+            this.file = file;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(final List<ByteBuffer> items) {
+            try {
+                if (channel == null) {
+                    for (ByteBuffer item : items) {
+                        int n = Math.min(item.remaining(), header.length - headerLength);
+                        item.duplicate().get(header, headerLength, n);
+                        headerLength += n;
+                    }
+                    pending.addAll(items);
+                    if (headerLength < header.length) {
+                        subscription.request(1);
+                        return;
+                    }
+                    open();
+                    write(channel, pending);
+                    pending.clear();
+                } else {
+                    write(channel, items);
+                }
+                subscription.request(1);
+            } catch (IOException e) {
+                subscription.cancel();
+                fail(e);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                if (channel == null) {
+                    // the body is shorter than the header
+                    open();
+                    write(channel, pending);
+                }
+                channel.close();
+                com.github.wnebyte.crawler.util.Files.replace(tmp, target);
+                result.complete(Images.getContentType(header, headerLength));
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public CompletionStage<String> getBody() {
+            return result;
+        }
+
+        private void open() throws IOException {
+            com.github.wnebyte.crawler.util.Files.Extension extension =
+                    Images.getExtension(Images.getContentType(header, headerLength));
+            if (extension == null) {
+                throw new IOException(
+                        "unsupported image for url " + url
+                );
+            }
+            target = Images.getFile(file, extension);
+            // the file may be a hard link to a stored document, which must not be overwritten
+            tmp = com.github.wnebyte.crawler.util.Files.newTempFile(target);
+            channel = FileChannel.open(tmp, StandardOpenOption.WRITE);
+        }
+
+        private void fail(final Throwable throwable) {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                if (tmp != null) {
+                    Files.deleteIfExists(tmp);
+                }
+            } catch (IOException ignored) {
+            }
+            result.completeExceptionally(throwable);
+        }
+    }
+
+    /*
+    feeds every received buffer to the scanner, and writes it to the file if there is one;
+    completes with the # of bytes received
+     */
+    private static final class ScanSubscriber implements HttpResponse.BodySubscriber<Long> {
+
+        private final LinkScanner scanner;
+
+        private final Path file;
+
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        private Flow.Subscription subscription;
+
+        // null if the body is not written to a file
+        private FileChannel channel;
+
+        // the file written until the body is complete, null if the body is not written to a file
+        private Path tmp;
+
+        private long bytes;
+
+        private ScanSubscriber(final LinkScanner scanner, final Path file) {
+            this.scanner = scanner;
+            this.file = file;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            try {
+                if (file != null) {
+                    // the file may be a hard link to a stored document, which must not be overwritten
+                    tmp = com.github.wnebyte.crawler.util.Files.newTempFile(file);
+                    channel = FileChannel.open(tmp, StandardOpenOption.WRITE);
+                }
+                subscription.request(1);
+            } catch (IOException e) {
+                subscription.cancel();
+                fail(e);
+            }
+        }
+
+        @Override
+        public void onNext(final List<ByteBuffer> items) {
+            try {
+                for (ByteBuffer item : items) {
+                    bytes += item.remaining();
+                    if (scanner != null) {
+                        scanner.scan(item.duplicate());
+                    }
+                }
+                if (channel != null) {
+                    write(channel, items);
+                }
+                subscription.request(1);
+            } catch (IOException | RuntimeException e) {
+                subscription.cancel();
+                fail(e);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                    com.github.wnebyte.crawler.util.Files.replace(tmp, file);
+                }
+                result.complete(bytes);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public CompletionStage<Long> getBody() {
+            return result;
+        }
+
+        private void fail(final Throwable throwable) {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                if (tmp != null) {
+                    Files.deleteIfExists(tmp);
+                }
+            } catch (IOException ignored) {
+            }
+            result.completeExceptionally(throwable);
+        }
+    }
+}
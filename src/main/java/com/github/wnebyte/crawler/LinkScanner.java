@@ -0,0 +1,601 @@
+package com.github.wnebyte.crawler;
+
+import com.github.wnebyte.crawler.util.Urls;
+import org.jsoup.parser.Parser;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * This class extracts the urls of the anchor tags of a html document from its raw bytes, as they arrive,
+ * without building a document.
+ * <p>
+ * The bytes are fed through a small tokenizer that recognizes tags, attributes, comments, and the raw
+ * text of elements such as <code>script</code> and <code>style</code>, whose contents are not markup.
+ * Only the values of the <code>href</code> attributes of <code>a</code> and <code>base</code> tags are
+ * copied; everything else is skipped a byte at a time. Each url is resolved against the document's
+ * <code>base</code> url, if it has one, or else the url of the document, and handed to the consumer as
+ * soon as its attribute has been read.
+ * <p>
+ * Tags are matched in ASCII, so any charset that is a superset of ASCII is supported.
+ * Instances are not safe for use by multiple concurrent threads.
+ */
+public class LinkScanner {
+
+    // tokenizer states
+    private static final int DATA = 0;
+
+    private static final int TAG_OPEN = 1;
+
+    private static final int TAG_NAME = 2;
+
+    private static final int BEFORE_ATTRIBUTE_NAME = 3;
+
+    private static final int ATTRIBUTE_NAME = 4;
+
+    private static final int AFTER_ATTRIBUTE_NAME = 5;
+
+    private static final int BEFORE_ATTRIBUTE_VALUE = 6;
+
+    private static final int DOUBLE_QUOTED_VALUE = 7;
+
+    private static final int SINGLE_QUOTED_VALUE = 8;
+
+    private static final int UNQUOTED_VALUE = 9;
+
+    private static final int MARKUP_DECLARATION = 10;
+
+    private static final int COMMENT_START = 11;
+
+    private static final int COMMENT = 12;
+
+    // a comment-like construct, such as a doctype or an end tag, that ends at the next '>'
+    private static final int BOGUS = 13;
+
+    private static final int RAW_TEXT = 14;
+
+    // kinds of tags
+    private static final int OTHER = 0;
+
+    private static final int ANCHOR = 1;
+
+    private static final int BASE = 2;
+
+    private static final int RAW = 3;
+
+    // elements whose contents are text rather than markup
+    private static final String[] RAW_TEXT_ELEMENTS =
+            {"script", "style", "textarea", "title", "xmp", "iframe", "noembed", "noframes"};
+
+    // the # of bytes of a tag or attribute name that are kept, which is enough for every name of interest
+    private static final int NAME_CAPACITY = 8;
+
+    // attribute values longer than this are not urls worth following
+    private static final int MAX_VALUE_LENGTH = 64 * 1024;
+
+    private static final byte[] HREF = {'h', 'r', 'e', 'f'};
+
+    // the size of the chunks that buffers without an accessible array are copied in
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    private final Consumer<String> consumer;
+
+    // the url relative urls are resolved against, which is the url of the document until a base tag is read
+    private URL base;
+
+    // the protocol and authority of the base url, such as "https://www.example.com"
+    private String origin;
+
+    private boolean baseRead;
+
+    private Charset charset = StandardCharsets.UTF_8;
+
+    private int state = DATA;
+
+    // the lower case name of the current tag
+    private final byte[] tagName = new byte[NAME_CAPACITY];
+
+    private int tagNameLength;
+
+    private int kind;
+
+    // whether the current tag is an end tag
+    private boolean endTag;
+
+    // the lower case name of the current attribute
+    private final byte[] attributeName = new byte[NAME_CAPACITY];
+
+    private int attributeNameLength;
+
+    // whether an href attribute has already been read for the current tag, as only the first one counts
+    private boolean hrefRead;
+
+    // whether the value of the current attribute is being copied
+    private boolean capturing;
+
+    private byte[] value = new byte[256];
+
+    private int valueLength;
+
+    // null until a buffer without an accessible array is scanned
+    private byte[] chunk;
+
+    // the # of consecutive '-' at the end of a comment
+    private int dashes;
+
+    // the end tag that ends the current raw text, such as "</script"
+    private byte[] rawTextEnd;
+
+    // the # of bytes of the end tag that have been matched
+    private int rawTextMatched;
+
+    /**
+     * Constructs a new instance for the document located at the specified <code>url</code>.
+     * @param url the url of the document.
+     * @param consumer the consumer of the absolute urls of the anchor tags, in document order.
+     */
+    public LinkScanner(final String url, final Consumer<String> consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException(
+                    "consumer must be non null"
+            );
+        }
+        try {
+            setBase(new URL(url));
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(
+                    "the specified url is not a url"
+            );
+        }
+        this.consumer = consumer;
+    }
+
+    /**
+     * Sets the charset that attribute values are decoded with. Defaults to UTF-8.
+     * Must be called before any bytes have been scanned.
+     * @param charset the charset.
+     */
+    public void setCharset(final Charset charset) {
+        if (charset != null) {
+            this.charset = charset;
+        }
+    }
+
+    /**
+     * Scans the remaining bytes of the specified <code>buffer</code>, which continue the bytes previously
+     * scanned. The position of the buffer is advanced to its limit.
+     * @param buffer the buffer.
+     */
+    public void scan(final ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset();
+            scan(buffer.array(), offset + buffer.position(), offset + buffer.limit());
+            buffer.position(buffer.limit());
+        } else {
+            // direct and read-only buffers, as received by the http client, are scanned a chunk at a time
+            if (chunk == null) {
+                chunk = new byte[CHUNK_SIZE];
+            }
+            while (buffer.hasRemaining()) {
+                int n = Math.min(buffer.remaining(), chunk.length);
+                buffer.get(chunk, 0, n);
+                scan(chunk, 0, n);
+            }
+        }
+    }
+
+    /**
+     * Scans the specified <code>bytes</code>, which continue the bytes previously scanned.
+     * @param bytes the bytes.
+     * @param from the index of the first byte to scan.
+     * @param to the index following the last byte to scan.
+     */
+    public void scan(final byte[] bytes, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if (state == DATA) {
+                // skip text, which is the bulk of most documents, without going through the state machine
+                while ((i < to) && (bytes[i] != '<')) {
+                    i++;
+                }
+                if (i == to) { return; }
+            } else if ((state == DOUBLE_QUOTED_VALUE) || (state == SINGLE_QUOTED_VALUE)) {
+                // likewise for the values of attributes, which are copied in bulk if they are captured
+                byte quote = (state == DOUBLE_QUOTED_VALUE) ? (byte) '"' : (byte) '\'';
+                int start = i;
+                while ((i < to) && (bytes[i] != quote)) {
+                    i++;
+                }
+                appendValue(bytes, start, i);
+                if (i == to) { return; }
+            }
+            next(bytes[i]);
+        }
+    }
+
+    private void next(final byte b) {
+        switch (state) {
+            case DATA:
+                if (b == '<') {
+                    endTag = false;
+                    state = TAG_OPEN;
+                }
+                break;
+            case TAG_OPEN:
+                if (isAlpha(b)) {
+                    startTag();
+                    appendTagName(b);
+                    state = TAG_NAME;
+                } else if ((b == '/') && !endTag) {
+                    endTag = true;
+                } else if ((b == '!') && !endTag) {
+                    state = MARKUP_DECLARATION;
+                } else if (endTag || (b == '?')) {
+                    state = (b == '>') ? DATA : BOGUS;
+                } else if (b == '<') {
+                    endTag = false;
+                } else {
+                    state = DATA;
+                }
+                break;
+            case TAG_NAME:
+                if (isWhitespace(b) || (b == '/')) {
+                    identifyTag();
+                    state = BEFORE_ATTRIBUTE_NAME;
+                } else if (b == '>') {
+                    identifyTag();
+                    endOfTag();
+                } else {
+                    appendTagName(b);
+                }
+                break;
+            case BEFORE_ATTRIBUTE_NAME:
+                if (b == '>') {
+                    endOfTag();
+                } else if (!isWhitespace(b) && (b != '/')) {
+                    startAttribute(b);
+                }
+                break;
+            case ATTRIBUTE_NAME:
+                if (isWhitespace(b)) {
+                    state = AFTER_ATTRIBUTE_NAME;
+                } else if (b == '/') {
+                    state = BEFORE_ATTRIBUTE_NAME;
+                } else if (b == '=') {
+                    state = BEFORE_ATTRIBUTE_VALUE;
+                } else if (b == '>') {
+                    endOfTag();
+                } else if (attributeNameLength < NAME_CAPACITY) {
+                    attributeName[attributeNameLength++] = toLowerCase(b);
+                } else {
+                    attributeNameLength = NAME_CAPACITY + 1;
+                }
+                break;
+            case AFTER_ATTRIBUTE_NAME:
+                if (b == '/') {
+                    state = BEFORE_ATTRIBUTE_NAME;
+                } else if (b == '=') {
+                    state = BEFORE_ATTRIBUTE_VALUE;
+                } else if (b == '>') {
+                    endOfTag();
+                } else if (!isWhitespace(b)) {
+                    startAttribute(b);
+                }
+                break;
+            case BEFORE_ATTRIBUTE_VALUE:
+                if (isWhitespace(b)) {
+                    break;
+                }
+                startValue();
+                if (b == '"') {
+                    state = DOUBLE_QUOTED_VALUE;
+                } else if (b == '\'') {
+                    state = SINGLE_QUOTED_VALUE;
+                } else if (b == '>') {
+                    endOfValue();
+                    endOfTag();
+                } else {
+                    appendValue(b);
+                    state = UNQUOTED_VALUE;
+                }
+                break;
+            case DOUBLE_QUOTED_VALUE:
+            case SINGLE_QUOTED_VALUE:
+                if (b == ((state == DOUBLE_QUOTED_VALUE) ? '"' : '\'')) {
+                    endOfValue();
+                    state = BEFORE_ATTRIBUTE_NAME;
+                } else {
+                    appendValue(b);
+                }
+                break;
+            case UNQUOTED_VALUE:
+                if (isWhitespace(b)) {
+                    endOfValue();
+                    state = BEFORE_ATTRIBUTE_NAME;
+                } else if (b == '>') {
+                    endOfValue();
+                    endOfTag();
+                } else {
+                    appendValue(b);
+                }
+                break;
+            case MARKUP_DECLARATION:
+                state = (b == '-') ? COMMENT_START : ((b == '>') ? DATA : BOGUS);
+                break;
+            case COMMENT_START:
+                if (b == '-') {
+                    dashes = 0;
+                    state = COMMENT;
+                } else {
+                    state = (b == '>') ? DATA : BOGUS;
+                }
+                break;
+            case COMMENT:
+                if ((b == '>') && (2 <= dashes)) {
+                    state = DATA;
+                } else {
+                    dashes = (b == '-') ? dashes + 1 : 0;
+                }
+                break;
+            case BOGUS:
+                if (b == '>') {
+                    state = DATA;
+                }
+                break;
+            case RAW_TEXT:
+                nextRawText(b);
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /*
+    matches the end tag of the raw text, which must be followed by whitespace, '/' or '>'
+     */
+    private void nextRawText(final byte b) {
+        if (rawTextMatched == rawTextEnd.length) {
+            if (isWhitespace(b) || (b == '/') || (b == '>')) {
+                state = (b == '>') ? DATA : BOGUS;
+                rawTextMatched = 0;
+                return;
+            }
+            rawTextMatched = 0;
+        }
+        if (toLowerCase(b) == rawTextEnd[rawTextMatched]) {
+            rawTextMatched++;
+        } else {
+            rawTextMatched = (b == '<') ? 1 : 0;
+        }
+    }
+
+    private void startTag() {
+        tagNameLength = 0;
+        kind = OTHER;
+        hrefRead = false;
+        capturing = false;
+    }
+
+    private void appendTagName(final byte b) {
+        if (tagNameLength < NAME_CAPACITY) {
+            tagName[tagNameLength++] = toLowerCase(b);
+        } else {
+            tagNameLength = NAME_CAPACITY + 1;
+        }
+    }
+
+    private void identifyTag() {
+        if (endTag) {
+            // the attributes of end tags are ignored
+            kind = OTHER;
+            return;
+        }
+        if (isTagName("a")) {
+            kind = ANCHOR;
+        } else if (isTagName("base")) {
+            kind = BASE;
+        } else {
+            kind = OTHER;
+            for (String name : RAW_TEXT_ELEMENTS) {
+                if (isTagName(name)) {
+                    kind = RAW;
+                    break;
+                }
+            }
+        }
+    }
+
+    private void endOfTag() {
+        if ((kind == RAW) && !endTag) {
+            rawTextEnd = new byte[tagNameLength + 2];
+            rawTextEnd[0] = '<';
+            rawTextEnd[1] = '/';
+            System.arraycopy(tagName, 0, rawTextEnd, 2, tagNameLength);
+            rawTextMatched = 0;
+            state = RAW_TEXT;
+        } else {
+            state = DATA;
+        }
+        endTag = false;
+    }
+
+    private void startAttribute(final byte b) {
+        attributeNameLength = 0;
+        attributeName[attributeNameLength++] = toLowerCase(b);
+        state = ATTRIBUTE_NAME;
+    }
+
+    private void startValue() {
+        capturing = ((kind == ANCHOR) || (kind == BASE)) && !hrefRead &&
+                (attributeNameLength == HREF.length) && Arrays.equals(attributeName, 0, HREF.length, HREF, 0, HREF.length);
+        valueLength = 0;
+    }
+
+    private void appendValue(final byte b) {
+        if (!capturing) { return; }
+        if (valueLength == value.length) {
+            if (MAX_VALUE_LENGTH <= valueLength) {
+                capturing = false;
+                return;
+            }
+            value = Arrays.copyOf(value, Math.min(value.length * 2, MAX_VALUE_LENGTH));
+        }
+        value[valueLength++] = b;
+    }
+
+    private void appendValue(final byte[] bytes, final int from, final int to) {
+        if (!capturing || (from == to)) { return; }
+        int length = valueLength + (to - from);
+        if (MAX_VALUE_LENGTH < length) {
+            capturing = false;
+            return;
+        }
+        if (value.length < length) {
+            value = Arrays.copyOf(value, Math.min(Math.max(value.length * 2, length), MAX_VALUE_LENGTH));
+        }
+        System.arraycopy(bytes, from, value, valueLength, to - from);
+        valueLength = length;
+    }
+
+    private void endOfValue() {
+        if (!capturing) { return; }
+        capturing = false;
+        hrefRead = true;
+        String href = new String(value, 0, valueLength, charset);
+        if (href.indexOf('&') != -1) {
+            href = unescape(href);
+        }
+        if (kind == BASE) {
+            // only the first base tag counts
+            URL url = Urls.resolve(base, href);
+            if (!baseRead && (url != null)) {
+                setBase(url);
+            }
+            baseRead = true;
+            return;
+        }
+        String absUrl = resolve(href);
+        if (absUrl != null) {
+            consumer.accept(absUrl);
+        }
+    }
+
+    /*
+    replaces the character references of the specified value, decoding the ones that are common in urls
+    directly, as the parser allocates a sizeable buffer for every value it decodes
+     */
+    private static String unescape(final String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            if (c != '&') {
+                sb.append(c);
+                i++;
+                continue;
+            }
+            int end = value.indexOf(';', i);
+            String entity = (end == -1) ? null : value.substring(i + 1, end);
+            if ("amp".equals(entity)) {
+                sb.append('&');
+            } else if ("quot".equals(entity)) {
+                sb.append('"');
+            } else if ("lt".equals(entity)) {
+                sb.append('<');
+            } else if ("gt".equals(entity)) {
+                sb.append('>');
+            } else {
+                return Parser.unescapeEntities(value, true);
+            }
+            i = end + 1;
+        }
+        return sb.toString();
+    }
+
+    private void setBase(final URL base) {
+        this.base = base;
+        this.origin = base.getProtocol() + "://" + ((base.getAuthority() == null) ? "" : base.getAuthority());
+    }
+
+    /*
+    resolves the specified href as Urls#resolve does, without parsing it, if it is an absolute http or https
+    url or an absolute path that resolving would leave unchanged, which is what most hrefs are
+     */
+    private String resolve(final String href) {
+        if (isVerbatim(href)) {
+            if (href.startsWith("http://")) {
+                if (isAuthority(href, 7)) { return href; }
+            } else if (href.startsWith("https://")) {
+                if (isAuthority(href, 8)) { return href; }
+            }
+            if ((href.charAt(0) == '/') && ((href.length() == 1) || (href.charAt(1) != '/'))) {
+                return origin + href;
+            }
+        }
+        URL url = Urls.resolve(base, href);
+        return (url == null) ? null : url.toExternalForm();
+    }
+
+    /*
+    returns whether the specified href has a plain host name, and optionally a port, from the specified index
+    up until its path, query or fragment
+     */
+    private static boolean isAuthority(final String href, final int from) {
+        int i = from;
+        while ((i < href.length()) && (isAlphaNumeric(href.charAt(i)) ||
+                (href.charAt(i) == '.') || (href.charAt(i) == '-'))) {
+            i++;
+        }
+        if (i == from) { return false; }
+        if ((i < href.length()) && (href.charAt(i) == ':')) {
+            int port = ++i;
+            while ((i < href.length()) && (href.charAt(i) >= '0') && (href.charAt(i) <= '9')) {
+                i++;
+            }
+            if (i == port) { return false; }
+        }
+        return (i == href.length()) || (href.charAt(i) == '/') || (href.charAt(i) == '?') || (href.charAt(i) == '#');
+    }
+
+    private static boolean isAlphaNumeric(final char c) {
+        return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9'));
+    }
+
+    /*
+    returns whether parsing the specified href into a url would neither trim it, nor remove dot segments from it
+     */
+    private static boolean isVerbatim(final String href) {
+        int length = href.length();
+        if ((length == 0) || (href.charAt(0) <= ' ') || (href.charAt(length - 1) <= ' ')) { return false; }
+        return !href.contains("/.");
+    }
+
+    private boolean isTagName(final String name) {
+        if (tagNameLength != name.length()) { return false; }
+        for (int i = 0; i < tagNameLength; i++) {
+            if (tagName[i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAlpha(final byte b) {
+        return ((b >= 'a') && (b <= 'z')) || ((b >= 'A') && (b <= 'Z'));
+    }
+
+    private static boolean isWhitespace(final byte b) {
+        return (b == ' ') || (b == '\t') || (b == '\n') || (b == '\f') || (b == '\r');
+    }
+
+    private static byte toLowerCase(final byte b) {
+        return ((b >= 'A') && (b <= 'Z')) ? (byte) (b + ('a' - 'A')) : b;
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.wnebyte.crawler;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class represents what is known about the previously fetched copy of a url.
+ */
+public class Metadata {
+
+    // null if the response had none
+    private final String eTag;
+
+    // null if the response had none
+    private final String lastModified;
+
+    private final String contentHash;
+
+    private final long fetchTime;
+
+    private final List<String> links;
+
+    /**
+     * Constructs a new instance.
+     * @param eTag the <code>ETag</code> of the response, or <code>null</code> if it had none.
+     * @param lastModified the <code>Last-Modified</code> of the response, or <code>null</code> if it had none.
+     * @param contentHash the hash of the raw body of the response.
+     * @param fetchTime the time in ms since the epoch at which the url was fetched.
+     * @param links the in-scope urls linked to by the document.
+     */
+    public Metadata(
+            final String eTag,
+            final String lastModified,
+            final String contentHash,
+            final long fetchTime,
+            final List<String> links
+    ) {
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+        this.fetchTime = fetchTime;
+        this.links = (links == null) ? Collections.emptyList() : Collections.unmodifiableList(links);
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public long getFetchTime() {
+        return fetchTime;
+    }
+
+    /**
+     * @return the in-scope urls linked to by the document, so that they can be crawled without
+     * re-parsing an unmodified document.
+     */
+    public List<String> getLinks() {
+        return links;
+    }
+
+    /**
+     * @param fetchTime the time in ms since the epoch at which the url was fetched.
+     * @return a copy of this metadata, fetched at the specified <code>fetchTime</code>.
+     */
+    public Metadata refetched(final long fetchTime) {
+        return new Metadata(eTag, lastModified, contentHash, fetchTime, links);
+    }
+}
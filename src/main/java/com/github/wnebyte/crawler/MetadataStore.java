@@ -0,0 +1,398 @@
+package com.github.wnebyte.crawler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class persists the {@link Metadata} of every fetched url to a file, so that subsequent crawls
+ * can fetch the urls conditionally.
+ * <p>
+ * Updates are appended to the file as they are made, and the file is compacted to hold only the latest
+ * metadata of each url when the store is opened and closed. Only the validators of each url are held in
+ * memory, along with the position of its links in the file, which are read back by {@link #getLinks(String)}
+ * when they are needed.
+ * <p>
+ * Instances are safe for use by multiple concurrent crawler threads.
+ */
+public class MetadataStore implements Closeable {
+
+    // the position of links that follow the record inline
+    private static final long INLINE = -1L;
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    private final Path file;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // null until opened
+    private DataOutputStream out;
+
+    private FileOutputStream outFile;
+
+    // counts the bytes in the file, including those that have not been flushed
+    private CountingOutputStream counter;
+
+    // the # of bytes in the file that have been flushed
+    private volatile long flushed;
+
+    // reads links back from the file, null until opened
+    private volatile FileChannel in;
+
+    /**
+     * Constructs a new instance that persists to the specified <code>file</code>.
+     * @param file the file.
+     */
+    public MetadataStore(final Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException(
+                    "file must be non null"
+            );
+        }
+        this.file = file;
+    }
+
+    /**
+     * Loads the metadata persisted by previous crawls, if any, and opens the file for appending.
+     * @throws IOException if the file could not be read or opened.
+     */
+    public synchronized void open() throws IOException {
+        if (Files.isRegularFile(file)) {
+            try (CountingInputStream counter = new CountingInputStream(
+                    new BufferedInputStream(Files.newInputStream(file)));
+                 DataInputStream in = new DataInputStream(counter)) {
+                while (true) {
+                    String url = readString(in);
+                    Metadata metadata = read(in);
+                    long position = in.readLong();
+                    if (position == INLINE) {
+                        position = counter.count;
+                        in.readFully(new byte[in.readInt()]);
+                    }
+                    entries.put(url, new Entry(metadata, position));
+                }
+            } catch (EOFException ignored) {
+                // the end of the file, or a record that was only partially written
+            }
+        }
+        Files.createDirectories(file.getParent());
+        compact();
+    }
+
+    /**
+     * Returns the metadata of the specified <code>url</code>, without its links, which are only held on
+     * disk.
+     * @param url the url.
+     * @return the metadata of the specified <code>url</code>, or <code>null</code> if it has not been fetched.
+     * @see #getLinks(String)
+     */
+    public Metadata get(final String url) {
+        Entry entry = entries.get(url);
+        return (entry == null) ? null : entry.metadata;
+    }
+
+    /**
+     * Reads the links of the specified <code>url</code> back from the file.
+     * @param url the url.
+     * @return the links of the specified <code>url</code>, or an empty list if it has not been fetched.
+     * @throws IOException if the file could not be read.
+     */
+    public List<String> getLinks(final String url) throws IOException {
+        Entry entry = entries.get(url);
+        if ((entry == null) || (in == null)) { return Collections.emptyList(); }
+        if (flushed <= entry.position) {
+            // the links were put by this crawl, and are still buffered
+            flush();
+        }
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        read(in, length, entry.position);
+        ByteBuffer block = ByteBuffer.allocate(length.getInt(0));
+        read(in, block, entry.position + Integer.BYTES);
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(block.array()));
+        int n = data.readInt();
+        List<String> links = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            links.add(readString(data));
+        }
+        return links;
+    }
+
+    /**
+     * Sets and appends the metadata of the specified <code>url</code>.
+     * @param url the url.
+     * @param metadata the metadata.
+     * @throws IOException if the file could not be written to.
+     */
+    public void put(final String url, final Metadata metadata) throws IOException {
+        byte[] block = toBlock(metadata.getLinks());
+        synchronized (this) {
+            if (out == null) { return; }
+            append(out, url, metadata, INLINE);
+            long position = counter.count;
+            out.writeInt(block.length);
+            out.write(block);
+            entries.put(url, new Entry(strip(metadata), position));
+        }
+    }
+
+    /**
+     * Sets and appends the fetch time of the specified <code>url</code>, whose metadata is otherwise
+     * unchanged, without appending its links again.
+     * @param url the url.
+     * @param fetchTime the fetch time.
+     * @throws IOException if the file could not be written to.
+     */
+    public void refetched(final String url, final long fetchTime) throws IOException {
+        Entry entry = entries.get(url);
+        if (entry == null) { return; }
+        Metadata metadata = entry.metadata.refetched(fetchTime);
+        synchronized (this) {
+            if (out == null) { return; }
+            append(out, url, metadata, entry.position);
+            entries.put(url, new Entry(metadata, entry.position));
+        }
+    }
+
+    /**
+     * @return the number of urls with metadata.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Syncs the file to disk, compacts it and closes it.
+     * @throws IOException if the file could not be written to.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (out == null) { return; }
+        out.flush();
+        outFile.getFD().sync();
+        compact();
+        out.close();
+        in.close();
+        out = null;
+        outFile = null;
+        counter = null;
+        in = null;
+    }
+
+    /*
+    writes every buffered record to the filesystem
+     */
+    private synchronized void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+            flushed = counter.count;
+        }
+    }
+
+    /*
+    rewrites the file to hold only the latest metadata of each url, and reopens it for appending
+     */
+    private void compact() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel previous = Files.isRegularFile(file) ? FileChannel.open(file) : null;
+             FileOutputStream tmpFile = new FileOutputStream(tmp.toFile());
+             CountingOutputStream tmpCounter = new CountingOutputStream(new BufferedOutputStream(tmpFile), 0L);
+             DataOutputStream tmpOut = new DataOutputStream(tmpCounter)) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                Entry value = entry.getValue();
+                append(tmpOut, entry.getKey(), value.metadata, INLINE);
+                ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+                read(previous, length, value.position);
+                ByteBuffer block = ByteBuffer.allocate(Integer.BYTES + length.getInt(0));
+                read(previous, block, value.position);
+                entry.setValue(new Entry(value.metadata, tmpCounter.count));
+                tmpOut.write(block.array());
+            }
+            tmpOut.flush();
+            tmpFile.getFD().sync();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (in != null) {
+            in.close();
+        }
+        outFile = new FileOutputStream(file.toFile(), true);
+        counter = new CountingOutputStream(new BufferedOutputStream(outFile), outFile.getChannel().position());
+        out = new DataOutputStream(counter);
+        in = FileChannel.open(file, StandardOpenOption.READ);
+        flushed = counter.count;
+    }
+
+    /*
+    appends a record of the specified url and metadata, which is followed by its links if the specified
+    position of its links is INLINE
+     */
+    private static void append(final DataOutputStream out, final String url, final Metadata metadata,
+                               final long position) throws IOException {
+        writeString(out, url);
+        writeString(out, metadata.getETag());
+        writeString(out, metadata.getLastModified());
+        writeString(out, metadata.getContentHash());
+        out.writeLong(metadata.getFetchTime());
+        out.writeLong(position);
+    }
+
+    private static Metadata read(final DataInputStream in) throws IOException {
+        String eTag = readString(in);
+        String lastModified = readString(in);
+        String contentHash = readString(in);
+        long fetchTime = in.readLong();
+        return new Metadata(eTag, lastModified, contentHash, fetchTime, null);
+    }
+
+    private static Metadata strip(final Metadata metadata) {
+        return new Metadata(metadata.getETag(), metadata.getLastModified(), metadata.getContentHash(),
+                metadata.getFetchTime(), null);
+    }
+
+    private static byte[] toBlock(final List<String> links) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(links.size());
+        for (String link : links) {
+            writeString(out, link);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void read(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        for (long p = position; buffer.hasRemaining(); ) {
+            int n = channel.read(buffer, p);
+            if (n == -1) {
+                throw new EOFException();
+            }
+            p += n;
+        }
+    }
+
+    /*
+    writes a length-prefixed UTF-8 string, where a length of -1 denotes null
+     */
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) { return null; }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /*
+    the metadata of a url without its links, and the position of its links in the file
+     */
+    private static final class Entry {
+
+        private final Metadata metadata;
+
+        private final long position;
+
+        private Entry(final Metadata metadata, final long position) {
+            this.metadata = metadata;
+            this.position = position;
+        }
+    }
+
+    /*
+    counts the bytes written, as DataOutputStream#size overflows at 2 GiB
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(final OutputStream out, final long count) {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /*
+    counts the bytes read, so that the position of the links of each record is known
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        private CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n != -1) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
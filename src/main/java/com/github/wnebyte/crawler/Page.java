@@ -0,0 +1,107 @@
+package com.github.wnebyte.crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+
+/**
+ * This class represents a fetched response, whose body is read once, when it is parsed.
+ */
+public class Page {
+
+    private final String url;
+
+    private final int statusCode;
+
+    private final HttpHeaders headers;
+
+    private final InputStream body;
+
+    // null if the body was not buffered
+    private final String digest;
+
+    // null if the charset should be detected from the body
+    private final String charset;
+
+    /**
+     * Constructs a new instance.
+     * @param url the url the response was received from.
+     * @param statusCode the status code of the response.
+     * @param headers the headers of the response.
+     * @param body the body of the response, which is closed once it has been parsed.
+     * @param digest the hex SHA-256 digest of the body, or <code>null</code> if it was not computed.
+     * @param charset the charset declared by the response, or <code>null</code> if it declared none.
+     */
+    public Page(
+            final String url,
+            final int statusCode,
+            final HttpHeaders headers,
+            final InputStream body,
+            final String digest,
+            final String charset
+    ) {
+        this.url = url;
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+        this.digest = digest;
+        this.charset = charset;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return the hex SHA-256 digest of the body, or <code>null</code> if it was not computed.
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * @return <code>true</code> if the response signals that the previously fetched copy is still
+     * up to date, otherwise <code>false</code>.
+     */
+    public boolean isNotModified() {
+        return (statusCode == 304);
+    }
+
+    /**
+     * @return the value of the response's <code>ETag</code> header, or <code>null</code> if it had none.
+     */
+    public String getETag() {
+        return headers.firstValue("ETag").orElse(null);
+    }
+
+    /**
+     * @return the value of the response's <code>Last-Modified</code> header, or <code>null</code>
+     * if it had none.
+     */
+    public String getLastModified() {
+        return headers.firstValue("Last-Modified").orElse(null);
+    }
+
+    /**
+     * Parses the body into a document, using the url of the response as its base uri, and closes it.
+     * <p>
+     * A body that was not buffered is parsed as it is received, and can only be parsed once.
+     * @return the document.
+     * @throws IOException if the body could not be read or parsed.
+     */
+    public Document parse() throws IOException {
+        try (InputStream in = body) {
+            return Jsoup.parse(in, charset, url);
+        }
+    }
+}
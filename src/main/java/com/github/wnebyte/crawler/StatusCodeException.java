@@ -0,0 +1,48 @@
+package com.github.wnebyte.crawler;
+
+import java.io.IOException;
+
+/**
+ * This exception is thrown when a url responds with an unsuccessful (non 2xx) status code.
+ */
+public class StatusCodeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    private final long retryAfter;
+
+    /**
+     * Constructs a new instance.
+     * @param url the url that was requested.
+     * @param statusCode the status code of the response.
+     * @param retryAfter the delay in ms requested by the response's <code>Retry-After</code> header,
+     * or <code>-1</code> if it had none.
+     */
+    public StatusCodeException(final String url, final int statusCode, final long retryAfter) {
+        super("unsuccessful response status " + statusCode + " for url " + url);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the delay in ms requested by the response's <code>Retry-After</code> header,
+     * or <code>-1</code> if it had none.
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @return <code>true</code> if the status code signals that the host is overloaded or rate
+     * limiting, and that the request may succeed if retried later, otherwise <code>false</code>.
+     */
+    public boolean isThrottled() {
+        return (statusCode == 429) || (statusCode == 503);
+    }
+}
@@ -4,9 +4,15 @@ import java.awt.*;
 
 /**
  * This singleton class can be used to get the width and height of the primary display.
+ * <p>
+ * In a headless environment, such as a server, the width and height of a common display are used instead.
  */
 public class ViewPort {
 
+    private static final double DEFAULT_WIDTH = 1920;
+
+    private static final double DEFAULT_HEIGHT = 1080;
+
     // singleton instance
     private static ViewPort instance;
 
@@ -46,9 +52,18 @@ public class ViewPort {
      */
     public static ViewPort getInstance() {
         if (instance == null) {
-            Dimension dimension = Toolkit.getDefaultToolkit().getScreenSize();
-            instance = new ViewPort(dimension.getWidth(), dimension.getHeight());
+            instance = GraphicsEnvironment.isHeadless() ? new ViewPort(DEFAULT_WIDTH, DEFAULT_HEIGHT) : getScreen();
         }
         return instance;
     }
-}
\ No newline at end of file
+
+    private static ViewPort getScreen() {
+        try {
+            Dimension dimension = Toolkit.getDefaultToolkit().getScreenSize();
+            return new ViewPort(dimension.getWidth(), dimension.getHeight());
+        } catch (HeadlessException | AWTError e) {
+            // no display could be connected to
+            return new ViewPort(DEFAULT_WIDTH, DEFAULT_HEIGHT);
+        }
+    }
+}
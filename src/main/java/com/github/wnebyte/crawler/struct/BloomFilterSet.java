@@ -0,0 +1,156 @@
+package com.github.wnebyte.crawler.struct;
+
+import com.github.wnebyte.crawler.util.Hashes;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a {@link SeenSet} backed by a Bloom filter.
+ * <p>
+ * Lookups of urls that are already present are lock-free. Adds of urls that may not be present are
+ * serialized per stripe of urls, so that of several threads concurrently adding the same url, exactly one
+ * is told that it was not already present.
+ * <p>
+ * Its memory footprint is fixed at construction, which makes it suitable for very large crawls,
+ * at the cost of a small probability (the configured false positive rate) of an unseen url being
+ * reported as seen, and therefore never being crawled.
+ */
+public class BloomFilterSet implements SeenSet {
+
+    // the # of locks that adds are striped over, which must be a power of 2
+    private static final int STRIPES = 64;
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    // the bits of the filter
+    private final AtomicLongArray bits;
+
+    // the number of bits of the filter
+    private final long nBits;
+
+    // the number of bits set per url
+    private final int nHashes;
+
+    // # of urls that were successfully added
+    private final AtomicLong size = new AtomicLong(0L);
+
+    // the lock of each stripe of urls
+    private final Object[] locks = new Object[STRIPES];
+
+    /**
+     * Constructs a new instance sized for the specified <code>expectedUrls</code> and
+     * <code>falsePositiveRate</code>.
+     * @param expectedUrls the expected number of urls.
+     * @param falsePositiveRate the accepted probability of an unseen url being reported as seen,
+     * once <code>expectedUrls</code> urls have been added.
+     */
+    public BloomFilterSet(final long expectedUrls, final double falsePositiveRate) {
+        if (expectedUrls <= 0) {
+            throw new IllegalArgumentException(
+                    "expectedUrls must be greater than 0"
+            );
+        }
+        if (!(0.0 < falsePositiveRate && falsePositiveRate < 1.0)) {
+            throw new IllegalArgumentException(
+                    "falsePositiveRate must be in the range (0, 1)"
+            );
+        }
+        double ln2 = Math.log(2);
+        long nBits = (long) Math.ceil(-expectedUrls * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int nWords = (int) Math.min(Integer.MAX_VALUE - 8, (nBits + 63) >>> 6);
+        this.bits = new AtomicLongArray(nWords);
+        this.nBits = (long) nWords << 6;
+        this.nHashes = Math.max(1, (int) Math.round((double) this.nBits / expectedUrls * ln2));
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public boolean add(final String url) {
+        long h1 = Hashes.fingerprint64(url);
+        if (contains(h1)) { return false; }
+        synchronized (locks[(int) (h1 >>> 32) & (STRIPES - 1)]) {
+            return add(h1);
+        }
+    }
+
+    /*
+    sets the bits of the url of the specified fingerprint, which is only called by one thread at a time per
+    url, so that a url is added at most once
+     */
+    private boolean add(final long h1) {
+        long h2 = Hashes.mix64(h1 ^ 0x9e3779b97f4a7c15L) | 1L;
+        boolean added = false;
+        for (int i = 0; i < nHashes; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, nBits);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            // skip the write when the bit is already set, to avoid contending on shared words
+            if ((bits.get(word) & mask) == 0L) {
+                long prev = bits.getAndAccumulate(word, mask, (a, b) -> a | b);
+                added |= ((prev & mask) == 0L);
+            }
+        }
+        if (added) {
+            size.incrementAndGet();
+        }
+        return added;
+    }
+
+    @Override
+    public boolean contains(final String url) {
+        return contains(Hashes.fingerprint64(url));
+    }
+
+    private boolean contains(final long h1) {
+        long h2 = Hashes.mix64(h1 ^ 0x9e3779b97f4a7c15L) | 1L;
+        for (int i = 0; i < nHashes; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, nBits);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of urls that were reported as not already present when added.
+     */
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeLong(nBits);
+        out.writeInt(nHashes);
+        out.writeLong(size.get());
+        for (int i = 0; i < bits.length(); i++) {
+            out.writeLong(bits.get(i));
+        }
+    }
+
+    /**
+     * @throws IOException if the input was written by a filter of a different size.
+     */
+    @Override
+    public void readFrom(final DataInput in) throws IOException {
+        if ((in.readLong() != nBits) || (in.readInt() != nHashes)) {
+            throw new IOException(
+                    "the input was written by a filter of a different size"
+            );
+        }
+        size.addAndGet(in.readLong());
+        for (int i = 0; i < bits.length(); i++) {
+            long word = in.readLong();
+            bits.getAndAccumulate(i, word, (a, b) -> a | b);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.github.wnebyte.crawler.struct;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class keeps a separate count per depth.
+ * <p>
+ * Counting is lock-free, except the first time a depth is counted.
+ */
+public class DepthCounts {
+
+    private final List<AtomicInteger> counts = new CopyOnWriteArrayList<>();
+
+    /**
+     * Increments the count of the specified <code>depth</code> by one.
+     * @param depth the depth.
+     */
+    public void increment(final int depth) {
+        counter(depth).incrementAndGet();
+    }
+
+    /**
+     * Adds the specified <code>delta</code> to the count of the specified <code>depth</code>.
+     * @param depth the depth.
+     * @param delta the value to add.
+     */
+    public void add(final int depth, final int delta) {
+        counter(depth).addAndGet(delta);
+    }
+
+    /**
+     * @param depth the depth.
+     * @return the count of the specified <code>depth</code>.
+     */
+    public int get(final int depth) {
+        return (depth < counts.size()) ? counts.get(depth).get() : 0;
+    }
+
+    /**
+     * @return the number of depths that have been counted, which is one more than the deepest depth
+     * that has been counted.
+     */
+    public int size() {
+        return counts.size();
+    }
+
+    /**
+     * @return the count of each depth, up to and including the deepest depth that has been counted.
+     */
+    public int[] toArray() {
+        Object[] array = counts.toArray();
+        int[] values = new int[array.length];
+        for (int i = 0; i < array.length; i++) {
+            values[i] = ((AtomicInteger) array[i]).get();
+        }
+        return values;
+    }
+
+    private AtomicInteger counter(final int depth) {
+        if (depth < counts.size()) {
+            return counts.get(depth);
+        }
+        synchronized (counts) {
+            while (counts.size() <= depth) {
+                counts.add(new AtomicInteger(0));
+            }
+        }
+        return counts.get(depth);
+    }
+}
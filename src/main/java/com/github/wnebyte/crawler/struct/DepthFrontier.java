@@ -0,0 +1,125 @@
+package com.github.wnebyte.crawler.struct;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * This class is a {@link Frontier} that keeps a separate queue of links per depth, and always hands
+ * out a link of the lowest depth available, so that links are crawled breadth-first.
+ * <p>
+ * The queue of the lowest depth may have links that are not yet available to be handed out, in which case
+ * no link is handed out until they have become available, rather than a link of a higher depth.
+ */
+public class DepthFrontier implements Frontier {
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    // constructs the queue of a depth
+    private final Supplier<Frontier> queueSupplier;
+
+    // the queue of each depth, constructed on demand
+    private final List<Frontier> levels = new ArrayList<>();
+
+    // no queue of a lower depth than this holds any links
+    private int lowest;
+
+    // # of queued links
+    private int size;
+
+    /**
+     * Constructs a new instance that keeps the links of each depth in a {@link FifoFrontier}.
+     */
+    public DepthFrontier() {
+        this(FifoFrontier::new);
+    }
+
+    /**
+     * Constructs a new instance.
+     * @param queueSupplier constructs the queue of a depth.
+     */
+    public DepthFrontier(final Supplier<Frontier> queueSupplier) {
+        if (queueSupplier == null) {
+            throw new IllegalArgumentException(
+                    "queueSupplier must be non null"
+            );
+        }
+        this.queueSupplier = queueSupplier;
+    }
+
+    @Override
+    public synchronized void offer(final Link link) {
+        int depth = link.getDepth();
+        while (levels.size() <= depth) {
+            levels.add(null);
+        }
+        Frontier level = levels.get(depth);
+        if (level == null) {
+            level = queueSupplier.get();
+            levels.set(depth, level);
+        }
+        level.offer(link);
+        lowest = Math.min(lowest, depth);
+        size++;
+    }
+
+    @Override
+    public synchronized Link poll() {
+        Frontier level = lowestLevel();
+        if (level == null) { return null; }
+        Link link = level.poll();
+        if (link != null) {
+            size--;
+        }
+        return link;
+    }
+
+    @Override
+    public synchronized Link peek() {
+        Frontier level = lowestLevel();
+        return (level == null) ? null : level.peek();
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Flushes the queue of each depth, without holding the lock of this frontier.
+     */
+    @Override
+    public boolean flush() {
+        boolean flushed = false;
+        int depth;
+        synchronized (this) {
+            depth = lowest;
+        }
+        for (; ; depth++) {
+            Frontier level;
+            synchronized (this) {
+                if (levels.size() <= depth) { return flushed; }
+                level = levels.get(depth);
+            }
+            if ((level != null) && level.flush()) {
+                flushed = true;
+            }
+        }
+    }
+
+    /*
+    returns the non-empty queue of the lowest depth, or null if every queue is empty
+     */
+    private Frontier lowestLevel() {
+        if (size == 0) { return null; }
+        for (; lowest < levels.size(); lowest++) {
+            Frontier level = levels.get(lowest);
+            if ((level != null) && !level.isEmpty()) {
+                return level;
+            }
+        }
+        return null;
+    }
+}
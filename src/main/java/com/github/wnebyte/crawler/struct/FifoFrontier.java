@@ -0,0 +1,42 @@
+package com.github.wnebyte.crawler.struct;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is an unbounded, lock-free {@link Frontier} that hands out links in the order
+ * they were offered.
+ */
+public class FifoFrontier implements Frontier {
+
+    private final Queue<Link> queue = new ConcurrentLinkedQueue<>();
+
+    // ConcurrentLinkedQueue#size() is not a constant-time operation
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    @Override
+    public void offer(final Link link) {
+        queue.offer(link);
+        size.incrementAndGet();
+    }
+
+    @Override
+    public Link poll() {
+        Link link = queue.poll();
+        if (link != null) {
+            size.decrementAndGet();
+        }
+        return link;
+    }
+
+    @Override
+    public Link peek() {
+        return queue.peek();
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+}
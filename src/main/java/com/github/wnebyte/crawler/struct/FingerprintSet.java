@@ -0,0 +1,223 @@
+package com.github.wnebyte.crawler.struct;
+
+import com.github.wnebyte.crawler.util.Hashes;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * This class is a {@link SeenSet} that stores a 64-bit fingerprint of each url rather than the url itself,
+ * along with the lowest depth it was added at, in a single byte.
+ * <p>
+ * Fingerprints are kept in open-addressing tables of primitive longs, split into independently locked
+ * segments so that concurrent crawler threads rarely contend for the same lock.
+ * Two distinct urls may share a fingerprint, in which case the latter is considered already seen;
+ * with 64-bit fingerprints the probability of this happening is negligible for crawls of
+ * up to hundreds of millions of urls.
+ */
+public class FingerprintSet implements SeenSet {
+
+    // depths greater than this are recorded as this depth
+    private static final int MAX_DEPTH = 255;
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    // the segments, the number of which is a power of two
+    private final Segment[] segments;
+
+    // the number of bits to shift a fingerprint right by to get its segment index
+    private final int shift;
+
+    /**
+     * Constructs a new instance sized for a small crawl.
+     */
+    public FingerprintSet() {
+        this(1 << 14);
+    }
+
+    /**
+     * Constructs a new instance sized to hold the specified <code>expectedUrls</code> without resizing.
+     * @param expectedUrls the expected number of urls.
+     */
+    public FingerprintSet(final int expectedUrls) {
+        if (expectedUrls < 0) {
+            throw new IllegalArgumentException(
+                    "expectedUrls must be greater than -1"
+            );
+        }
+        int nSegments = nextPowerOfTwo(4 * Runtime.getRuntime().availableProcessors());
+        this.segments = new Segment[nSegments];
+        this.shift = 64 - Integer.numberOfTrailingZeros(nSegments);
+        int capacity = nextPowerOfTwo(Math.max(16, (expectedUrls / nSegments) * 2));
+        for (int i = 0; i < nSegments; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    @Override
+    public boolean add(final String url) {
+        long fp = fingerprint(url);
+        return segmentFor(fp).add(fp, 0) == -1;
+    }
+
+    /**
+     * Depths greater than 255 are recorded as 255.
+     */
+    @Override
+    public int addAtDepth(final String url, final int depth) {
+        long fp = fingerprint(url);
+        return segmentFor(fp).add(fp, Math.min(depth, MAX_DEPTH));
+    }
+
+    @Override
+    public int getDepth(final String url) {
+        long fp = fingerprint(url);
+        return segmentFor(fp).getDepth(fp);
+    }
+
+    @Override
+    public boolean contains(final String url) {
+        return getDepth(url) != -1;
+    }
+
+    @Override
+    public long size() {
+        long size = 0L;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Writes the fingerprints of this set, along with their depths, one segment at a time.
+     */
+    @Override
+    public void writeTo(final DataOutput out) throws IOException {
+        for (Segment segment : segments) {
+            segment.writeTo(out);
+        }
+        out.writeInt(-1);
+    }
+
+    @Override
+    public void readFrom(final DataInput in) throws IOException {
+        int n;
+        while ((n = in.readInt()) != -1) {
+            for (int i = 0; i < n; i++) {
+                long fp = in.readLong();
+                segmentFor(fp).add(fp, in.readUnsignedByte());
+            }
+        }
+    }
+
+    private Segment segmentFor(final long fp) {
+        return segments[(int) (fp >>> shift)];
+    }
+
+    /*
+    0 marks an empty slot, and is therefore never used as a fingerprint
+     */
+    private static long fingerprint(final String url) {
+        long fp = Hashes.fingerprint64(url);
+        return (fp == 0L) ? 1L : fp;
+    }
+
+    private static int nextPowerOfTwo(final int n) {
+        return (n <= 1) ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /*
+    an open-addressing (linear probing) table of fingerprints, and of the depth of the fingerprint in the
+    same slot, as an unsigned byte
+     */
+    private static final class Segment {
+
+        private long[] table;
+
+        private byte[] depths;
+
+        private int size;
+
+        private Segment(final int capacity) {
+            this.table = new long[capacity];
+            this.depths = new byte[capacity];
+        }
+
+        /*
+        returns the previous depth of the fingerprint, which is lowered to the specified depth if it is
+        greater, or -1 if the fingerprint is added
+         */
+        private synchronized int add(final long fp, final int depth) {
+            int mask = table.length - 1;
+            int i = (int) fp & mask;
+            long slot;
+            while ((slot = table[i]) != 0L) {
+                if (slot == fp) {
+                    int previous = depths[i] & 0xFF;
+                    if (depth < previous) {
+                        depths[i] = (byte) depth;
+                    }
+                    return previous;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = fp;
+            depths[i] = (byte) depth;
+            if (++size > (table.length >> 1) + (table.length >> 2)) {
+                resize();
+            }
+            return -1;
+        }
+
+        private synchronized int getDepth(final long fp) {
+            int mask = table.length - 1;
+            int i = (int) fp & mask;
+            long slot;
+            while ((slot = table[i]) != 0L) {
+                if (slot == fp) {
+                    return depths[i] & 0xFF;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private synchronized void writeTo(final DataOutput out) throws IOException {
+            out.writeInt(size);
+            for (int i = 0; i < table.length; i++) {
+                if (table[i] != 0L) {
+                    out.writeLong(table[i]);
+                    out.writeByte(depths[i]);
+                }
+            }
+        }
+
+        private void resize() {
+            long[] old = table;
+            byte[] oldDepths = depths;
+            long[] table = new long[old.length << 1];
+            byte[] depths = new byte[table.length];
+            int mask = table.length - 1;
+            for (int j = 0; j < old.length; j++) {
+                long fp = old[j];
+                if (fp != 0L) {
+                    int i = (int) fp & mask;
+                    while (table[i] != 0L) {
+                        i = (i + 1) & mask;
+                    }
+                    table[i] = fp;
+                    depths[i] = oldDepths[j];
+                }
+            }
+            this.table = table;
+            this.depths = depths;
+        }
+    }
+}
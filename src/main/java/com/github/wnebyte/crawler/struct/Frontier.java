@@ -0,0 +1,55 @@
+package com.github.wnebyte.crawler.struct;
+
+/**
+ * This interface declares methods for holding the links that have been marked for crawling,
+ * but not yet handed to a crawler.
+ * <p>
+ * Implementations must be safe for use by multiple concurrent crawler threads,
+ * and must never reject a link.
+ */
+public interface Frontier {
+
+    /**
+     * Adds the specified <code>link</code> to this frontier.
+     * @param link the link.
+     */
+    void offer(final Link link);
+
+    /**
+     * Removes and returns the next link to be crawled.
+     * @return the next link, or <code>null</code> if no link is currently available.
+     */
+    Link poll();
+
+    /**
+     * Returns, but does not remove, the next link to be crawled.
+     * @return the next link, or <code>null</code> if no link is currently available.
+     */
+    Link peek();
+
+    /**
+     * @return the number of links held by this frontier.
+     */
+    int size();
+
+    /**
+     * Performs the I/O that this frontier has deferred, such as writing the links it has buffered to disk,
+     * or reading back the next links to be handed out. Callers must not hold a lock that is needed to
+     * offer or poll links, as this method may block on I/O.
+     * <p>
+     * A frontier that holds links, but returns <code>null</code> from {@link #poll()} as they have yet to
+     * be read back, is able to hand out links once this method has returned.
+     * @return <code>true</code> if links may have become available to be handed out, otherwise
+     * <code>false</code>.
+     */
+    default boolean flush() {
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if this frontier holds no links, otherwise <code>false</code>.
+     */
+    default boolean isEmpty() {
+        return (size() == 0);
+    }
+}
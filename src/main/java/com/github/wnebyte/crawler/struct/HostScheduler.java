@@ -0,0 +1,365 @@
+package com.github.wnebyte.crawler.struct;
+
+import com.github.wnebyte.crawler.util.Urls;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * This class is a {@link Frontier} that keeps a separate queue of links per host, and only hands out
+ * a link once its host is allowed another request.
+ * <p>
+ * A host is allowed another request while it has fewer than <code>maxConnectionsPerHost</code> links
+ * being crawled, has a token left in its token bucket (refilled at <code>requestsPerSecondPerHost</code>),
+ * and has not been penalized for responding with a throttling status.
+ * Hosts that are not allowed another request are skipped, so that links of other hosts can still
+ * be handed out while one host is being throttled.
+ * <p>
+ * Among the hosts that are allowed another request, the host whose next link has the lowest depth is
+ * chosen, and hosts with equally deep links take turns. Combined with per-host {@link DepthFrontier}
+ * queues, links are therefore handed out breadth-first across all hosts.
+ * <p>
+ * Hosts that have no queued links and no links being crawled, and whose penalty has expired and token
+ * bucket has been refilled, are evicted periodically, so that a broad crawl does not keep the state of
+ * every host it has ever crawled.
+ * <p>
+ * The queues of hosts are flushed once a link has been offered or polled, without holding the lock of
+ * this scheduler, so that queues that spill to disk do not block other threads on their I/O.
+ */
+public class HostScheduler implements Frontier {
+
+    // the interval in ns at which idle hosts are evicted
+    private static final long EVICTION_INTERVAL = TimeUnit.SECONDS.toNanos(1L);
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    // 0 if unlimited
+    private final int maxConnectionsPerHost;
+
+    // 0 if unlimited
+    private final double requestsPerSecondPerHost;
+
+    // the maximum # of tokens of a bucket
+    private final double burst;
+
+    // constructs the queue of a host
+    private final Supplier<Frontier> queueSupplier;
+
+    private final Map<String, Host> hosts = new HashMap<>();
+
+    // hosts that have queued links and are allowed another request, ordered by the depth of their next link
+    private final Queue<Host> ready = new PriorityQueue<>(
+            Comparator.comparingInt((Host host) -> host.depth).thenComparingLong(host -> host.sequence));
+
+    // hosts that have queued links, but are waiting for a token or a penalty to expire
+    private final Queue<Host> waiting = new PriorityQueue<>(Comparator.comparingLong((Host host) -> host.readyAt));
+
+    // # of queued links
+    private int size;
+
+    // incremented every time a host is scheduled
+    private long sequence;
+
+    // System.nanoTime() at the last eviction of idle hosts
+    private long evictedAt = System.nanoTime();
+
+    /**
+     * Constructs a new instance.
+     * @param maxConnectionsPerHost the maximum number of links per host being crawled at any one time,
+     * or <code>0</code> if unlimited.
+     * @param requestsPerSecondPerHost the maximum sustained rate of requests per host,
+     * or <code>0</code> if unlimited.
+     * @param queueSupplier constructs the queue of a host.
+     */
+    public HostScheduler(
+            final int maxConnectionsPerHost,
+            final double requestsPerSecondPerHost,
+            final Supplier<Frontier> queueSupplier
+    ) {
+        if (maxConnectionsPerHost < 0) {
+            throw new IllegalArgumentException(
+                    "maxConnectionsPerHost must be greater than -1"
+            );
+        }
+        if (requestsPerSecondPerHost < 0) {
+            throw new IllegalArgumentException(
+                    "requestsPerSecondPerHost must be greater than or equal to 0"
+            );
+        }
+        if (queueSupplier == null) {
+            throw new IllegalArgumentException(
+                    "queueSupplier must be non null"
+            );
+        }
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.requestsPerSecondPerHost = requestsPerSecondPerHost;
+        this.burst = Math.max(1.0, requestsPerSecondPerHost);
+        this.queueSupplier = queueSupplier;
+    }
+
+    @Override
+    public void offer(final Link link) {
+        String name = Urls.getHost(link.getUrl());
+        Host host;
+        synchronized (this) {
+            host = hosts.get(name);
+            if (host == null) {
+                host = new Host(name, queueSupplier.get(), burst, System.nanoTime());
+                hosts.put(name, host);
+            }
+            host.queue.offer(link);
+            size++;
+            if (!host.scheduled) {
+                schedule(host, System.nanoTime());
+            } else if ((link.getDepth() < host.depth) && ready.remove(host)) {
+                // the host's next link is now shallower than the link it was ordered by
+                host.depth = link.getDepth();
+                ready.add(host);
+            }
+        }
+        flush(host);
+    }
+
+    /**
+     * Removes and returns the next link of a host that is allowed another request.
+     * The caller must {@link #release(Link)} the link once it has been crawled.
+     * @return the next link, or <code>null</code> if no host is currently allowed another request.
+     */
+    @Override
+    public Link poll() {
+        return poll(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes and returns the next link of a host that is allowed another request, provided its
+     * depth does not exceed the specified <code>maxDepth</code>.
+     * The caller must {@link #release(Link)} the link once it has been crawled.
+     * @param maxDepth the maximum depth of the returned link.
+     * @return the next link, or <code>null</code> if no host is currently allowed another request
+     * for a link of at most <code>maxDepth</code>.
+     */
+    public Link poll(final int maxDepth) {
+        Host host;
+        Link link = null;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (EVICTION_INTERVAL <= now - evictedAt) {
+                evictIdleHosts(now);
+            }
+            while (!waiting.isEmpty() && (waiting.peek().readyAt <= now)) {
+                host = waiting.poll();
+                Link next = host.queue.peek();
+                if (next == null) {
+                    // rescheduled once the queue has been flushed
+                    host.scheduled = false;
+                    continue;
+                }
+                host.depth = next.getDepth();
+                ready.add(host);
+            }
+            while (((host = ready.peek()) != null) && (host.depth <= maxDepth)) {
+                ready.poll();
+                host.scheduled = false;
+                // the host may have been penalized after it was scheduled
+                if (now < readyAt(host, now)) {
+                    schedule(host, now);
+                    continue;
+                }
+                link = host.queue.poll();
+                if (link == null) {
+                    continue;
+                }
+                if (requestsPerSecondPerHost != 0) {
+                    host.tokens -= 1.0;
+                }
+                host.connections++;
+                size--;
+                if (!host.queue.isEmpty()) {
+                    schedule(host, now);
+                }
+                break;
+            }
+        }
+        if (link != null) {
+            flush(host);
+        }
+        return link;
+    }
+
+    /**
+     * Signals that a link returned by {@link #poll()} has been crawled, freeing up a connection of its host.
+     * @param link the link.
+     */
+    public synchronized void release(final Link link) {
+        Host host = hosts.get(Urls.getHost(link.getUrl()));
+        if (host == null) { return; }
+        host.connections--;
+        if (!host.scheduled && !host.queue.isEmpty()) {
+            schedule(host, System.nanoTime());
+        }
+    }
+
+    /**
+     * Prevents the host of the specified <code>link</code> from being handed out for the specified
+     * <code>delay</code>.
+     * @param link the link whose host should be penalized.
+     * @param delay the delay.
+     * @param unit the unit of the delay.
+     */
+    public synchronized void penalize(final Link link, final long delay, final TimeUnit unit) {
+        Host host = hosts.get(Urls.getHost(link.getUrl()));
+        if (host == null) { return; }
+        host.penalizedUntil = Math.max(host.penalizedUntil, System.nanoTime() + unit.toNanos(delay));
+    }
+
+    @Override
+    public synchronized Link peek() {
+        Host host = ready.peek();
+        return (host == null) ? null : host.queue.peek();
+    }
+
+    /**
+     * Returns the time until {@link #poll(int)} may return a link, assuming no links are offered or released.
+     * @param maxDepth the maximum depth of the returned link.
+     * @param unit the unit of the returned delay.
+     * @return the delay, or <code>-1</code> if no link will become available until a link is offered
+     * or released.
+     */
+    public synchronized long getDelay(final int maxDepth, final TimeUnit unit) {
+        if (!ready.isEmpty() && (ready.peek().depth <= maxDepth)) {
+            return 0L;
+        }
+        if (waiting.isEmpty()) {
+            return -1L;
+        }
+        return unit.convert(Math.max(0L, waiting.peek().readyAt - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of hosts whose state is currently kept, including idle hosts that have not yet
+     * been evicted.
+     */
+    public synchronized int getHostCount() {
+        return hosts.size();
+    }
+
+    /*
+    removes the hosts that would be indistinguishable from a new host, were they offered another link
+     */
+    private void evictIdleHosts(final long now) {
+        evictedAt = now;
+        hosts.values().removeIf(host -> !host.scheduled && (host.connections == 0) && host.queue.isEmpty() &&
+                (host.penalizedUntil <= now) && (readyAt(host, now) <= now) && (burst <= host.tokens));
+    }
+
+    /*
+    flushes the queue of the specified host without holding the lock of this scheduler, and schedules
+    the host if links of its queue have become available
+     */
+    private void flush(final Host host) {
+        if (!host.queue.flush()) { return; }
+        synchronized (this) {
+            if (!host.scheduled && !host.queue.isEmpty()) {
+                schedule(host, System.nanoTime());
+            }
+        }
+    }
+
+    /*
+    adds the specified host, which must have queued links, to the ready or waiting hosts;
+    hosts that have reached their maximum # of connections are rescheduled once released,
+    and hosts whose next link is not yet available are rescheduled once their queue has been flushed
+     */
+    private void schedule(final Host host, final long now) {
+        if ((maxConnectionsPerHost != 0) && (maxConnectionsPerHost <= host.connections)) {
+            return;
+        }
+        Link next = host.queue.peek();
+        if (next == null) {
+            return;
+        }
+        host.readyAt = readyAt(host, now);
+        host.depth = next.getDepth();
+        host.sequence = sequence++;
+        host.scheduled = true;
+        if (host.readyAt <= now) {
+            ready.add(host);
+        } else {
+            waiting.add(host);
+        }
+    }
+
+    /*
+    refills the token bucket of the specified host, and returns when it is next allowed a request
+     */
+    private long readyAt(final Host host, final long now) {
+        long readyAt = Math.max(now, host.penalizedUntil);
+        if (requestsPerSecondPerHost == 0) {
+            return readyAt;
+        }
+        host.tokens = Math.min(burst, host.tokens + (now - host.refilledAt) * requestsPerSecondPerHost / 1e9);
+        host.refilledAt = now;
+        if (host.tokens < 1.0) {
+            readyAt = Math.max(readyAt, now + (long) Math.ceil((1.0 - host.tokens) / requestsPerSecondPerHost * 1e9));
+        }
+        return readyAt;
+    }
+
+    /*
+    the scheduling state of a host
+     */
+    private static final class Host {
+
+        private final String name;
+
+        private final Frontier queue;
+
+        // # of tokens in the bucket
+        private double tokens;
+
+        // System.nanoTime() at the last refill of the bucket
+        private long refilledAt;
+
+        // # of links currently being crawled
+        private int connections;
+
+        // System.nanoTime() until which the host may not be handed out
+        private long penalizedUntil;
+
+        // System.nanoTime() at which the host is next allowed a request, as of when it was scheduled
+        private long readyAt;
+
+        // the depth of the next link, as of when the host was scheduled
+        private int depth;
+
+        // orders hosts whose next links are equally deep
+        private long sequence;
+
+        // whether the host is in either of the ready or waiting queues
+        private boolean scheduled;
+
+        private Host(final String name, final Frontier queue, final double tokens, final long now) {
+            this.name = name;
+            this.queue = queue;
+            this.tokens = tokens;
+            this.refilledAt = now;
+            this.penalizedUntil = now;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
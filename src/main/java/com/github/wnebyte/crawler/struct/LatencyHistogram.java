@@ -0,0 +1,176 @@
+package com.github.wnebyte.crawler.struct;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is a histogram of durations in ns, with log-linear buckets.
+ * <p>
+ * Every power of two is split into {@link #SUB_BUCKETS} equally wide buckets, so that any recorded
+ * duration is reported within 1/16 (about 6%) of its actual value, using a fixed array of counters
+ * regardless of the range of the durations.
+ * <p>
+ * Recording is lock-free and allocates nothing, so that it can be done by every crawler thread on
+ * every crawl.
+ */
+public class LatencyHistogram {
+
+    // the # of bits of a duration, following its highest bit, that select its bucket
+    private static final int SUB_BUCKET_BITS = 4;
+
+    // the # of buckets per power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // enough buckets for any non-negative long
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder total = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong(0L);
+
+    /**
+     * Records the specified <code>nanos</code>. Negative durations are recorded as <code>0</code>.
+     * @param nanos the duration in ns.
+     */
+    public void record(final long nanos) {
+        long value = Math.max(nanos, 0L);
+        counts.incrementAndGet(indexOf(value));
+        total.add(value);
+        long m;
+        while ((m = max.get()) < value) {
+            if (max.compareAndSet(m, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the recorded durations. Durations that are recorded concurrently may or may not
+     * be included.
+     * @return the snapshot.
+     */
+    public Snapshot snapshot() {
+        long[] values = new long[BUCKETS];
+        long count = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            values[i] = counts.get(i);
+            count += values[i];
+        }
+        return new Snapshot(values, count, total.sum(), max.get());
+    }
+
+    /*
+    durations below SUB_BUCKETS have a bucket each, above which each power of two has SUB_BUCKETS buckets
+     */
+    private static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    /*
+    returns the highest duration that falls within the bucket of the specified index
+     */
+    private static long highestValueOf(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        int subBucket = index & (SUB_BUCKETS - 1);
+        long lowest = (1L << exponent) | ((long) subBucket << (exponent - SUB_BUCKET_BITS));
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * This class is an immutable copy of a {@link LatencyHistogram}.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long total;
+
+        private final long max;
+
+        private Snapshot(final long[] counts, final long count, final long total, final long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /**
+         * @return the number of recorded durations.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the mean of the recorded durations in ns, or <code>0</code> if there are none.
+         */
+        public long getMean() {
+            return (count == 0) ? 0L : total / count;
+        }
+
+        /**
+         * @return the longest recorded duration in ns, or <code>0</code> if there are none.
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the duration in ns that the specified <code>percentile</code> of the recorded durations
+         * are shorter than or equal to.
+         * @param percentile the percentile, between <code>0</code> and <code>100</code>.
+         * @return the duration, or <code>0</code> if there are none.
+         */
+        public long getPercentile(final double percentile) {
+            if (count == 0) { return 0L; }
+            double p = Math.min(Math.max(percentile, 0.0), 100.0);
+            long rank = Math.max(1L, (long) Math.ceil(p / 100.0 * count));
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (rank <= seen) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * @return the median of the recorded durations in ns.
+         */
+        public long getP50() {
+            return getPercentile(50.0);
+        }
+
+        /**
+         * @return the 90th percentile of the recorded durations in ns.
+         */
+        public long getP90() {
+            return getPercentile(90.0);
+        }
+
+        /**
+         * @return the 99th percentile of the recorded durations in ns.
+         */
+        public long getP99() {
+            return getPercentile(99.0);
+        }
+    }
+}
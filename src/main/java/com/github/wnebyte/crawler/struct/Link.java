@@ -0,0 +1,87 @@
+package com.github.wnebyte.crawler.struct;
+
+/**
+ * This class represents a url that has been marked for crawling, together with the depth it was
+ * discovered at.
+ */
+public class Link {
+
+    private final String url;
+
+    private final int depth;
+
+    private final int attempts;
+
+    // whether the url was marked before, at a greater depth
+    private final boolean revisit;
+
+    /**
+     * Constructs a new instance using the specified <code>url</code> and <code>depth</code>.
+     * @param url the url.
+     * @param depth the depth, where <code>0</code> is the depth of the root url.
+     */
+    public Link(final String url, final int depth) {
+        this(url, depth, 0);
+    }
+
+    /**
+     * Constructs a new instance using the specified <code>url</code>, <code>depth</code> and
+     * <code>attempts</code>.
+     * @param url the url.
+     * @param depth the depth, where <code>0</code> is the depth of the root url.
+     * @param attempts the number of times crawling the link has failed and been retried.
+     */
+    public Link(final String url, final int depth, final int attempts) {
+        this(url, depth, attempts, false);
+    }
+
+    /**
+     * Constructs a new instance using the specified <code>url</code>, <code>depth</code>,
+     * <code>attempts</code> and <code>revisit</code>.
+     * @param url the url.
+     * @param depth the depth, where <code>0</code> is the depth of the root url.
+     * @param attempts the number of times crawling the link has failed and been retried.
+     * @param revisit whether the url was marked before, at a greater depth.
+     */
+    public Link(final String url, final int depth, final int attempts, final boolean revisit) {
+        this.url = url;
+        this.depth = depth;
+        this.attempts = attempts;
+        this.revisit = revisit;
+    }
+
+    /**
+     * @return a copy of this link, with its number of failed attempts incremented by one.
+     */
+    public Link retry() {
+        return new Link(url, depth, attempts + 1, revisit);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the number of times crawling this link has failed and been retried.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return whether the url of this link was marked before, at a greater depth, in which case crawling
+     * this link crawls the url again, so that the links of its document are followed from the lower depth.
+     */
+    public boolean isRevisit() {
+        return revisit;
+    }
+
+    @Override
+    public String toString() {
+        return url + " (" + depth + ")";
+    }
+}
@@ -0,0 +1,261 @@
+package com.github.wnebyte.crawler.struct;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class is an immutable graph of the links between crawled urls, in compressed sparse row form.
+ * <p>
+ * Every url is a node, identified by an int between <code>0</code> and {@link #getNodeCount()}. The urls
+ * that a node links to are stored in a single array of ints, where they are sorted and unique per node,
+ * along with the offset into it of the links of each node. The urls are stored as UTF-8 bytes in a single
+ * array, and the depth each url was discovered at in another, so that the graph takes a few dozen bytes
+ * per url and four bytes per link, regardless of how many there are.
+ * <p>
+ * Graphs are written to and read from files in the following format, where every int is big-endian:
+ * <pre>
+ * int       magic, 0x4c4e4b47
+ * int       version, 1
+ * int       n, the # of nodes
+ * int       m, the # of links
+ * int[n+1]  the offset into the links of each node, followed by m
+ * int[m]    the links
+ * int[n]    the depth of each node
+ * int[n+1]  the offset into the url bytes of each node, followed by their length
+ * byte[]    the url bytes
+ * </pre>
+ */
+public class LinkGraph {
+
+    private static final int MAGIC = 0x4c4e4b47;
+
+    private static final int VERSION = 1;
+
+    // the size of the buffer that files are read and written through
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    // the offset into targets of the links of each node, followed by the # of links
+    private final int[] offsets;
+
+    private final int[] targets;
+
+    private final int[] depths;
+
+    // the offset into urls of the url of each node, followed by the # of url bytes
+    private final int[] urlOffsets;
+
+    private final byte[] urls;
+
+    LinkGraph(
+            final int[] offsets,
+            final int[] targets,
+            final int[] depths,
+            final int[] urlOffsets,
+            final byte[] urls
+    ) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.depths = depths;
+        this.urlOffsets = urlOffsets;
+        this.urls = urls;
+    }
+
+    /**
+     * @return the number of nodes.
+     */
+    public int getNodeCount() {
+        return depths.length;
+    }
+
+    /**
+     * @return the number of links.
+     */
+    public int getLinkCount() {
+        return targets.length;
+    }
+
+    /**
+     * @param node the node.
+     * @return the url of the specified <code>node</code>.
+     */
+    public String getUrl(final int node) {
+        return new String(urls, urlOffsets[node], urlOffsets[node + 1] - urlOffsets[node], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param node the node.
+     * @return the depth the url of the specified <code>node</code> was discovered at, where the root url
+     * has depth <code>0</code>.
+     */
+    public int getDepth(final int node) {
+        return depths[node];
+    }
+
+    /**
+     * @param node the node.
+     * @return the number of nodes the specified <code>node</code> links to.
+     */
+    public int getOutDegree(final int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    /**
+     * @param node the node.
+     * @param i the index of the link, between <code>0</code> and the out degree of the node.
+     * @return the node that the <code>i</code>th link of the specified <code>node</code> links to.
+     */
+    public int getTarget(final int node, final int i) {
+        if ((i < 0) || (getOutDegree(node) <= i)) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return targets[offsets[node] + i];
+    }
+
+    /**
+     * @param node the node.
+     * @return a copy of the nodes that the specified <code>node</code> links to, in ascending order.
+     */
+    public int[] getTargets(final int node) {
+        return Arrays.copyOfRange(targets, offsets[node], offsets[node + 1]);
+    }
+
+    /**
+     * @return the number of nodes that link to each node.
+     */
+    public int[] getInDegrees() {
+        int[] inDegrees = new int[getNodeCount()];
+        for (int target : targets) {
+            inDegrees[target]++;
+        }
+        return inDegrees;
+    }
+
+    /**
+     * Writes this graph to the specified <code>file</code>.
+     * @param file the file, which is replaced if it exists.
+     * @throws IOException if the file could not be written.
+     */
+    public void writeTo(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(getNodeCount()).putInt(getLinkCount());
+            write(channel, buffer, offsets);
+            write(channel, buffer, targets);
+            write(channel, buffer, depths);
+            write(channel, buffer, urlOffsets);
+            for (int i = 0; i < urls.length; ) {
+                int n = Math.min(buffer.remaining(), urls.length - i);
+                buffer.put(urls, i, n);
+                i += n;
+                if (!buffer.hasRemaining()) {
+                    flush(channel, buffer);
+                }
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Reads a graph from the specified <code>file</code>.
+     * @param file the file, as written by {@link #writeTo(Path)}.
+     * @return the graph.
+     * @throws IOException if the file could not be read, or is not a graph.
+     */
+    public static LinkGraph read(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.limit(0);
+            fill(channel, buffer, 16);
+            if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) {
+                throw new IOException(
+                        "the specified file is not a link graph"
+                );
+            }
+            int n = buffer.getInt();
+            int m = buffer.getInt();
+            if ((n < 0) || (m < 0)) {
+                throw new IOException(
+                        "the specified file is corrupt"
+                );
+            }
+            int[] offsets = read(channel, buffer, n + 1);
+            int[] targets = read(channel, buffer, m);
+            int[] depths = read(channel, buffer, n);
+            int[] urlOffsets = read(channel, buffer, n + 1);
+            byte[] urls = new byte[urlOffsets[n]];
+            for (int i = 0; i < urls.length; ) {
+                if (!buffer.hasRemaining()) {
+                    fill(channel, buffer, 1);
+                }
+                int k = Math.min(buffer.remaining(), urls.length - i);
+                buffer.get(urls, i, k);
+                i += k;
+            }
+            return new LinkGraph(offsets, targets, depths, urlOffsets, urls);
+        }
+    }
+
+    private static void write(final FileChannel channel, final ByteBuffer buffer, final int[] values)
+            throws IOException {
+        for (int i = 0; i < values.length; ) {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush(channel, buffer);
+            }
+            IntBuffer ints = buffer.asIntBuffer();
+            int n = Math.min(ints.remaining(), values.length - i);
+            ints.put(values, i, n);
+            buffer.position(buffer.position() + n * Integer.BYTES);
+            i += n;
+        }
+    }
+
+    private static void flush(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static int[] read(final FileChannel channel, final ByteBuffer buffer, final int length)
+            throws IOException {
+        int[] values = new int[length];
+        for (int i = 0; i < length; ) {
+            if (buffer.remaining() < Integer.BYTES) {
+                fill(channel, buffer, Integer.BYTES);
+            }
+            IntBuffer ints = buffer.asIntBuffer();
+            int n = Math.min(ints.remaining(), length - i);
+            ints.get(values, i, n);
+            buffer.position(buffer.position() + n * Integer.BYTES);
+            i += n;
+        }
+        return values;
+    }
+
+    /*
+    reads from the channel until the buffer has at least the specified # of bytes remaining
+     */
+    private static void fill(final FileChannel channel, final ByteBuffer buffer, final int bytes)
+            throws IOException {
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) == -1) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.wnebyte.crawler.struct;
+
+import com.github.wnebyte.crawler.util.Hashes;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * This class records the links between crawled urls as they are discovered, and builds them into a
+ * {@link LinkGraph}.
+ * <p>
+ * Every url is interned to an int the first time it is seen, by way of an open-addressing table of
+ * 64-bit fingerprints, and its UTF-8 bytes are appended to a single growing array. Links are appended
+ * to a single growing array of longs, each holding the nodes at both ends, so that recording a link
+ * allocates nothing. Like {@link FingerprintSet}, two distinct urls may share a fingerprint, in which case
+ * the latter is considered the same node; the probability of this happening is negligible.
+ * <p>
+ * Instances are safe for use by multiple concurrent crawler threads.
+ */
+public class LinkGraphBuilder {
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    // the fingerprints of the interned urls, where 0 marks an empty slot
+    private long[] keys = new long[1 << 10];
+
+    // the node of the fingerprint in the same slot of keys
+    private int[] nodes = new int[keys.length];
+
+    private int[] depths = new int[1 << 9];
+
+    // the offset into urls of the url of each node, followed by the # of url bytes
+    private int[] urlOffsets = new int[depths.length + 1];
+
+    private byte[] urls = new byte[1 << 15];
+
+    // the # of nodes
+    private int size;
+
+    // each link, with the node it links from in the high bits and the node it links to in the low bits
+    private long[] links = new long[1 << 12];
+
+    private int linkCount;
+
+    /**
+     * Records that the specified <code>url</code>, discovered at the specified <code>depth</code>,
+     * links to each of the specified <code>targets</code>, which are discovered at the next depth.
+     * <p>
+     * Every url is interned, if it was not already, and has the lowest depth it was discovered at.
+     * @param url the url.
+     * @param depth the depth of the url.
+     * @param targets the urls linked to, which may be empty.
+     */
+    public synchronized void addLinks(final String url, final int depth, final Collection<String> targets) {
+        int from = intern(url, depth);
+        for (String target : targets) {
+            int to = intern(target, depth + 1);
+            if (linkCount == links.length) {
+                links = Arrays.copyOf(links, grow(links.length));
+            }
+            links[linkCount++] = ((long) from << 32) | to;
+        }
+    }
+
+    /**
+     * @return the number of nodes.
+     */
+    public synchronized int getNodeCount() {
+        return size;
+    }
+
+    /**
+     * @return the number of links recorded, including duplicates.
+     */
+    public synchronized int getLinkCount() {
+        return linkCount;
+    }
+
+    /**
+     * Builds the links recorded so far into a graph, in which repeated links between the same two
+     * nodes are counted once.
+     * @return the graph.
+     */
+    public synchronized LinkGraph build() {
+        // counting sort by the node each link is from
+        int[] offsets = new int[size + 1];
+        for (int i = 0; i < linkCount; i++) {
+            offsets[(int) (links[i] >>> 32) + 1]++;
+        }
+        for (int node = 0; node < size; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        int[] targets = new int[linkCount];
+        int[] next = Arrays.copyOf(offsets, size);
+        for (int i = 0; i < linkCount; i++) {
+            targets[next[(int) (links[i] >>> 32)]++] = (int) links[i];
+        }
+        // sort the links of each node, and remove duplicates by compacting in place
+        int m = 0;
+        int start = 0;
+        for (int node = 0; node < size; node++) {
+            int end = offsets[node + 1];
+            Arrays.sort(targets, start, end);
+            offsets[node] = m;
+            for (int i = start; i < end; i++) {
+                if ((i == start) || (targets[i] != targets[i - 1])) {
+                    targets[m++] = targets[i];
+                }
+            }
+            start = end;
+        }
+        offsets[size] = m;
+        return new LinkGraph(
+                offsets,
+                Arrays.copyOf(targets, m),
+                Arrays.copyOf(depths, size),
+                Arrays.copyOf(urlOffsets, size + 1),
+                Arrays.copyOf(urls, urlOffsets[size])
+        );
+    }
+
+    /*
+    returns the node of the specified url, interning it if it is new, and lowers its depth to the
+    specified depth if it is lower
+     */
+    private int intern(final String url, final int depth) {
+        long fp = Hashes.fingerprint64(url);
+        if (fp == 0L) {
+            fp = 1L;
+        }
+        int mask = keys.length - 1;
+        int i = (int) fp & mask;
+        long slot;
+        while ((slot = keys[i]) != 0L) {
+            if (slot == fp) {
+                int node = nodes[i];
+                if (depth < depths[node]) {
+                    depths[node] = depth;
+                }
+                return node;
+            }
+            i = (i + 1) & mask;
+        }
+        int node = append(url, depth);
+        keys[i] = fp;
+        nodes[i] = node;
+        if (size > (keys.length >> 1) + (keys.length >> 2)) {
+            resize();
+        }
+        return node;
+    }
+
+    private int append(final String url, final int depth) {
+        if (size == depths.length) {
+            depths = Arrays.copyOf(depths, grow(depths.length));
+            urlOffsets = Arrays.copyOf(urlOffsets, depths.length + 1);
+        }
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        int offset = urlOffsets[size];
+        if (urls.length - offset < bytes.length) {
+            urls = Arrays.copyOf(urls, Math.max(grow(urls.length), offset + bytes.length));
+        }
+        System.arraycopy(bytes, 0, urls, offset, bytes.length);
+        depths[size] = depth;
+        urlOffsets[size + 1] = offset + bytes.length;
+        return size++;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldNodes = nodes;
+        long[] keys = new long[oldKeys.length << 1];
+        int[] nodes = new int[keys.length];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long fp = oldKeys[j];
+            if (fp != 0L) {
+                int i = (int) fp & mask;
+                while (keys[i] != 0L) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = fp;
+                nodes[i] = oldNodes[j];
+            }
+        }
+        this.keys = keys;
+        this.nodes = nodes;
+    }
+
+    /*
+    returns the next capacity of an array of the specified capacity, which grows by half
+     */
+    private static int grow(final int capacity) {
+        int n = capacity + (capacity >> 1);
+        if (n < 0) {
+            throw new IllegalStateException(
+                    "the link graph is too large"
+            );
+        }
+        return n;
+    }
+}
@@ -1,10 +1,36 @@
 package com.github.wnebyte.crawler.struct;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class Node<T> {
+/**
+ * This class is a node of a tree, such as a sitemap.
+ * <p>
+ * Trees are traversed iteratively, so that they may be arbitrarily deep, and iterating over a tree
+ * visits each node depth-first, in pre-order. The depth of a node is computed once and cached, and
+ * recomputed if it, or one of its ancestors, is attached to another parent.
+ * <p>
+ * Trees may be traversed by multiple concurrent threads, as long as they are not modified meanwhile.
+ */
+public class Node<T> implements Iterable<Node<T>> {
+
+    // the # of queued tasks beyond which a parallel traversal stops forking subtrees
+    private static final int SURPLUS_TASKS = 3;
+
+    // the # of nodes along a chain of only children that a spliterator descends through to find a split
+    private static final int MAX_SPLIT_DESCENT = 1024;
+
+    private static final int UNKNOWN_DEPTH = -1;
 
     private Node<T> parent;
 
@@ -12,6 +38,9 @@ public class Node<T> {
 
     private final T value;
 
+    // the cached depth; if a node's depth is cached, then so is the depth of every one of its ancestors
+    private int depth = UNKNOWN_DEPTH;
+
     public Node(final T value) {
         this.value = value;
     }
@@ -38,6 +67,7 @@ public class Node<T> {
 
     public void setParent(final Node<T> parent) {
         this.parent = parent;
+        invalidateDepth();
     }
 
     public Node<T> getParent() {
@@ -60,39 +90,321 @@ public class Node<T> {
         return value;
     }
 
+    /**
+     * @return the # of ancestors of this node, which is <code>0</code> for the root.
+     */
     public int getDepth() {
-        if (this.isRoot()) {
-            return 0;
-        }
-        int depth = 0;
-        depth = Math.max(depth, this.getParent().getDepth());
-        return depth + 1;
-    }
-
-    public List<Node<T>> leafNodes()
-    {
-        List<Node<T>> leafNodes = new ArrayList<Node<T>>();
-        if (this.isLeaf()) {
-            leafNodes.add(this);
-        } else {
-            for (Node<T> child : this.getChildren()) {
-                leafNodes.addAll(child.leafNodes());
-            }
+        if (depth != UNKNOWN_DEPTH) {
+            return depth;
+        }
+        // find the nearest ancestor whose depth is known
+        int steps = 0;
+        Node<T> node = this;
+        while ((node.depth == UNKNOWN_DEPTH) && !node.isRoot()) {
+            node = node.getParent();
+            steps++;
         }
+        int d = ((node.depth == UNKNOWN_DEPTH) ? 0 : node.depth) + steps;
+        // and cache the depth of every node on the way there
+        for (node = this; steps >= 0; steps--) {
+            node.depth = d--;
+            node = node.getParent();
+        }
+        return depth;
+    }
+
+    /**
+     * @return the leaves of the tree rooted at this node, in depth-first order.
+     */
+    public List<Node<T>> leafNodes() {
+        List<Node<T>> leafNodes = new ArrayList<>();
+        consume(node -> {
+            if (node.isLeaf()) {
+                leafNodes.add(node);
+            }
+        });
         return leafNodes;
     }
 
+    /**
+     * Passes every node of the tree rooted at this node to the specified <code>consumer</code>,
+     * depth-first.
+     * @param consumer the consumer.
+     */
     public void consume(final Consumer<Node<T>> consumer) {
         consume(this, consumer);
     }
 
+    /**
+     * Passes every node of the tree rooted at the specified <code>node</code> to the specified
+     * <code>consumer</code>, depth-first.
+     * @param node the root of the tree.
+     * @param consumer the consumer.
+     */
     public static <T> void consume(final Node<T> node, final Consumer<Node<T>> consumer) {
-        consumer.accept(node);
-        if (node.isLeaf()) {
-            return;
+        Deque<Node<T>> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            Node<T> next = stack.pop();
+            consumer.accept(next);
+            pushChildren(stack, next);
         }
-        for (Node<T> child : node.getChildren()) {
-            consume(child, consumer);
+    }
+
+    /**
+     * Passes every node of the tree rooted at this node to the specified <code>consumer</code>,
+     * breadth-first.
+     * @param consumer the consumer.
+     */
+    public void consumeBreadthFirst(final Consumer<Node<T>> consumer) {
+        Deque<Node<T>> queue = new ArrayDeque<>();
+        queue.add(this);
+        while (!queue.isEmpty()) {
+            Node<T> next = queue.poll();
+            consumer.accept(next);
+            queue.addAll(next.getChildren());
+        }
+    }
+
+    /**
+     * Passes every node of the tree rooted at this node to the specified <code>consumer</code>,
+     * in no particular order, using the common fork-join pool.
+     * @param consumer the consumer, which must be safe for use by multiple concurrent threads.
+     */
+    public void consumeParallel(final Consumer<Node<T>> consumer) {
+        consumeParallel(consumer, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Passes every node of the tree rooted at this node to the specified <code>consumer</code>,
+     * in no particular order, using the specified fork-join <code>pool</code>.
+     * <p>
+     * Subtrees are handed to other threads of the pool only while they are short of work, so that
+     * large trees are traversed in about as many tasks as there are threads, however unbalanced.
+     * @param consumer the consumer, which must be safe for use by multiple concurrent threads.
+     * @param pool the pool.
+     */
+    public void consumeParallel(final Consumer<Node<T>> consumer, final ForkJoinPool pool) {
+        pool.invoke(new ConsumeTask<>(null, this, consumer));
+    }
+
+    /**
+     * @return an iterator over the tree rooted at this node, depth-first.
+     */
+    @Override
+    public Iterator<Node<T>> iterator() {
+        return new TreeIterator<>(this, false);
+    }
+
+    /**
+     * @return an iterator over the tree rooted at this node, breadth-first.
+     */
+    public Iterator<Node<T>> breadthFirstIterator() {
+        return new TreeIterator<>(this, true);
+    }
+
+    /**
+     * @return a spliterator over the tree rooted at this node, which splits off subtrees.
+     */
+    @Override
+    public Spliterator<Node<T>> spliterator() {
+        return new TreeSpliterator<>(this);
+    }
+
+    /**
+     * @return a sequential stream of the nodes of the tree rooted at this node, depth-first.
+     */
+    public Stream<Node<T>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return a parallel stream of the nodes of the tree rooted at this node, in no particular order.
+     */
+    public Stream<Node<T>> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /*
+    clears the cached depth of this node and its descendants; descendants of a node whose depth is not
+    cached never have a cached depth, so the subtrees below them are skipped
+     */
+    private void invalidateDepth() {
+        if (depth == UNKNOWN_DEPTH) { return; }
+        Deque<Node<T>> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            Node<T> node = stack.pop();
+            node.depth = UNKNOWN_DEPTH;
+            for (Node<T> child : node.getChildren()) {
+                if (child.depth != UNKNOWN_DEPTH) {
+                    stack.push(child);
+                }
+            }
+        }
+    }
+
+    /*
+    pushes the children of the specified node in reverse, so that the first child is popped first
+     */
+    private static <T> void pushChildren(final Deque<Node<T>> stack, final Node<T> node) {
+        List<Node<T>> children = node.getChildren();
+        for (int i = children.size() - 1; i >= 0; i--) {
+            stack.push(children.get(i));
+        }
+    }
+
+    private static final class TreeIterator<T> implements Iterator<Node<T>> {
+
+        private final Deque<Node<T>> pending = new ArrayDeque<>();
+
+        private final boolean breadthFirst;
+
+        private TreeIterator(final Node<T> root, final boolean breadthFirst) {
+            this.breadthFirst = breadthFirst;
+            pending.add(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public Node<T> next() {
+            if (pending.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            if (breadthFirst) {
+                Node<T> node = pending.poll();
+                pending.addAll(node.getChildren());
+                return node;
+            }
+            Node<T> node = pending.pop();
+            pushChildren(pending, node);
+            return node;
+        }
+    }
+
+    /*
+    traverses the subtrees on its stack depth-first, after the nodes it has to visit without descending
+    into them; splits by handing off the subtrees at the bottom of its stack, which are the largest
+     */
+    private static final class TreeSpliterator<T> implements Spliterator<Node<T>> {
+
+        // nodes whose children have already been pushed as subtrees of their own
+        private final Deque<Node<T>> visits = new ArrayDeque<>();
+
+        // the roots of the subtrees yet to be traversed, the next one on top
+        private final Deque<Node<T>> subtrees = new ArrayDeque<>();
+
+        // the size of a tree is not known, so the estimate is halved at every split
+        private long estimate;
+
+        private TreeSpliterator(final Node<T> root) {
+            subtrees.push(root);
+            this.estimate = Long.MAX_VALUE;
+        }
+
+        private TreeSpliterator(final long estimate) {
+            this.estimate = estimate;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super Node<T>> action) {
+            if (!visits.isEmpty()) {
+                action.accept(visits.poll());
+                return true;
+            }
+            if (subtrees.isEmpty()) {
+                return false;
+            }
+            Node<T> node = subtrees.pop();
+            pushChildren(subtrees, node);
+            action.accept(node);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super Node<T>> action) {
+            while (!visits.isEmpty()) {
+                action.accept(visits.poll());
+            }
+            while (!subtrees.isEmpty()) {
+                Node<T> node = subtrees.pop();
+                pushChildren(subtrees, node);
+                action.accept(node);
+            }
+        }
+
+        @Override
+        public Spliterator<Node<T>> trySplit() {
+            // descend through a lone subtree until there are subtrees to split between
+            for (int i = 0; (subtrees.size() == 1) && (i < MAX_SPLIT_DESCENT); i++) {
+                Node<T> node = subtrees.pop();
+                visits.add(node);
+                pushChildren(subtrees, node);
+            }
+            if (subtrees.size() < 2) {
+                return null;
+            }
+            estimate >>>= 1;
+            TreeSpliterator<T> split = new TreeSpliterator<>(estimate);
+            for (int n = subtrees.size() / 2; n > 0; n--) {
+                split.subtrees.push(subtrees.pollLast());
+            }
+            return split;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.NONNULL;
+        }
+    }
+
+    /*
+    visits a subtree depth-first, forking the subtrees of the children it comes across, except the last,
+    while the threads of the pool are short of work; tasks complete without waiting on one another,
+    so that deep trees do not nest tasks on the stack
+     */
+    private static final class ConsumeTask<T> extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Node<T> root;
+
+        private final Consumer<Node<T>> consumer;
+
+        private ConsumeTask(final CountedCompleter<?> completer, final Node<T> root, final Consumer<Node<T>> consumer) {
+            super(completer);
+            this.root = root;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void compute() {
+            Deque<Node<T>> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                Node<T> node = stack.pop();
+                consumer.accept(node);
+                List<Node<T>> children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    Node<T> child = children.get(i);
+                    if ((i != 0) && !child.isLeaf() && (getSurplusQueuedTaskCount() <= SURPLUS_TASKS)) {
+                        addToPendingCount(1);
+                        new ConsumeTask<>(this, child, consumer).fork();
+                    } else {
+                        stack.push(child);
+                    }
+                }
+            }
+            tryComplete();
         }
     }
 }
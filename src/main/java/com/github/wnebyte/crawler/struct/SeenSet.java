@@ -0,0 +1,75 @@
+package com.github.wnebyte.crawler.struct;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * This interface declares methods for keeping track of the urls that have been marked for crawling.
+ * <p>
+ * Implementations must be safe for use by multiple concurrent crawler threads.
+ */
+public interface SeenSet {
+
+    /**
+     * Adds the specified <code>url</code> to this set.
+     * @param url the url.
+     * @return <code>true</code> if the specified <code>url</code> was not already present,
+     * otherwise <code>false</code>.
+     */
+    boolean add(final String url);
+
+    /**
+     * Adds the specified <code>url</code> to this set at the specified <code>depth</code>, or lowers its
+     * depth to the specified <code>depth</code> if it is present at a greater depth, so that a url that is
+     * first discovered along a longer path can be crawled again from the shorter one.
+     * <p>
+     * Sets that do not record depths add the url as {@link #add(String)} does, and report a url that was
+     * already present as present at the specified <code>depth</code>. Urls added by {@link #add(String)}
+     * are present at depth <code>0</code>.
+     * @param url the url.
+     * @param depth the depth.
+     * @return the depth the url was present at, which is greater than the specified <code>depth</code> if
+     * its depth was lowered, or <code>-1</code> if it was not present.
+     */
+    default int addAtDepth(final String url, final int depth) {
+        return add(url) ? -1 : depth;
+    }
+
+    /**
+     * Returns the lowest depth that the specified <code>url</code> has been added at.
+     * @param url the url.
+     * @return the depth, or <code>-1</code> if the url is not present, or this set does not record depths.
+     */
+    default int getDepth(final String url) {
+        return -1;
+    }
+
+    /**
+     * Returns whether the specified <code>url</code> is present in this set.
+     * @param url the url.
+     * @return <code>true</code> if the specified <code>url</code> is present, otherwise <code>false</code>.
+     */
+    boolean contains(final String url);
+
+    /**
+     * @return the number of urls that have been added to this set.
+     */
+    long size();
+
+    /**
+     * Writes the contents of this set to the specified <code>out</code>, such that it can be restored
+     * using {@link #readFrom(DataInput)}.
+     * Urls added concurrently with the write may or may not be included.
+     * @param out the output.
+     * @throws IOException if the output could not be written to.
+     */
+    void writeTo(final DataOutput out) throws IOException;
+
+    /**
+     * Adds the contents previously written by {@link #writeTo(DataOutput)} to this set.
+     * @param in the input.
+     * @throws IOException if the input could not be read, or was not written by a compatible set.
+     */
+    void readFrom(final DataInput in) throws IOException;
+}
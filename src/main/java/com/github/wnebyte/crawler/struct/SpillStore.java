@@ -0,0 +1,344 @@
+package com.github.wnebyte.crawler.struct;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class holds the links that every {@link SpillingFrontier} of a crawl has spilled to disk, along with
+ * the budget of links that they may hold in memory between them.
+ * <p>
+ * Once the frontiers hold <code>capacity</code> links in memory, further links are buffered by each frontier
+ * and appended in blocks to segment files that all frontiers share, each block with a single write.
+ * A frontier keeps the position of each of its blocks in memory, and reads a block back with a single read
+ * once it is next to be handed out. Heap usage is therefore fixed by the capacity and the number of
+ * frontiers, along with a few bytes per block, rather than the number of pending links.
+ * <p>
+ * Blocks are written and read back without holding the lock of this store, so that frontiers spilling to
+ * the same store do not wait on each other's I/O.
+ * <p>
+ * A segment file is deleted as soon as every block in it has been read back, and every segment file is
+ * deleted once the store is closed. Instances are safe for use by multiple concurrent threads.
+ */
+public class SpillStore implements Closeable {
+
+    // [int depth][int attempts][byte revisit][int length], followed by length bytes of the url as UTF-8
+    private static final int HEADER_BYTES = 3 * Integer.BYTES + 1;
+
+    // the size in bytes beyond which a frontier writes the links it has buffered as a block
+    private static final int BLOCK_SIZE = 4096;
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    // the directory to create segment files in
+    private final Path directory;
+
+    // the maximum # of links held in memory by all frontiers
+    private final int capacity;
+
+    // the size in bytes beyond which a new segment file is started
+    private final int segmentSize;
+
+    // the segments that hold blocks that have not been read back
+    private final Set<Segment> segments = new HashSet<>();
+
+    // the segment that blocks are appended to, or null if there is none
+    private Segment current;
+
+    // # of links held in memory by frontiers
+    private int held;
+
+    // # of links written to disk that have not been read back
+    private long spilled;
+
+    /**
+     * Constructs a new instance.
+     * @param directory the directory to create segment files in.
+     * @param capacity the maximum number of links that the frontiers may hold in memory between them.
+     * @param segmentSize the size in bytes beyond which a new segment file is started.
+     */
+    public SpillStore(final Path directory, final int capacity, final int segmentSize) {
+        if (directory == null) {
+            throw new IllegalArgumentException(
+                    "directory must be non null"
+            );
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "capacity must be greater than -1"
+            );
+        }
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException(
+                    "segmentSize must be greater than 0"
+            );
+        }
+        this.directory = directory;
+        this.capacity = capacity;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * @return the number of links written to disk that have not been read back.
+     */
+    public synchronized long getSpilled() {
+        return spilled;
+    }
+
+    /**
+     * @return the number of links held in memory by the frontiers.
+     */
+    public synchronized int getHeld() {
+        return held;
+    }
+
+    /**
+     * @return the number of segment files.
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Deletes every segment file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        IOException exception = null;
+        for (Segment segment : segments) {
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        segments.clear();
+        current = null;
+        spilled = 0;
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /*
+    takes a link of the memory budget, if there is one left
+     */
+    synchronized boolean reserve() {
+        if (held == capacity) { return false; }
+        held++;
+        return true;
+    }
+
+    /*
+    returns a link to the memory budget
+     */
+    synchronized void release() {
+        held--;
+    }
+
+    /*
+    the size in bytes beyond which a frontier should append the links it has buffered
+     */
+    int getBlockSize() {
+        return Math.min(BLOCK_SIZE, segmentSize);
+    }
+
+    /*
+    the approximate # of bytes that the specified link takes up in a block
+     */
+    static int sizeOf(final Link link) {
+        return HEADER_BYTES + link.getUrl().length();
+    }
+
+    /*
+    appends the specified links as a single block, and returns its position
+     */
+    Block append(final List<Link> links) {
+        int length = 0;
+        List<byte[]> urls = new ArrayList<>(links.size());
+        for (Link link : links) {
+            byte[] url = link.getUrl().getBytes(StandardCharsets.UTF_8);
+            urls.add(url);
+            length += HEADER_BYTES + url.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (int i = 0; i < links.size(); i++) {
+            Link link = links.get(i);
+            byte[] url = urls.get(i);
+            buffer.putInt(link.getDepth()).putInt(link.getAttempts())
+                    .put((byte) (link.isRevisit() ? 1 : 0)).putInt(url.length).put(url);
+        }
+        buffer.flip();
+        Block block;
+        try {
+            block = allocate(length, links.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            write(block.segment.channel, buffer, block.offset);
+        } catch (IOException e) {
+            discard(block);
+            throw new UncheckedIOException(e);
+        }
+        return block;
+    }
+
+    /*
+    reads back the links of the specified block, which is deleted along with its segment, if it was the
+    last block of the segment to be read back
+     */
+    List<Link> read(final Block block) {
+        ByteBuffer buffer = ByteBuffer.allocate(block.length);
+        try {
+            read(block.segment.channel, buffer, block.offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.flip();
+        List<Link> links = new ArrayList<>(block.count);
+        for (int i = 0; i < block.count; i++) {
+            int depth = buffer.getInt();
+            int attempts = buffer.getInt();
+            boolean revisit = (buffer.get() != 0);
+            byte[] url = new byte[buffer.getInt()];
+            buffer.get(url);
+            links.add(new Link(new String(url, StandardCharsets.UTF_8), depth, attempts, revisit));
+        }
+        discard(block);
+        return links;
+    }
+
+    /*
+    marks the specified block as read back without reading it, and deletes its segment, if it was the last
+    block of the segment to be read back
+     */
+    synchronized void discard(final Block block) {
+        Segment segment = block.segment;
+        spilled -= block.count;
+        segment.read += block.count;
+        if ((segment.read == segment.written) && (segment != current) && segments.remove(segment)) {
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /*
+    reserves room for a block of the specified length in the current segment, starting a new segment
+    if the block does not fit
+     */
+    private synchronized Block allocate(final int length, final int count) throws IOException {
+        if ((current == null) || ((current.size != 0) && (segmentSize < current.size + length))) {
+            roll();
+        }
+        Block block = new Block(current, current.size, length, count);
+        current.size += length;
+        current.written += count;
+        spilled += count;
+        return block;
+    }
+
+    /*
+    starts a new segment, and deletes the previous segment if it has already been read back
+     */
+    private void roll() throws IOException {
+        Segment previous = current;
+        Files.createDirectories(directory);
+        Path path = Files.createTempFile(directory, "frontier-", ".seg");
+        current = new Segment(path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        segments.add(current);
+        if ((previous != null) && (previous.read == previous.written)) {
+            segments.remove(previous);
+            previous.delete();
+        }
+    }
+
+    private static void write(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        for (long p = position; buffer.hasRemaining(); ) {
+            p += channel.write(buffer, p);
+        }
+    }
+
+    private static void read(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        for (long p = position; buffer.hasRemaining(); ) {
+            int n = channel.read(buffer, p);
+            if (n == -1) {
+                throw new EOFException();
+            }
+            p += n;
+        }
+    }
+
+    /*
+    the position of a block of links within a segment
+     */
+    static final class Block {
+
+        private final Segment segment;
+
+        private final int offset;
+
+        private final int length;
+
+        // the # of links
+        private final int count;
+
+        private Block(final Segment segment, final int offset, final int length, final int count) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+        }
+
+        int getCount() {
+            return count;
+        }
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+
+        private final FileChannel channel;
+
+        // the # of bytes allocated to blocks
+        private int size;
+
+        // the # of links allocated to blocks
+        private int written;
+
+        // the # of links read back
+        private int read;
+
+        private Segment(final Path path, final FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        private void delete() throws IOException {
+            try {
+                channel.close();
+            } finally {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
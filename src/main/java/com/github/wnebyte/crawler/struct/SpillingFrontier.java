@@ -0,0 +1,251 @@
+package com.github.wnebyte.crawler.struct;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * This class is a {@link Frontier} that hands out links in the order they were offered, holding links in
+ * memory while its {@link SpillStore} has room in its memory budget, and spilling the rest to the store's
+ * segment files on disk.
+ * <p>
+ * Once links have been spilled, every subsequent link is spilled as well, until every spilled link has been
+ * handed out, so that links are handed out in order. Spilled links are buffered in blocks, which are only
+ * written to disk, and read back one block at a time once they are next to be handed out, by
+ * {@link #flush()}. Offering and polling links therefore never blocks on I/O; {@link #poll()} returns
+ * <code>null</code> while the next links have yet to be read back. Buffered and read back links do not
+ * count against the memory budget, but a frontier holds at most a block of links of either.
+ */
+public class SpillingFrontier implements Frontier {
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    private final SpillStore store;
+
+    // the oldest links, held in memory under the memory budget
+    private final Queue<Link> head = new ArrayDeque<>();
+
+    // the spilled links that are next to be handed out, once read back or never written, otherwise null
+    private Chunk front;
+
+    // the blocks of spilled links written to disk, in order
+    private final Queue<SpillStore.Block> blocks = new ArrayDeque<>();
+
+    // the blocks of spilled links that are full, but have yet to be written to disk
+    private final Queue<Chunk> sealed = new ArrayDeque<>();
+
+    // the newest spilled links, or null
+    private Chunk tail;
+
+    // the block being written to disk, whose links may not be handed out until it has been written
+    private Chunk writing;
+
+    // whether a thread is writing or reading back blocks
+    private boolean flushing;
+
+    // # of links held
+    private int size;
+
+    /**
+     * Constructs a new instance.
+     * @param store the store to spill links to, which may be shared with other frontiers.
+     */
+    public SpillingFrontier(final SpillStore store) {
+        if (store == null) {
+            throw new IllegalArgumentException(
+                    "store must be non null"
+            );
+        }
+        this.store = store;
+    }
+
+    @Override
+    public synchronized void offer(final Link link) {
+        if ((size == head.size()) && store.reserve()) {
+            head.offer(link);
+        } else {
+            if (tail == null) {
+                tail = new Chunk();
+            }
+            tail.add(link);
+            if (store.getBlockSize() <= tail.bytes) {
+                sealed.offer(tail);
+                tail = null;
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Removes and returns the next link, or <code>null</code> if the next link has yet to be read back
+     * by {@link #flush()}.
+     */
+    @Override
+    public synchronized Link poll() {
+        Link link = head.poll();
+        if (link != null) {
+            store.release();
+            size--;
+            return link;
+        }
+        Chunk chunk = next();
+        if (chunk == null) { return null; }
+        link = chunk.poll();
+        size--;
+        if (chunk.isEmpty()) {
+            if (chunk == front) {
+                front = null;
+            } else if (chunk == tail) {
+                tail = null;
+            } else {
+                sealed.poll();
+            }
+        }
+        return link;
+    }
+
+    /**
+     * Returns the next link, or <code>null</code> if the next link has yet to be read back by
+     * {@link #flush()}.
+     */
+    @Override
+    public synchronized Link peek() {
+        if (!head.isEmpty()) {
+            return head.peek();
+        }
+        Chunk chunk = next();
+        return (chunk == null) ? null : chunk.peek();
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Writes the full blocks of spilled links to disk, and reads back the next block, if the next links
+     * to be handed out have been written to disk. The lock of this frontier is not held while doing so.
+     * @throws UncheckedIOException if a block could not be written to, or read back from disk.
+     */
+    @Override
+    public boolean flush() {
+        synchronized (this) {
+            if (flushing) { return false; }
+            flushing = true;
+        }
+        boolean flushed = false;
+        try {
+            while (true) {
+                SpillStore.Block block = null;
+                Chunk chunk = null;
+                synchronized (this) {
+                    if ((front == null) && blocks.isEmpty() && !sealed.isEmpty()) {
+                        // the oldest full block is next to be handed out, and need not be written
+                        front = sealed.poll();
+                        continue;
+                    } else if ((front == null) && !blocks.isEmpty()) {
+                        block = blocks.peek();
+                    } else if (!sealed.isEmpty()) {
+                        chunk = writing = sealed.peek();
+                    } else {
+                        flushing = false;
+                        return flushed;
+                    }
+                }
+                if (block != null) {
+                    Chunk read = new Chunk(store.read(block));
+                    synchronized (this) {
+                        blocks.poll();
+                        front = read;
+                    }
+                } else {
+                    block = store.append(chunk.links);
+                    synchronized (this) {
+                        writing = null;
+                        sealed.poll();
+                        if ((front == null) && blocks.isEmpty()) {
+                            // handed out every link before the block while it was written
+                            store.discard(block);
+                            front = chunk;
+                        } else {
+                            blocks.offer(block);
+                        }
+                    }
+                }
+                flushed = true;
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                writing = null;
+                flushing = false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of links spilled beyond the memory budget, whether written to disk or not.
+     */
+    public synchronized int getSpilled() {
+        return size - head.size();
+    }
+
+    /*
+    returns the spilled links that are next to be handed out, or null if they are on disk or being written
+     */
+    private Chunk next() {
+        if (front != null) {
+            return front;
+        }
+        if (!blocks.isEmpty()) {
+            return null;
+        }
+        Chunk chunk = sealed.isEmpty() ? tail : sealed.peek();
+        return (chunk == writing) ? null : chunk;
+    }
+
+    /*
+    a block of spilled links held in memory
+     */
+    private static final class Chunk {
+
+        private final List<Link> links;
+
+        // the # of links handed out
+        private int polled;
+
+        // the approximate size in bytes of the links once written
+        private int bytes;
+
+        private Chunk() {
+            this.links = new ArrayList<>();
+        }
+
+        private Chunk(final List<Link> links) {
+            this.links = links;
+        }
+
+        private void add(final Link link) {
+            links.add(link);
+            bytes += SpillStore.sizeOf(link);
+        }
+
+        private Link poll() {
+            Link link = links.get(polled);
+            links.set(polled++, null);
+            return link;
+        }
+
+        private Link peek() {
+            return links.get(polled);
+        }
+
+        private boolean isEmpty() {
+            return (polled == links.size());
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.github.wnebyte.crawler.test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is an in-process http server that serves a generated website, so that crawls can be
+ * measured reproducibly and offline.
+ * <p>
+ * The pages form a tree of the specified <code>depth</code>, in which every page links to
+ * <code>fanOut</code> child pages, as well as back to its parent and the root page, to a page of the
+ * same depth elsewhere in the tree, and to a page of another domain. Every page is padded to
+ * <code>pageSize</code> bytes, and references a shared stylesheet, a shared png image, and a shared svg image,
+ * which is not a supported image.
+ * <p>
+ * Each response is delayed by <code>latency</code> ms, and a fraction <code>errorRate</code> of the
+ * pages, chosen by the <code>seed</code>, respond with status 500. The pages below a page that responds
+ * with status 500 can only be reached through the links of other pages of their depth.
+ * <p>
+ * The pages may be spread over several <code>hosts</code>, each served on a port of its own, so that a
+ * crawl can be spread over a cluster by host.
+ */
+public class SyntheticSite implements Closeable {
+
+    private static final String STYLESHEET = "body { font-family: sans-serif; }\n";
+
+    private static final byte[] LOGO = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R'
+    };
+
+    private static final String ICON = "<svg xmlns=\"http://www.w3.org/2000/svg\"/>\n";
+
+    // padding that pages are filled with
+    private static final byte[] PADDING = ("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do " +
+            "eiusmod tempor incididunt ut labore et dolore magna aliqua.</p>\n").getBytes(StandardCharsets.UTF_8);
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    private final int depth;
+
+    private final int fanOut;
+
+    private final int pageSize;
+
+    private final long latency;
+
+    private final double errorRate;
+
+    private final long seed;
+
+    // the # of pages of each depth, and of every depth above it
+    private final long[] pagesUpToDepth;
+
+    // the server of each host, where the root page is served by the first
+    private final HttpServer[] servers;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final AtomicLong requestsServed = new AtomicLong(0L);
+
+    private final AtomicLong bytesServed = new AtomicLong(0L);
+
+    /**
+     * Constructs a new instance, and starts serving on an ephemeral port of the loopback address.
+     * @param depth the depth of the deepest pages, where the root page has depth <code>0</code>.
+     * @param fanOut the number of child pages linked to by each page.
+     * @param pageSize the approximate size of each page in bytes.
+     * @param latency the delay in ms before each response.
+     * @param errorRate the fraction of the pages, between <code>0</code> and <code>1</code>, that respond
+     * with status 500.
+     * @param seed the seed that chooses the pages that respond with status 500, and the cross links.
+     * @throws IOException if the server could not be started.
+     */
+    public SyntheticSite(
+            final int depth,
+            final int fanOut,
+            final int pageSize,
+            final long latency,
+            final double errorRate,
+            final long seed
+    ) throws IOException {
+        this(depth, fanOut, pageSize, latency, errorRate, seed, 1);
+    }
+
+    /**
+     * Constructs a new instance, and starts serving each host on an ephemeral port of the loopback address.
+     * @param depth the depth of the deepest pages, where the root page has depth <code>0</code>.
+     * @param fanOut the number of child pages linked to by each page.
+     * @param pageSize the approximate size of each page in bytes.
+     * @param latency the delay in ms before each response.
+     * @param errorRate the fraction of the pages, between <code>0</code> and <code>1</code>, that respond
+     * with status 500.
+     * @param seed the seed that chooses the pages that respond with status 500, and the cross links.
+     * @param hosts the number of hosts that the pages are spread over, in turn.
+     * @throws IOException if the servers could not be started.
+     */
+    public SyntheticSite(
+            final int depth,
+            final int fanOut,
+            final int pageSize,
+            final long latency,
+            final double errorRate,
+            final long seed,
+            final int hosts
+    ) throws IOException {
+        if (depth < 0) {
+            throw new IllegalArgumentException(
+                    "depth must be greater than -1"
+            );
+        }
+        if (fanOut <= 0) {
+            throw new IllegalArgumentException(
+                    "fanOut must be greater than 0"
+            );
+        }
+        if ((pageSize < 0) || (latency < 0)) {
+            throw new IllegalArgumentException(
+                    "pageSize and latency must be greater than -1"
+            );
+        }
+        if ((errorRate < 0) || (1 < errorRate)) {
+            throw new IllegalArgumentException(
+                    "errorRate must be between 0 and 1"
+            );
+        }
+        if (hosts <= 0) {
+            throw new IllegalArgumentException(
+                    "hosts must be greater than 0"
+            );
+        }
+        this.depth = depth;
+        this.fanOut = fanOut;
+        this.pageSize = pageSize;
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.seed = seed;
+        this.pagesUpToDepth = new long[depth + 1];
+        long pages = 1;
+        for (int d = 0; d <= depth; d++) {
+            pagesUpToDepth[d] = ((d == 0) ? 0 : pagesUpToDepth[d - 1]) + pages;
+            pages = Math.multiplyExact(pages, fanOut);
+        }
+        this.servers = new HttpServer[hosts];
+        for (int i = 0; i < hosts; i++) {
+            servers[i] = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            servers[i].setExecutor(executor);
+            servers[i].createContext("/", this::handle);
+            servers[i].start();
+        }
+    }
+
+    /**
+     * @return the url of the root page.
+     */
+    public String getRootUrl() {
+        return getUrl(0);
+    }
+
+    /**
+     * @return the number of pages of the website.
+     */
+    public long getPages() {
+        return pagesUpToDepth[depth];
+    }
+
+    /**
+     * @return the number of pages that respond with status 500.
+     */
+    public long getErrorPages() {
+        long n = 0;
+        for (long page = 0; page < getPages(); page++) {
+            if (isError(page)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return the number of requests served.
+     */
+    public long getRequestsServed() {
+        return requestsServed.get();
+    }
+
+    /**
+     * @return the number of bytes of the bodies of the responses served.
+     */
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    /**
+     * Stops serving.
+     */
+    @Override
+    public void close() {
+        for (HttpServer server : servers) {
+            server.stop(0);
+        }
+        executor.shutdownNow();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            requestsServed.incrementAndGet();
+            if (0 < latency) {
+                Thread.sleep(latency);
+            }
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/style.css")) {
+                send(exchange, 200, "text/css", STYLESHEET.getBytes(StandardCharsets.UTF_8), 0);
+                return;
+            }
+            if (path.equals("/logo.png")) {
+                send(exchange, 200, "image/png", LOGO, 0);
+                return;
+            }
+            if (path.equals("/icon.svg")) {
+                send(exchange, 200, "image/svg+xml", ICON.getBytes(StandardCharsets.UTF_8), 0);
+                return;
+            }
+            long page = getPage(path);
+            if ((page < 0) || (getPages() <= page)) {
+                send(exchange, 404, "text/plain", new byte[0], 0);
+            } else if (isError(page)) {
+                send(exchange, 500, "text/plain", new byte[0], 0);
+            } else {
+                byte[] head = getHtml(page);
+                int padding = Math.max(0, pageSize - head.length - 16) / PADDING.length;
+                send(exchange, 200, "text/html; charset=UTF-8", head, padding);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /*
+    sends the specified body, followed by padding, and closes the document
+     */
+    private void send(
+            final HttpExchange exchange,
+            final int statusCode,
+            final String contentType,
+            final byte[] body,
+            final int padding
+    ) throws IOException {
+        byte[] end = contentType.startsWith("text/html") ?
+                "</body></html>\n".getBytes(StandardCharsets.UTF_8) : new byte[0];
+        long length = body.length + (long) padding * PADDING.length + end.length;
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(statusCode, (length == 0) ? -1 : length);
+        if (length == 0) { return; }
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+            for (int i = 0; i < padding; i++) {
+                out.write(PADDING);
+            }
+            out.write(end);
+        }
+        bytesServed.addAndGet(length);
+    }
+
+    /*
+    pages are numbered breadth-first, so the children of page n are n * fanOut + 1 through n * fanOut + fanOut
+     */
+    private byte[] getHtml(final long page) {
+        int d = getDepth(page);
+        StringBuilder sb = new StringBuilder(1024)
+                .append("<!DOCTYPE html>\n<html>\n<head>\n<title>Page ").append(page).append("</title>\n")
+                .append("<link rel=\"stylesheet\" href=\"/style.css\">\n")
+                .append("<script src=\"/script.js\"></script>\n")
+                .append("</head>\n<body>\n<h1>Page ").append(page).append("</h1>\n")
+                .append("<img src=\"/logo.png\">\n<img src=\"/icon.svg\">\n<ul>\n");
+        if (d < depth) {
+            for (long child = page * fanOut + 1; child <= page * fanOut + fanOut; child++) {
+                appendLink(sb, getUrl(child));
+            }
+        }
+        if (0 < d) {
+            appendLink(sb, getUrl((page - 1) / fanOut));
+            appendLink(sb, getUrl(0));
+            long first = pagesUpToDepth[d - 1];
+            appendLink(sb, getUrl(first + Math.floorMod(mix(page ^ seed), pagesUpToDepth[d] - first)));
+        }
+        appendLink(sb, "http://localhost:" + getPort(page) + "/p/" + page + ".html");
+        sb.append("</ul>\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendLink(final StringBuilder sb, final String href) {
+        sb.append("<li><a href=\"").append(href).append("\">").append(href).append("</a></li>\n");
+    }
+
+    private String getUrl(final long page) {
+        if (page == 0) {
+            return "http://127.0.0.1:" + getPort(page) + "/";
+        }
+        return "http://127.0.0.1:" + getPort(page) + "/p/" + page + ".html";
+    }
+
+    /*
+    returns the port of the host of the specified page; pages are spread over the hosts in turn
+     */
+    private int getPort(final long page) {
+        return servers[(int) (page % servers.length)].getAddress().getPort();
+    }
+
+    /*
+    returns the page of the specified path, or -1 if it is not a page
+     */
+    private static long getPage(final String path) {
+        if (path.equals("/")) {
+            return 0;
+        }
+        if (!path.startsWith("/p/") || !path.endsWith(".html")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(path.substring(3, path.length() - 5));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private int getDepth(final long page) {
+        int d = Arrays.binarySearch(pagesUpToDepth, page);
+        return (d < 0) ? -(d + 1) : d + 1;
+    }
+
+    private boolean isError(final long page) {
+        // the root page always responds, so that there is something to crawl
+        return (page != 0) && ((mix(page + seed) >>> 11) * 0x1.0p-53 < errorRate);
+    }
+
+    /*
+    the finalizer of SplitMix64, which maps consecutive values to well distributed ones
+     */
+    private static long mix(final long value) {
+        long z = value * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
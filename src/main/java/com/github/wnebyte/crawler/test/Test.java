@@ -16,13 +16,16 @@ public class Test {
                 .setLinkDepth(1)
                 .setThreads(5)
                 .setHtmlDirectory("res/assets/html")
-                .setEncoder(value -> String.valueOf(value.hashCode()))
                 .setCallback(progress -> System.out.printf(
-                        "<%d/%d>, <%.1fMB/s> <%.0f avg urls/s>%n",
+                        "<%d/%d>, <%.1fMB/s> <%.0f avg urls/s> <p99 fetch/process/write %d/%d/%dms> %s%n",
                         progress.getDocumentsCrawled(),
                         progress.getDocumentsMarked(),
                         progress.getAvgBitRate() * Math.pow(10, -6),
-                        progress.getCurrentUrlsPerSecond()
+                        progress.getCurrentUrlsPerSecond(),
+                        TimeUnit.NANOSECONDS.toMillis(progress.getFetchLatency().getP99()),
+                        TimeUnit.NANOSECONDS.toMillis(progress.getProcessLatency().getP99()),
+                        TimeUnit.NANOSECONDS.toMillis(progress.getWriteLatency().getP99()),
+                        progress.getResponses()
                 ))
                 .setDownloadImages(true)
                 .setDownloadStylesheets(true)
@@ -0,0 +1,134 @@
+package com.github.wnebyte.crawler.test;
+
+import com.github.wnebyte.crawler.CrawlerContextBuilder;
+import com.github.wnebyte.crawler.CrawlerManager;
+import com.github.wnebyte.crawler.CrawlerProgress;
+import com.github.wnebyte.crawler.struct.LatencyHistogram;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the throughput of a crawl of a {@link SyntheticSite}.
+ * <p>
+ * The website and the crawl are configured by system properties, for example
+ * <code>-Ddepth=4 -DfanOut=10 -DpageSize=16384 -Dlatency=20 -DerrorRate=0.01 -Dthreads=16</code>, and
+ * documents are written to a temporary directory that is deleted once the crawl is done.
+ * <p>
+ * The crawl may be spread over a cluster of in-process workers that exchange links over the loopback
+ * address, for example <code>-Dworkers=4</code>, in which case the pages are spread over as many hosts,
+ * unless <code>-Dhosts</code> is specified.
+ */
+public class Throughput {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int depth = Integer.getInteger("depth", 3);
+        int threads = Integer.getInteger("threads", 8);
+        int workers = Integer.getInteger("workers", 1);
+        Path directory = Files.createTempDirectory("throughput-");
+        try (SyntheticSite site = new SyntheticSite(
+                depth,
+                Integer.getInteger("fanOut", 10),
+                Integer.getInteger("pageSize", 16 * 1024),
+                Long.getLong("latency", 10L),
+                Double.parseDouble(System.getProperty("errorRate", "0")),
+                Long.getLong("seed", 0L),
+                Integer.getInteger("hosts", workers))) {
+            String[] members = getMembers(workers);
+            CrawlerManager[] crawlerManagers = new CrawlerManager[workers];
+            for (int i = 0; i < workers; i++) {
+                CrawlerContextBuilder builder = new CrawlerContextBuilder()
+                        .setRootUrl(site.getRootUrl())
+                        .setLinkDepth(depth)
+                        .setThreads(threads)
+                        .setMaxConcurrency(Integer.getInteger("maxConcurrency", threads))
+                        .setMaxConnectionsPerHost(Integer.getInteger("maxConnectionsPerHost", threads))
+                        .setVirtualThreads(Boolean.getBoolean("virtualThreads"))
+                        .setHtmlDirectory(Files.createDirectory(directory.resolve("worker-" + i)).toString());
+                if (1 < workers) {
+                    builder.setCluster(i, members);
+                }
+                crawlerManagers[i] = new CrawlerManager(builder.build());
+            }
+            long start = System.nanoTime();
+            Thread[] runners = new Thread[workers];
+            for (int i = 0; i < workers; i++) {
+                runners[i] = new Thread(crawlerManagers[i], "worker-" + i);
+                runners[i].start();
+            }
+            for (Thread runner : runners) {
+                runner.join();
+            }
+            long nanos = System.nanoTime() - start;
+            int crawled = 0;
+            int failed = 0;
+            Map<Integer, Integer> statuses = new TreeMap<>();
+            for (CrawlerManager crawlerManager : crawlerManagers) {
+                CrawlerProgress progress = crawlerManager.getProgress();
+                crawled += progress.getDocumentsCrawled();
+                failed += progress.getFailedFetches();
+                progress.getResponses().forEach((status, n) -> statuses.merge(status, n, Integer::sum));
+            }
+            double seconds = nanos / 1e9;
+            System.out.printf("site:     %d pages, %d responding with status 500%n",
+                    site.getPages(), site.getErrorPages());
+            System.out.printf("crawl:    %d pages in %.2fs, %d requests, %d failed fetches%n",
+                    crawled, seconds, site.getRequestsServed(), failed);
+            System.out.printf("rate:     %.1f pages/s, %.2f MB/s%n",
+                    crawled / seconds, site.getBytesServed() / seconds / 1e6);
+            System.out.printf("statuses: %s%n", statuses);
+            for (int i = 0; i < workers; i++) {
+                CrawlerProgress progress = crawlerManagers[i].getProgress();
+                if (1 < workers) {
+                    System.out.printf("worker %d: %d pages%n", i, progress.getDocumentsCrawled());
+                }
+                print("fetch", progress.getFetchLatency());
+                print("process", progress.getProcessLatency());
+                print("write", progress.getWriteLatency());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /*
+    returns the addresses of the members of a cluster of the specified # of workers, on free loopback ports
+     */
+    private static String[] getMembers(final int workers) throws IOException {
+        String[] members = new String[workers];
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        for (int i = 0; i < workers; i++) {
+            try (ServerSocket socket = new ServerSocket(0, 0, loopback)) {
+                members[i] = loopback.getHostAddress() + ":" + socket.getLocalPort();
+            }
+        }
+        return members;
+    }
+
+    private static void print(final String phase, final LatencyHistogram.Snapshot latency) {
+        System.out.printf("%-9s p50 %.2fms, p90 %.2fms, p99 %.2fms, max %.2fms (n=%d)%n",
+                phase + ":",
+                toMillis(latency.getP50()),
+                toMillis(latency.getP90()),
+                toMillis(latency.getP99()),
+                toMillis(latency.getMax()),
+                latency.getCount());
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static void delete(final Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
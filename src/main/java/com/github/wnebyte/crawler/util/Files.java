@@ -4,8 +4,10 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Locale;
 
 /**
@@ -25,6 +27,10 @@ public class Files {
         JPG,
         /** .jpeg */
         JPEG,
+        /** .gif */
+        GIF,
+        /** .webp */
+        WEBP,
         /** .css */
         CSS
     }
@@ -86,4 +92,35 @@ public class Files {
         if ((fileName == null) || (extension == null)) { return null; }
         return fileName.concat(".").concat(extension.toString().toLowerCase(Locale.ROOT));
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates an empty temporary file in the directory of the specified <code>file</code>, which is to be
+     * written and then moved onto the file using {@link #replace(Path, Path)}.
+     * <p>
+     * A file that is replaced this way is never written in place, so that other files that are hard links to
+     * the same contents are left unchanged, and the file is never seen partially written.
+     * @param file the file.
+     * @return the temporary file.
+     * @throws IOException if the temporary file could not be created.
+     */
+    public static Path newTempFile(final Path file) throws IOException {
+        return java.nio.file.Files.createTempFile(file.toAbsolutePath().getParent(),
+                "." + file.getFileName(), ".tmp");
+    }
+
+    /**
+     * Moves the specified <code>tmp</code> file created by {@link #newTempFile(Path)} onto the specified
+     * <code>file</code>, replacing it.
+     * @param tmp the temporary file.
+     * @param file the file.
+     * @throws IOException if the file could not be replaced.
+     */
+    public static void replace(final Path tmp, final Path file) throws IOException {
+        try {
+            java.nio.file.Files.move(tmp, file,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            java.nio.file.Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.wnebyte.crawler.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This class declares utility methods for computing hashes.
+ */
+public class Hashes {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Returns a 64-bit fingerprint of the specified <code>value</code>.
+     * <p>
+     * The fingerprint is computed using FNV-1a over the UTF-16 code units of the value, followed by
+     * the MurmurHash3 finalizer, so that every bit of the result depends on every input char.
+     * @param value the value.
+     * @return the fingerprint if the specified <code>value</code> is non <code>null</code>,
+     * otherwise <code>0</code>.
+     */
+    public static long fingerprint64(final CharSequence value) {
+        if (value == null) { return 0L; }
+        long h = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return mix64(h);
+    }
+
+    /**
+     * Returns the MurmurHash3 64-bit finalizer of the specified <code>value</code>.
+     * @param value the value.
+     * @return the mixed value.
+     */
+    public static long mix64(long value) {
+        value ^= (value >>> 33);
+        value *= 0xff51afd7ed558ccdL;
+        value ^= (value >>> 33);
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= (value >>> 33);
+        return value;
+    }
+
+    /**
+     * Returns the SHA-256 digest of the specified <code>bytes</code>, as a lower case hex String.
+     * @param bytes the bytes.
+     * @return the hex digest.
+     */
+    public static String sha256Hex(final byte[] bytes) {
+        return toHex(newSha256().digest(bytes));
+    }
+
+    /**
+     * @return a new SHA-256 <code>MessageDigest</code>.
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the specified <code>bytes</code> as a lower case hex String.
+     * @param bytes the bytes.
+     * @return the hex String.
+     */
+    public static String toHex(final byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
\ No newline at end of file
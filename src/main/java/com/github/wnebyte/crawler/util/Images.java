@@ -1,12 +1,90 @@
 package com.github.wnebyte.crawler.util;
 
+import java.nio.file.Path;
+
+/**
+ * This class declares utility methods for identifying images.
+ */
 public class Images {
 
-    public static boolean isSupported(final String url) {
-        return true;
+    /**
+     * The number of leading bytes needed to identify the content type of any supported image.
+     */
+    public static final int HEADER_BYTES = 12;
+
+    private static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+    private static final byte[] JPEG = { (byte) 0xff, (byte) 0xd8, (byte) 0xff };
+
+    private static final byte[] GIF87A = { 'G', 'I', 'F', '8', '7', 'a' };
+
+    private static final byte[] GIF89A = { 'G', 'I', 'F', '8', '9', 'a' };
+
+    private static final byte[] RIFF = { 'R', 'I', 'F', 'F' };
+
+    private static final byte[] WEBP = { 'W', 'E', 'B', 'P' };
+
+    /**
+     * Returns the content type of the image whose leading bytes are the specified <code>bytes</code>,
+     * as identified by its signature.
+     * @param bytes the leading bytes of the image, of which at least {@link #HEADER_BYTES} are needed to
+     * identify every supported image.
+     * @param length the number of bytes.
+     * @return the content type, or <code>null</code> if the bytes are not the signature of a
+     * supported image.
+     */
+    public static String getContentType(final byte[] bytes, final int length) {
+        if (startsWith(bytes, length, PNG, 0)) {
+            return "image/png";
+        } else if (startsWith(bytes, length, JPEG, 0)) {
+            return "image/jpeg";
+        } else if (startsWith(bytes, length, GIF87A, 0) || startsWith(bytes, length, GIF89A, 0)) {
+            return "image/gif";
+        } else if (startsWith(bytes, length, RIFF, 0) && startsWith(bytes, length, WEBP, 8)) {
+            return "image/webp";
+        }
+        return null;
+    }
+
+    /**
+     * Returns the extension of images of the specified <code>contentType</code>.
+     * @param contentType the content type.
+     * @return the extension, or <code>null</code> if the content type is not that of a supported image.
+     */
+    public static Files.Extension getExtension(final String contentType) {
+        if (contentType == null) { return null; }
+        switch (contentType) {
+            case "image/png":
+                return Files.Extension.PNG;
+            case "image/jpeg":
+                return Files.Extension.JPG;
+            case "image/gif":
+                return Files.Extension.GIF;
+            case "image/webp":
+                return Files.Extension.WEBP;
+            default:
+                return null;
+        }
     }
 
-    public static String getContentType(final String url) {
-        return "";
+    /**
+     * Returns the file of an image of the specified <code>extension</code>, named by the specified
+     * <code>file</code> followed by the extension.
+     * @param file the file, without an extension.
+     * @param extension the extension of the image.
+     * @return the file, with the extension.
+     */
+    public static Path getFile(final Path file, final Files.Extension extension) {
+        return file.resolveSibling(Files.toPath(file.getFileName().toString(), extension));
+    }
+
+    private static boolean startsWith(final byte[] bytes, final int length, final byte[] prefix, final int offset) {
+        if (length < offset + prefix.length) { return false; }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -1,7 +1,15 @@
 package com.github.wnebyte.crawler.util;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 public class Threads {
 
+    // Executors#newVirtualThreadPerTaskExecutor(), or null if the runtime predates Java 21
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = lookupVirtualThreadPerTaskExecutor();
+
     public static int grow(final int nThreads, final int urls) {
         if (range(urls, 0, 5)) {
             return 5 * nThreads;
@@ -18,6 +26,43 @@ public class Threads {
         return nThreads;
     }
 
+    /**
+     * Returns whether the current runtime supports virtual threads.
+     * @return <code>true</code> if virtual threads are supported, otherwise <code>false</code>.
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null);
+    }
+
+    /**
+     * Constructs a new <code>ExecutorService</code> that starts a new virtual thread for each task.
+     * @return the executor.
+     * @throws UnsupportedOperationException if the current runtime does not support virtual threads.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (!isVirtualThreadsSupported()) {
+            throw new UnsupportedOperationException(
+                    "virtual threads require Java 21 or later"
+            );
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException(e);
+        }
+    }
+
+    /*
+    looked up reflectively, so that the library can still be compiled for and run on older runtimes
+     */
+    private static Method lookupVirtualThreadPerTaskExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
     private static boolean range(final int n, final int lowerBounds, final int upperBounds) {
         return (lowerBounds <= n) && (n < upperBounds);
     }
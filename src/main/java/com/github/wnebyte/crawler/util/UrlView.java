@@ -0,0 +1,292 @@
+package com.github.wnebyte.crawler.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * This class is a reusable, single-pass parser of absolute urls.
+ * <p>
+ * Parsing records the offsets of the components of a url rather than copying them, so checking the scheme
+ * or host of a url allocates nothing, and an instance can be reused to parse any number of urls.
+ * <p>
+ * Instances are not safe for use by multiple concurrent threads.
+ */
+public final class UrlView {
+
+    // orders query parameters by name, keeping parameters of equal names in their original order
+    private static final Comparator<String> PARAMETER_ORDER = UrlView::compareParameterNames;
+
+    /*################################
+    #       INSTANCE VARIABLES       #
+    #################################*/
+
+    // the url last parsed, or null
+    private String url;
+
+    // the index of the ':' ending the scheme
+    private int schemeEnd;
+
+    // the index of the host, following any userinfo
+    private int hostStart;
+
+    // the index following the host
+    private int hostEnd;
+
+    // the port, or -1 if the url has none
+    private int port;
+
+    // the index of the path, which is also the index following the authority
+    private int pathStart;
+
+    // the index of the '?' starting the query, or -1 if the url has none
+    private int queryStart;
+
+    // the index of the '#' starting the fragment, or -1 if the url has none
+    private int fragmentStart;
+
+    /**
+     * Parses the specified <code>url</code>, replacing the url previously parsed by this instance.
+     * @param url the url.
+     * @return <code>true</code> if the specified <code>url</code> is an absolute url with an authority,
+     * such as <code>http://host/path</code>, otherwise <code>false</code>.
+     */
+    public boolean parse(final String url) {
+        this.url = null;
+        if (url == null) { return false; }
+        int length = url.length();
+        // scheme = ALPHA *( ALPHA / DIGIT / "+" / "-" / "." ) ":"
+        int i = 0;
+        while (i < length) {
+            char c = url.charAt(i);
+            if (isAlpha(c) || ((0 < i) && (isDigit(c) || (c == '+') || (c == '-') || (c == '.')))) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        if ((i == 0) || !url.startsWith("://", i)) { return false; }
+        schemeEnd = i;
+        int authorityStart = i + 3;
+        int authorityEnd = authorityStart;
+        while ((authorityEnd < length) && ("/?#".indexOf(url.charAt(authorityEnd)) == -1)) {
+            authorityEnd++;
+        }
+        int at = url.lastIndexOf('@', authorityEnd - 1);
+        hostStart = (authorityStart <= at) ? at + 1 : authorityStart;
+        if ((hostStart < authorityEnd) && (url.charAt(hostStart) == '[')) {
+            // an ip literal, which contains colons
+            int close = url.indexOf(']', hostStart);
+            if ((close == -1) || (authorityEnd <= close)) { return false; }
+            hostEnd = close + 1;
+        } else {
+            hostEnd = hostStart;
+            while ((hostEnd < authorityEnd) && (url.charAt(hostEnd) != ':')) {
+                hostEnd++;
+            }
+        }
+        if (hostEnd == hostStart) { return false; }
+        port = -1;
+        if (hostEnd < authorityEnd) {
+            if ((url.charAt(hostEnd) != ':')) { return false; }
+            for (int j = hostEnd + 1; j < authorityEnd; j++) {
+                char c = url.charAt(j);
+                if (!isDigit(c) || (65535 < (port = Math.max(port, 0) * 10 + (c - '0')))) {
+                    return false;
+                }
+            }
+        }
+        pathStart = authorityEnd;
+        fragmentStart = url.indexOf('#', pathStart);
+        int queryEnd = (fragmentStart == -1) ? length : fragmentStart;
+        queryStart = url.indexOf('?', pathStart);
+        if (queryEnd < queryStart) {
+            queryStart = -1;
+        }
+        this.url = url;
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the parsed url uses the http or https scheme, otherwise <code>false</code>.
+     */
+    public boolean isHttpOrHttps() {
+        if (url == null) { return false; }
+        return ((schemeEnd == 4) && url.regionMatches(true, 0, "http", 0, 4)) ||
+                ((schemeEnd == 5) && url.regionMatches(true, 0, "https", 0, 5));
+    }
+
+    /**
+     * @return the scheme of the parsed url, in lower case.
+     */
+    public String getScheme() {
+        return url.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the host of the parsed url, in lower case and without its port.
+     */
+    public String getHost() {
+        return url.substring(hostStart, hostEnd).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the port of the parsed url, or <code>-1</code> if it has none.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Returns whether the host of the parsed url is the specified <code>domain</code>, or one of its
+     * subdomains.
+     * @param domain the domain, in lower case.
+     * @return <code>true</code> if the host is within the domain, otherwise <code>false</code>.
+     */
+    public boolean isInDomain(final String domain) {
+        if ((url == null) || (domain == null) || domain.isEmpty()) { return false; }
+        int end = hostEnd;
+        // a fully qualified host ends with a dot
+        if ((hostStart < end - 1) && (url.charAt(end - 1) == '.')) {
+            end--;
+        }
+        int start = end - domain.length();
+        if (start < hostStart) { return false; }
+        return url.regionMatches(true, start, domain, 0, domain.length()) &&
+                ((start == hostStart) || (url.charAt(start - 1) == '.'));
+    }
+
+    /**
+     * Returns the canonical form of the parsed url, with its scheme and host in lower case, without an
+     * empty or default port, without its fragment, with an empty path replaced by <code>/</code>, and with
+     * the parameters of its query ordered by name.
+     * <p>
+     * A url that is already canonical is returned as is, without allocating a new String.
+     * @return the canonical url.
+     */
+    public String canonicalize() {
+        if (url == null) { return null; }
+        int queryEnd = (fragmentStart == -1) ? url.length() : fragmentStart;
+        String[] parameters = getSortedParameters(queryEnd);
+        if (isCanonical(parameters, queryEnd)) {
+            return url;
+        }
+        StringBuilder sb = new StringBuilder(url.length());
+        appendLowerCase(sb, 0, schemeEnd);
+        sb.append(url, schemeEnd, hostStart);
+        appendLowerCase(sb, hostStart, hostEnd);
+        if ((port != -1) && !isDefaultPort()) {
+            sb.append(':').append(port);
+        }
+        int pathEnd = (queryStart != -1) ? queryStart : queryEnd;
+        if (pathStart == pathEnd) {
+            sb.append('/');
+        } else {
+            sb.append(url, pathStart, pathEnd);
+        }
+        if (parameters != null) {
+            for (int i = 0; i < parameters.length; i++) {
+                sb.append((i == 0) ? '?' : '&').append(parameters[i]);
+            }
+        } else if ((queryStart != -1) && (queryStart + 1 < queryEnd)) {
+            sb.append(url, queryStart, queryEnd);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(url);
+    }
+
+    private boolean isCanonical(final String[] parameters, final int queryEnd) {
+        if ((fragmentStart != -1) || (parameters != null)) {
+            return false;
+        }
+        // the host is followed by a ':' even if the port is empty
+        if ((port == -1) ? (hostEnd != pathStart) : isDefaultPort()) {
+            return false;
+        }
+        if ((queryStart == -1) ? (pathStart == queryEnd) : ((pathStart == queryStart) || (queryStart + 1 == queryEnd))) {
+            return false;
+        }
+        return isLowerCase(0, schemeEnd) && isLowerCase(hostStart, hostEnd);
+    }
+
+    private boolean isDefaultPort() {
+        return isHttpOrHttps() && (port == ((schemeEnd == 4) ? 80 : 443));
+    }
+
+    /*
+    returns the parameters of the query in canonical order, or null if they already are
+     */
+    private String[] getSortedParameters(final int queryEnd) {
+        if (queryStart == -1) { return null; }
+        int separator = url.indexOf('&', queryStart);
+        if ((separator == -1) || (queryEnd <= separator)) {
+            return null;
+        }
+        String query = url.substring(queryStart + 1, queryEnd);
+        String[] parameters = query.split("&", -1);
+        boolean sorted = true;
+        int n = 0;
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].isEmpty()) { continue; }
+            if ((0 < n) && (0 < PARAMETER_ORDER.compare(parameters[n - 1], parameters[i]))) {
+                sorted = false;
+            }
+            parameters[n++] = parameters[i];
+        }
+        if (sorted && (n == parameters.length)) {
+            return null;
+        }
+        parameters = Arrays.copyOf(parameters, n);
+        Arrays.sort(parameters, PARAMETER_ORDER);
+        return parameters;
+    }
+
+    private void appendLowerCase(final StringBuilder sb, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            sb.append(((c >= 'A') && (c <= 'Z')) ? (char) (c + ('a' - 'A')) : c);
+        }
+    }
+
+    private boolean isLowerCase(final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if ((c >= 'A') && (c <= 'Z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+    compares the names of the specified parameters, without copying them
+     */
+    private static int compareParameterNames(final String a, final String b) {
+        int aLength = getParameterNameLength(a);
+        int bLength = getParameterNameLength(b);
+        for (int i = 0, n = Math.min(aLength, bLength); i < n; i++) {
+            int diff = a.charAt(i) - b.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    private static int getParameterNameLength(final String parameter) {
+        int i = parameter.indexOf('=');
+        return (i == -1) ? parameter.length() : i;
+    }
+
+    private static boolean isAlpha(final char c) {
+        return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'));
+    }
+
+    private static boolean isDigit(final char c) {
+        return (c >= '0') && (c <= '9');
+    }
+}
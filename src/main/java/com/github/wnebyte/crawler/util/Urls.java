@@ -3,6 +3,7 @@ package com.github.wnebyte.crawler.util;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Locale;
+import java.util.Set;
 
 /**
  * This class declares utility methods for working with instances of the {@link URL} class.
@@ -19,6 +20,11 @@ public class Urls {
         HTTPS
     }
 
+    // second-level labels under which country code top-level domains commonly register domains
+    private static final Set<String> SECOND_LEVEL_LABELS = Set.of(
+            "ac", "co", "com", "edu", "go", "gob", "gov", "ltd", "mil", "ne", "net", "nhs", "nic", "or", "org",
+            "plc", "sch");
+
     /**
      * Returns the domain name of the specified <code>url</code>.
      * @return the domain name if the specified <code>url</code> is non <code>null</code>,
@@ -30,13 +36,77 @@ public class Urls {
     }
 
     /**
-     * Returns the domain name of the specified <code>url</code>.
-     * @return the domain name if the specified <code>url</code> is non <code>null</code>,
+     * Returns the domain name of the specified <code>url</code>, which is the registrable domain of its host.
+     * @return the domain name if the specified <code>url</code> is non <code>null</code> and absolute,
      * otherwise an empty String.
+     * @see #getRegistrableDomain(String)
      */
     public static String getDomainName(final String url) {
+        UrlView view = new UrlView();
+        if (!view.parse(url)) { return ""; }
+        return getRegistrableDomain(view.getHost());
+    }
+
+    /**
+     * Returns the registrable domain of the specified <code>host</code>, which is the domain directly below
+     * its public suffix, for example <code>example.com</code> for <code>www.example.com</code>, and
+     * <code>example.co.uk</code> for <code>www.example.co.uk</code>.
+     * <p>
+     * Public suffixes are approximated as either the top-level domain, or a common second-level label
+     * (such as <code>co</code> or <code>com</code>) under a two-letter country code top-level domain.
+     * Ip addresses and single-label hosts are returned as is.
+     * @param host the host, without its port.
+     * @return the registrable domain in lower case, or an empty String if the host is <code>null</code>.
+     */
+    public static String getRegistrableDomain(final String host) {
+        if (host == null) { return ""; }
+        String value = host.toLowerCase(Locale.ROOT);
+        if (value.endsWith(".")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        if (value.startsWith("[") || isIpv4Address(value)) {
+            return value;
+        }
+        int last = value.lastIndexOf('.');
+        if (last == -1) { return value; }
+        int second = value.lastIndexOf('.', last - 1);
+        if (second == -1) { return value; }
+        if ((value.length() - last - 1 == 2) && SECOND_LEVEL_LABELS.contains(value.substring(second + 1, last))) {
+            return value.substring(value.lastIndexOf('.', second - 1) + 1);
+        }
+        return value.substring(second + 1);
+    }
+
+    /**
+     * Returns the canonical form of the specified <code>url</code>.
+     * @param url the url.
+     * @return the canonical url, or <code>null</code> if the specified <code>url</code> is not absolute.
+     * @see UrlView#canonicalize()
+     */
+    public static String canonicalize(final String url) {
+        UrlView view = new UrlView();
+        return view.parse(url) ? view.canonicalize() : null;
+    }
+
+    /**
+     * Returns the host, and port if present, of the specified <code>url</code>, in lower case.
+     * @return the host if the specified <code>url</code> is non <code>null</code> and absolute,
+     * otherwise an empty String.
+     */
+    public static String getHost(final String url) {
         if (url == null) { return ""; }
-        return url.split("\\.", 3)[1];
+        int start = url.indexOf("://");
+        if (start == -1) { return ""; }
+        start += 3;
+        int end = start;
+        while ((end < url.length()) && ("/?#".indexOf(url.charAt(end)) == -1)) {
+            end++;
+        }
+        int at = url.lastIndexOf('@', end - 1);
+        if (start <= at) {
+            start = at + 1;
+        }
+        return url.substring(start, end).toLowerCase(Locale.ROOT);
     }
 
     /**
@@ -101,8 +171,7 @@ public class Urls {
      */
     public static boolean isProtocol(final URL url, final Protocol protocol) {
         if ((url == null) || (protocol == null)) { return false; }
-        return url.getProtocol().toLowerCase(Locale.ROOT)
-                .equals(protocol.toString().toLowerCase(Locale.ROOT));
+        return url.getProtocol().equalsIgnoreCase(protocol.name());
     }
 
     /**
@@ -125,11 +194,48 @@ public class Urls {
      * Returns whether the specified <code>url</code> is defined using one of
      * <code>HTTP</code> or <code>HTTPS</code>.
      * @param url the url.
-     * @return <code>true</code> if the specified <code>url</code> is not malformed and is
+     * @return <code>true</code> if the specified <code>url</code> is an absolute url with a host, and is
      * defined using one of <code>HTTP</code> or <code>HTTPS</code>.
      */
     public static boolean isHttpOrHttps(final String url) {
-        return isProtocol(url, Protocol.HTTP, Protocol.HTTPS);
+        UrlView view = new UrlView();
+        return view.parse(url) && view.isHttpOrHttps();
+    }
+
+    /**
+     * Resolves the specified <code>relUrl</code> against the specified <code>base</code>, the way
+     * <code>Element#absUrl(String)</code> resolves the attributes of a document.
+     * @param base the absolute url to resolve against.
+     * @param relUrl the relative or absolute url.
+     * @return the absolute url, or <code>null</code> if the specified <code>relUrl</code> can not be resolved.
+     */
+    public static URL resolve(final URL base, final String relUrl) {
+        if ((base == null) || (relUrl == null)) { return null; }
+        try {
+            String spec = relUrl;
+            URL context = base;
+            // a relative query replaces the query of the base, rather than its last path segment
+            if (spec.startsWith("?")) {
+                spec = base.getPath() + spec;
+            }
+            // a relative path against a base without a path is resolved against the root
+            if ((spec.indexOf('.') == 0) && (base.getFile().indexOf('/') != 0)) {
+                context = new URL(base.getProtocol(), base.getHost(), base.getPort(), "/" + base.getFile());
+            }
+            return new URL(context, spec);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private static boolean isIpv4Address(final String host) {
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (((c < '0') || (c > '9')) && (c != '.')) {
+                return false;
+            }
+        }
+        return !host.isEmpty();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package com.github.wnebyte.crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import static org.junit.Assert.*;
+
+public class ArchiveWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final HttpHeaders HEADERS = HttpHeaders.of(
+            Map.of("ETag", List.of("\"1\""), "Content-Length", List.of("1")), (name, value) -> true);
+
+    private static String body(final int i) {
+        // alternately large and small, so that pooled buffers are reused by smaller records
+        StringBuilder sb = new StringBuilder("<p>").append(i).append("</p>");
+        for (int j = 0; (i % 2 == 0) && (j < 5000); j++) {
+            sb.append("<i>").append(j).append("</i>");
+        }
+        return sb.toString();
+    }
+
+    /*
+    every record is located by the index, and decompresses independently of the others
+     */
+    @Test
+    public void indexedRecordsDecompressIndependently() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (ArchiveWriter writer = new ArchiveWriter(directory, 64 * 1024)) {
+            writer.open();
+            for (int i = 0; i < 20; i++) {
+                writer.write("http://example.com/" + i, 200, HEADERS, Jsoup.parse(body(i)));
+            }
+        }
+        List<String> index = Files.readAllLines(directory.resolve("archive.index"));
+        assertEquals(20, index.size());
+        for (int i = 0; i < 20; i++) {
+            String[] entry = index.get(i).split(" ");
+            assertEquals("http://example.com/" + i, entry[0]);
+            byte[] segment = Files.readAllBytes(directory.resolve(entry[1]));
+            int offset = Integer.parseInt(entry[2]);
+            byte[] member = Arrays.copyOfRange(segment, offset, offset + Integer.parseInt(entry[3]));
+            String record;
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(member))) {
+                record = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            assertTrue(record.startsWith("WARC/1.1\r\n"));
+            assertTrue(record.contains("WARC-Target-URI: http://example.com/" + i + "\r\n"));
+            assertTrue(record.contains("ETag: \"1\"\r\n"));
+            assertFalse(record.contains("Content-Length: 1\r\n"));
+            String block = record.substring(record.indexOf("\r\n\r\n") + 4, record.length() - 4);
+            int length = Integer.parseInt(record.replaceAll("(?s).*?Content-Length: (\\d+).*", "$1"));
+            assertEquals(length, block.getBytes(StandardCharsets.UTF_8).length);
+            String document = block.substring(block.indexOf("\r\n\r\n") + 4);
+            Document expected = Jsoup.parse(body(i));
+            expected.charset(StandardCharsets.UTF_8);
+            assertEquals(expected.html(), document.trim());
+        }
+    }
+
+    @Test
+    public void indexesEachRecordAsItIsAppended() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        ArchiveWriter writer = new ArchiveWriter(directory, 64 * 1024);
+        writer.open();
+        for (int i = 0; i < 3; i++) {
+            writer.write("http://example.com/" + i, 200, HEADERS, Jsoup.parse(body(i)));
+            assertEquals(i + 1, Files.readAllLines(directory.resolve("archive.index")).size());
+        }
+        writer.close();
+        try {
+            writer.write("http://example.com/closed", 200, HEADERS, Jsoup.parse(body(1)));
+            fail();
+        } catch (IOException ignored) {
+        }
+        // no segment is started for the rejected record
+        assertEquals(3, Files.readAllLines(directory.resolve("archive.index")).size());
+        assertEquals(2, directory.toFile().list().length);
+    }
+}
@@ -0,0 +1,153 @@
+package com.github.wnebyte.crawler;
+
+import com.github.wnebyte.crawler.util.Files;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+/*
+the server labels every response as a jpeg, so that only the leading bytes identify the content type
+ */
+public class AssetDownloaderTest {
+
+    private static final byte[] PNG = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R'
+    };
+
+    private static final byte[] GIF = "GIF89a-an-animated-image".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] HTML = "<html><body>not an image</body></html>".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] CSS = "body { font-family: sans-serif; }".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+
+    private AssetDownloader assets;
+
+    // # of times the stylesheet has been requested
+    private final AtomicInteger stylesheetRequests = new AtomicInteger(0);
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serve("/logo", PNG);
+        serve("/photo.png", GIF);
+        serve("/page.jpg", HTML);
+        // the body is cut short the first time it is served
+        server.createContext("/style.css", exchange -> {
+            exchange.sendResponseHeaders(200, CSS.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                if (stylesheetRequests.incrementAndGet() == 1) {
+                    out.write(CSS, 0, CSS.length / 2);
+                    out.flush();
+                    throw new IOException("connection reset");
+                }
+                out.write(CSS);
+            }
+        });
+        server.start();
+        assets = newAssetDownloader();
+    }
+
+    private AssetDownloader newAssetDownloader() throws IOException {
+        return new AssetDownloader(new Fetcher(new CrawlerContextBuilder()
+                .setRootUrl(url("/"))
+                .setLinkDepth(1)
+                .setHtmlDirectory(folder.newFolder().getPath())
+                .build()), 2);
+    }
+
+    @After
+    public void tearDown() {
+        assets.shutdown();
+        server.stop(0);
+    }
+
+    private void serve(final String path, final byte[] body) {
+        server.createContext(path, exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+    }
+
+    private String url(final String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    @Test
+    public void keepsOnlyImagesIdentifiedByTheirLeadingBytes() throws Exception {
+        Path directory = folder.newFolder().toPath();
+        CompletableFuture<Files.Extension> logo = assets.downloadImage(url("/logo"), directory.resolve("logo"));
+        CompletableFuture<Files.Extension> photo = assets.downloadImage(url("/photo.png"), directory.resolve("photo"));
+        CompletableFuture<Files.Extension> page = assets.downloadImage(url("/page.jpg"), directory.resolve("page"));
+        assets.awaitImages();
+        assertEquals(Files.Extension.PNG, logo.get());
+        assertEquals(Files.Extension.GIF, photo.get());
+        assertNull(page.get());
+        assertArrayEquals(PNG, java.nio.file.Files.readAllBytes(directory.resolve("logo.png")));
+        assertArrayEquals(GIF, java.nio.file.Files.readAllBytes(directory.resolve("photo.gif")));
+        String[] names = directory.toFile().list();
+        Arrays.sort(names);
+        assertArrayEquals(new String[] { "logo.png", "photo.gif" }, names);
+        assertEquals(2, assets.getAssetsDownloaded());
+        assertEquals(PNG.length + GIF.length, assets.getBytesDownloaded());
+    }
+
+    /*
+    an image that has already been requested, or whose typed file already exists, is not downloaded again
+     */
+    @Test
+    public void repeatedRequestsDownloadOnce() throws Exception {
+        Path directory = folder.newFolder().toPath();
+        CompletableFuture<Files.Extension> first = assets.downloadImage(url("/logo"), directory.resolve("logo"));
+        CompletableFuture<Files.Extension> second = assets.downloadImage(url("/logo"), directory.resolve("logo"));
+        java.nio.file.Files.write(directory.resolve("photo.gif"), GIF);
+        CompletableFuture<Files.Extension> photo = assets.downloadImage(url("/photo.png"), directory.resolve("photo"));
+        assets.awaitImages();
+        assertEquals(1, assets.getAssetsDownloaded());
+        assertSame(first, second);
+        assertEquals(Files.Extension.PNG, second.get());
+        assertEquals(Files.Extension.GIF, photo.get());
+    }
+
+    /*
+    a stylesheet whose body fails leaves no file behind, so that the next crawl downloads it again rather than
+    finding a partial file
+     */
+    @Test
+    public void failedStylesheetIsDownloadedAgain() throws Exception {
+        Path file = folder.newFolder().toPath().resolve("style.css");
+        assets.downloadStylesheet(url("/style.css"), file);
+        assets.awaitStylesheets();
+        assertEquals(0, assets.getAssetsDownloaded());
+        assertEquals(0, file.getParent().toFile().list().length);
+
+        AssetDownloader again = newAssetDownloader();
+        try {
+            again.downloadStylesheet(url("/style.css"), file);
+            again.awaitStylesheets();
+        } finally {
+            again.shutdown();
+        }
+        assertArrayEquals(CSS, java.nio.file.Files.readAllBytes(file));
+        assertEquals(2, stylesheetRequests.get());
+    }
+}
@@ -0,0 +1,222 @@
+package com.github.wnebyte.crawler;
+
+import com.github.wnebyte.crawler.struct.FingerprintSet;
+import com.github.wnebyte.crawler.struct.Link;
+import com.github.wnebyte.crawler.struct.SeenSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.*;
+
+/*
+a crash is simulated by abandoning a checkpoint without closing it, which loses its buffered records
+ */
+public class CheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String url(final int i) {
+        return "http://example.com/" + i;
+    }
+
+    private static void mark(final Checkpoint checkpoint, final SeenSet seenSet, final Link link)
+            throws Exception {
+        long stamp = checkpoint.beginMark();
+        try {
+            if (seenSet.add(link.getUrl())) {
+                checkpoint.marked(link);
+            }
+        } finally {
+            checkpoint.endMark(stamp);
+        }
+    }
+
+    private static Set<String> load(final Checkpoint checkpoint, final SeenSet seenSet) throws Exception {
+        Set<String> pending = new HashSet<>();
+        checkpoint.load(seenSet, link -> assertTrue(pending.add(link.getUrl())));
+        return pending;
+    }
+
+    @Test
+    public void resumesPendingUrlsAfterCrash() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Checkpoint checkpoint = new Checkpoint(directory);
+        SeenSet seenSet = new FingerprintSet();
+        checkpoint.open(seenSet);
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            mark(checkpoint, seenSet, new Link(url(i), i % 4));
+            if (i == 50) {
+                checkpoint.compact(seenSet);
+            }
+        }
+        for (int i = 0; i < 100; i++) {
+            if (i % 2 == 0) {
+                checkpoint.crawled(new Link(url(i), i % 4));
+            } else {
+                expected.add(url(i));
+            }
+        }
+        checkpoint.flush();
+
+        Checkpoint resumed = new Checkpoint(directory);
+        assertTrue(resumed.exists());
+        SeenSet restored = new FingerprintSet();
+        assertEquals(expected, load(resumed, restored));
+        assertEquals(100, restored.size());
+        assertEquals(100, Arrays.stream(resumed.getMarked()).sum());
+        assertEquals(50, Arrays.stream(resumed.getCrawled()).sum());
+        assertArrayEquals(new int[] { 25, 25, 25, 25 }, resumed.getMarked());
+
+        // a crash after resuming loses nothing, as the restored state is compacted when opened
+        resumed.open(restored);
+        resumed.crawled(new Link(url(1), 1));
+        resumed.flush();
+        expected.remove(url(1));
+        Checkpoint again = new Checkpoint(directory);
+        assertEquals(expected, load(again, new FingerprintSet()));
+        assertEquals(51, Arrays.stream(again.getCrawled()).sum());
+    }
+
+    /*
+    a url marked again at a lower depth is counted at both depths, but once by the totals, and stays a revisit
+    while it is pending, both in a snapshot and in a log
+     */
+    @Test
+    public void countsRevisitedUrlsOnce() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Checkpoint checkpoint = new Checkpoint(directory);
+        SeenSet seenSet = new FingerprintSet();
+        checkpoint.open(seenSet);
+        mark(checkpoint, seenSet, new Link(url(0), 3));
+        mark(checkpoint, seenSet, new Link(url(1), 3));
+        checkpoint.crawled(new Link(url(0), 3));
+        checkpoint.crawled(new Link(url(1), 3));
+        for (int i = 0; i < 2; i++) {
+            Link revisit = new Link(url(i), 2, 0, true);
+            seenSet.addAtDepth(revisit.getUrl(), revisit.getDepth());
+            checkpoint.marked(revisit);
+            if (i == 0) {
+                checkpoint.compact(seenSet);
+            }
+        }
+        checkpoint.crawled(new Link(url(1), 2, 0, true));
+        checkpoint.flush();
+
+        Checkpoint resumed = new Checkpoint(directory);
+        List<Link> pending = new ArrayList<>();
+        resumed.load(new FingerprintSet(), pending::add);
+        assertEquals(1, pending.size());
+        assertEquals(url(0), pending.get(0).getUrl());
+        assertEquals(2, pending.get(0).getDepth());
+        assertTrue(pending.get(0).isRevisit());
+        assertArrayEquals(new int[] { 0, 0, 2, 2 }, resumed.getMarked());
+        assertArrayEquals(new int[] { 0, 0, 1, 2 }, resumed.getCrawled());
+        assertEquals(2, resumed.getMarkedCount());
+        assertEquals(2, resumed.getCrawledCount());
+    }
+
+    /*
+    the urls marked after the last compaction are only durable once flushed, and must then not be in the
+    restored seen-set either, or they would never be crawled
+     */
+    @Test
+    public void seenSetOfSnapshotOnlyHoldsLoggedUrls() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Checkpoint checkpoint = new Checkpoint(directory);
+        SeenSet seenSet = new FingerprintSet();
+        checkpoint.open(seenSet);
+        for (int i = 0; i < 10; i++) {
+            mark(checkpoint, seenSet, new Link(url(i), 1));
+        }
+        checkpoint.compact(seenSet);
+        for (int i = 10; i < 20; i++) {
+            mark(checkpoint, seenSet, new Link(url(i), 1));
+        }
+        checkpoint.compact(seenSet);
+        for (int i = 20; i < 30; i++) {
+            mark(checkpoint, seenSet, new Link(url(i), 1));
+        }
+
+        SeenSet restored = new FingerprintSet();
+        Set<String> pending = load(new Checkpoint(directory), restored);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(restored.contains(url(i)));
+            assertTrue(pending.contains(url(i)));
+        }
+        for (int i = 20; i < 30; i++) {
+            assertFalse(restored.contains(url(i)));
+            assertFalse(pending.contains(url(i)));
+        }
+    }
+
+    /*
+    marks and crawls urls from several threads while compacting, and checks that every url in the restored
+    seen-set is either pending or crawled
+     */
+    @Test
+    public void compactsConcurrentlyWithMarking() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Checkpoint checkpoint = new Checkpoint(directory);
+        SeenSet seenSet = new FingerprintSet();
+        checkpoint.open(seenSet);
+        Set<String> crawled = ConcurrentHashMap.newKeySet();
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = offset; i < 20_000; i += 4) {
+                        Link link = new Link(url(i), 1);
+                        mark(checkpoint, seenSet, link);
+                        if (i % 3 == 0) {
+                            checkpoint.crawled(link);
+                            crawled.add(link.getUrl());
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        Thread compactor = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    checkpoint.compact(seenSet);
+                }
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        compactor.start();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        done.set(true);
+        compactor.join();
+        checkpoint.flush();
+
+        SeenSet restored = new FingerprintSet();
+        Checkpoint resumed = new Checkpoint(directory);
+        Set<String> pending = load(resumed, restored);
+        assertEquals(20_000, restored.size());
+        assertEquals(20_000 - crawled.size(), pending.size());
+        for (int i = 0; i < 20_000; i++) {
+            assertTrue(restored.contains(url(i)));
+            assertNotEquals(crawled.contains(url(i)), pending.contains(url(i)));
+        }
+        assertEquals(20_000, Arrays.stream(resumed.getMarked()).sum());
+        assertEquals(crawled.size(), Arrays.stream(resumed.getCrawled()).sum());
+    }
+}
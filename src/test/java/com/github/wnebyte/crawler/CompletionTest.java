@@ -0,0 +1,86 @@
+package com.github.wnebyte.crawler;
+
+import org.junit.Test;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+public class CompletionTest {
+
+    @Test
+    public void completesOnceEveryRegisteredTaskHasArrived() {
+        Completion completion = new Completion();
+        completion.register();
+        completion.register();
+        completion.arrive();
+        assertFalse(completion.isDone());
+        assertEquals(1, completion.getPending());
+        completion.arrive();
+        assertTrue(completion.isDone());
+        assertEquals(0, completion.getPending());
+    }
+
+    /*
+    a task that is registered and arrives after completion brings the count back to zero,
+    without completing the future again
+     */
+    @Test
+    public void completesOnceWhenTheCountReachesZeroAgain() {
+        Completion completion = new Completion();
+        AtomicInteger completions = new AtomicInteger(0);
+        completion.getFuture().thenRun(completions::incrementAndGet);
+        for (int i = 0; i < 3; i++) {
+            completion.register();
+            completion.arrive();
+        }
+        assertTrue(completion.isDone());
+        assertEquals(0, completion.getPending());
+        assertEquals(1, completions.get());
+    }
+
+    /*
+    every task spawns its children before it arrives, so that the count only reaches zero once the last
+    of them arrives
+     */
+    @Test(timeout = 10_000L)
+    public void completesOnceWhenTasksArriveConcurrently() throws InterruptedException {
+        Completion completion = new Completion();
+        AtomicInteger completions = new AtomicInteger(0);
+        AtomicInteger arrived = new AtomicInteger(0);
+        completion.getFuture().thenRun(completions::incrementAndGet);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            completion.register();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    completion.register();
+                    arrived.incrementAndGet();
+                    completion.arrive();
+                }
+                arrived.incrementAndGet();
+                completion.arrive();
+            });
+            threads[i].start();
+        }
+        completion.await();
+        assertEquals(threads.length * 10_001, arrived.get());
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, completions.get());
+    }
+
+    @Test(timeout = 10_000L)
+    public void awaitReturnsOnceCompleted() throws InterruptedException {
+        Completion completion = new Completion();
+        completion.register();
+        Thread thread = new Thread(completion::arrive);
+        thread.start();
+        completion.await();
+        assertTrue(completion.isDone());
+        // already completed
+        completion.await();
+        thread.join();
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.wnebyte.crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.Assert.*;
+
+public class ContentStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String read(final File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void storesEqualDocumentsOnce() throws Exception {
+        Path directory = folder.newFolder().toPath();
+        File a = folder.newFile("a.html");
+        File b = folder.newFile("b.html");
+        try (ContentStore store = new ContentStore(directory)) {
+            store.open();
+            Document document = Jsoup.parse("<p>same</p>");
+            store.write("ka", document, a, "http://example.com/a");
+            store.write("kb", document.clone(), b, "http://example.com/b");
+            assertTrue(store.isProcessed("ka"));
+            assertTrue(store.link("ka", folder.newFile("c.html"), "http://example.com/c"));
+            assertFalse(store.link("kd", folder.newFile("d.html"), "http://example.com/d"));
+        }
+        assertEquals(read(a), read(b));
+        assertTrue(Files.isSameFile(a.toPath(), b.toPath()));
+    }
+
+    /*
+    the file of a url is a hard link to the object of its document, which must survive the url being
+    written again, as must every other url linked to the object
+     */
+    @Test
+    public void writingAnAliasedFileLeavesItsAliasesUnchanged() throws Exception {
+        Path directory = folder.newFolder().toPath();
+        File a = folder.newFile("a.html");
+        File b = folder.newFile("b.html");
+        try (ContentStore store = new ContentStore(directory)) {
+            store.open();
+            Document document = Jsoup.parse("<p>same</p>");
+            store.write("k", document, a, "http://example.com/a");
+            assertTrue(store.link("k", b, "http://example.com/b"));
+        }
+        String contents = read(a);
+        assertTrue(Files.isSameFile(a.toPath(), b.toPath()));
+
+        DocumentWriter.write(Jsoup.parse("<p>changed</p>"), a);
+        assertTrue(read(a).contains("changed"));
+        assertEquals(contents, read(b));
+        assertFalse(Files.isSameFile(a.toPath(), b.toPath()));
+        // no temporary files are left behind
+        assertEquals(2, folder.getRoot().listFiles(File::isFile).length);
+    }
+}
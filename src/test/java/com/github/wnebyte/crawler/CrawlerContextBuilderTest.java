@@ -0,0 +1,26 @@
+package com.github.wnebyte.crawler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class CrawlerContextBuilderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CrawlerContextBuilder builder() {
+        return new CrawlerContextBuilder()
+                .setRootUrl("http://example.com/")
+                .setLinkDepth(1)
+                .setHtmlDirectory(folder.getRoot().getPath());
+    }
+
+    @Test
+    public void everyCrawlOfAContextGetsANewSeenSet() {
+        CrawlerContext context = builder().build();
+        assertTrue(context.newSeenSet().add("http://example.com/"));
+        assertTrue(context.newSeenSet().add("http://example.com/"));
+    }
+}
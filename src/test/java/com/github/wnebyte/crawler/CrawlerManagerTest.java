@@ -0,0 +1,229 @@
+package com.github.wnebyte.crawler;
+
+import com.github.wnebyte.crawler.test.SyntheticSite;
+import org.jsoup.Jsoup;
+import org.jsoup.select.Elements;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.Assert.*;
+
+public class CrawlerManagerTest {
+
+    private static final int DEPTH = 3;
+
+    private static final int FAN_OUT = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SyntheticSite site;
+
+    @Before
+    public void setUp() throws IOException {
+        site = new SyntheticSite(DEPTH, FAN_OUT, 1024, 0L, 0.0, 0L);
+    }
+
+    @After
+    public void tearDown() {
+        site.close();
+    }
+
+    private CrawlerContextBuilder builder() throws IOException {
+        return new CrawlerContextBuilder()
+                .setRootUrl(site.getRootUrl())
+                .setLinkDepth(DEPTH)
+                .setThreads(4)
+                .setHtmlDirectory(folder.newFolder().getPath());
+    }
+
+    private static CrawlerProgress crawl(final CrawlerContextBuilder builder) {
+        CrawlerManager crawlerManager = new CrawlerManager(builder.build());
+        crawlerManager.run();
+        return crawlerManager.getProgress();
+    }
+
+    @Test
+    public void crawlsEveryPage() throws IOException {
+        assertEquals(site.getPages(), crawl(builder()).getDocumentsCrawled());
+    }
+
+    /*
+    strictly breadth-first, so that throttled crawlers also have to wait for every link of a depth to be crawled
+     */
+    @Test
+    public void throttledCrawlStillCrawlsEveryPage() throws IOException {
+        CrawlerContextBuilder builder = builder().setMaxPendingUrls(2).setStrictBreadthFirst(true);
+        assertEquals(site.getPages(), crawl(builder).getDocumentsCrawled());
+    }
+
+    /*
+    the handler throws at the last link of each page, once its other links have been marked, so that every page
+    is fetched, but none is written
+     */
+    @Test(timeout = 60_000L)
+    public void strictCrawlCompletesWhenCrawlersThrow() throws IOException {
+        CrawlerContextBuilder builder = builder()
+                .setStrictBreadthFirst(true)
+                .addElementHandler("a", element -> {
+                    if (element.text().startsWith("http://localhost")) {
+                        throw new IllegalStateException("handler failure");
+                    }
+                    return true;
+                });
+        CrawlerProgress progress = crawl(builder);
+        assertTrue(site.getPages() <= site.getRequestsServed());
+        assertEquals(site.getPages(), progress.getDocumentsCrawled());
+        assertEquals(site.getPages(), progress.getFailedDocuments());
+        assertEquals(0, progress.getFailedWrites());
+    }
+
+    /*
+    a finished crawl leaves nothing pending, so that resuming it crawls nothing again
+     */
+    @Test
+    public void resumedCrawlRestoresProgressOfCheckpoint() throws IOException {
+        assertResumeRestoresProgress(builder().setCheckpointInterval(10L));
+    }
+
+    @Test
+    public void resumedStrictCrawlRestoresProgressOfCheckpoint() throws IOException {
+        assertResumeRestoresProgress(builder().setCheckpointInterval(10L).setStrictBreadthFirst(true));
+    }
+
+    private void assertResumeRestoresProgress(final CrawlerContextBuilder builder) {
+        assertEquals(site.getPages(), crawl(builder).getDocumentsCrawled());
+        long requests = site.getRequestsServed();
+        CrawlerProgress resumed = crawl(builder.setResume(true));
+        assertEquals(site.getPages(), resumed.getDocumentsCrawled());
+        assertEquals(site.getPages(), resumed.getDocumentsMarked());
+        assertEquals(requests, site.getRequestsServed());
+    }
+
+    /*
+    the root page only marks its link to page 5 once page 1 has marked its own link to page 5, so that page 5 is
+    marked at depth 2 first, and crawled again from depth 1; a resumed crawl must still count it once
+     */
+    @Test(timeout = 60_000L)
+    public void resumedCrawlCountsRevisitedPagesOnce() throws IOException {
+        AtomicReference<CrawlerManager> crawl = new AtomicReference<>();
+        CrawlerContextBuilder builder = builder()
+                .setCheckpointInterval(10L)
+                .addElementHandler("li", element -> {
+                    if (!element.ownerDocument().location().contains("/p/") && element.text().endsWith("/p/5.html")) {
+                        // the children of pages 1 to 4, and page 5
+                        while (crawl.get().getProgress().getDocumentsMarked(2) < FAN_OUT * (FAN_OUT - 1) + 1) {
+                            LockSupport.parkNanos(1_000_000L);
+                        }
+                    }
+                    return true;
+                });
+        crawl.set(new CrawlerManager(builder.build()));
+        crawl.get().run();
+        CrawlerProgress progress = crawl.get().getProgress();
+        int crawledPerDepth = 0;
+        for (int depth = 0; depth <= progress.getDepth(); depth++) {
+            crawledPerDepth += progress.getDocumentsCrawled(depth);
+        }
+        assertTrue(site.getPages() < crawledPerDepth);
+        assertEquals(site.getPages(), progress.getDocumentsCrawled());
+        long requests = site.getRequestsServed();
+        CrawlerProgress resumed = crawl(builder.setResume(true));
+        assertEquals(site.getPages(), resumed.getDocumentsCrawled());
+        assertEquals(site.getPages(), resumed.getDocumentsMarked());
+        assertEquals(requests, site.getRequestsServed());
+    }
+
+    /*
+    every page is unchanged when crawled again, so that its links are read back from the metadata store
+     */
+    @Test
+    public void incrementalCrawlMarksLinksOfUnchangedPages() throws IOException {
+        CrawlerContextBuilder builder = builder().setIncremental(true).setStrictBreadthFirst(true);
+        assertEquals(site.getPages(), crawl(builder).getDocumentsCrawled());
+        assertEquals(site.getPages(), crawl(builder).getDocumentsCrawled());
+    }
+
+    /*
+    every page references a png, which is stored under its sniffed extension, and an svg, which is rejected
+    and keeps its remote url
+     */
+    @Test(timeout = 60_000L)
+    public void imageSourcesMatchTheStoredImages() throws IOException {
+        File htmlDirectory = folder.newFolder();
+        CrawlerContextBuilder builder = builder()
+                .setHtmlDirectory(htmlDirectory.getPath())
+                .setImageDirectory("images")
+                .setDownloadImages(true);
+        assertEquals(site.getPages(), crawl(builder).getDocumentsCrawled());
+        List<Path> documents;
+        try (Stream<Path> files = java.nio.file.Files.walk(htmlDirectory.toPath())) {
+            documents = files.filter(file -> file.toString().endsWith(".html")).collect(Collectors.toList());
+        }
+        assertEquals(site.getPages(), documents.size());
+        for (Path document : documents) {
+            Elements images = Jsoup.parse(document.toFile(), "UTF-8").select("img");
+            assertEquals(2, images.size());
+            Path logo = document.resolveSibling(images.get(0).attr("src")).normalize();
+            assertTrue(logo.toString().endsWith(".png"));
+            assertTrue(java.nio.file.Files.isRegularFile(logo));
+            assertEquals(site.getRootUrl() + "icon.svg", images.get(1).attr("src"));
+        }
+        try (Stream<Path> files = java.nio.file.Files.walk(htmlDirectory.toPath().resolve("images"))) {
+            assertEquals(1, files.filter(java.nio.file.Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    public void spillingCrawlCrawlsEveryPageAndDeletesItsSegments() throws IOException {
+        File spill = folder.newFolder();
+        CrawlerContextBuilder builder = builder()
+                .setStrictBreadthFirst(true)
+                .setSpillDirectory(spill.getPath())
+                .setSpillThreshold(3);
+        assertEquals(site.getPages(), crawl(builder).getDocumentsCrawled());
+        assertEquals(0, spill.listFiles().length);
+    }
+
+    /*
+    the pages are spread over more hosts than members, so that most links are forwarded, and many reach
+    their owners only after the page has been marked at a greater depth through another path
+     */
+    @Test(timeout = 120_000L)
+    public void clusterCrawlsEveryPageOnce() throws Exception {
+        site.close();
+        site = new SyntheticSite(DEPTH, FAN_OUT, 1024, 0L, 0.0, 0L, 5);
+        assertEquals(site.getPages(), crawl(builder()).getDocumentsCrawled());
+
+        String[] members = new String[3];
+        for (int i = 0; i < members.length; i++) {
+            try (ServerSocket socket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+                members[i] = "127.0.0.1:" + socket.getLocalPort();
+            }
+        }
+        List<CompletableFuture<CrawlerProgress>> crawls = new ArrayList<>();
+        for (int i = 0; i < members.length; i++) {
+            CrawlerContextBuilder builder = builder().setCluster(i, members);
+            crawls.add(CompletableFuture.supplyAsync(() -> crawl(builder)));
+        }
+        long crawled = 0L;
+        for (CompletableFuture<CrawlerProgress> crawl : crawls) {
+            crawled += crawl.get().getDocumentsCrawled();
+        }
+        assertEquals(site.getPages(), crawled);
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.wnebyte.crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import static org.junit.Assert.*;
+
+public class DocumentWriterTest {
+
+    // a surrogate pair
+    private static final String EMOJI = "\uD83D\uDE00";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /*
+    the text spans several char buffers, and is preceded by an odd or an even # of chars, so that one of the
+    documents splits a surrogate pair at each buffer boundary
+     */
+    private static Document newDocument(final int offset) {
+        StringBuilder sb = new StringBuilder("<html><head><title>caf\u00e9</title></head><body><p>");
+        for (int i = 0; i < offset; i++) {
+            sb.append('x');
+        }
+        for (int i = 0; i < 20_000; i++) {
+            sb.append(EMOJI).append("\u00e5\u4e2d");
+        }
+        return Jsoup.parse(sb.append("</p></body></html>").toString());
+    }
+
+    private static byte[] getExpected(final Document document) {
+        return document.outerHtml().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void writesOuterHtmlAsUtf8() throws Exception {
+        for (int offset = 0; offset < 2; offset++) {
+            Document document = newDocument(offset);
+            File file = folder.newFile("document-" + offset + ".html");
+            long size = DocumentWriter.write(document, file);
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            assertEquals(bytes.length, size);
+            assertArrayEquals(getExpected(document), bytes);
+            assertEquals(StandardCharsets.UTF_8, document.charset());
+        }
+    }
+
+    /*
+    outerHtml is only trimmed when the document is pretty printed
+     */
+    @Test
+    public void trimsOnlyPrettyPrintedDocuments() throws Exception {
+        for (boolean prettyPrint : new boolean[] { true, false }) {
+            Document document = Jsoup.parse("<p>" + EMOJI + "</p>  \n ");
+            document.outputSettings().prettyPrint(prettyPrint);
+            File file = folder.newFile(prettyPrint + ".html");
+            long size = DocumentWriter.write(document, file);
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            assertEquals(bytes.length, size);
+            assertArrayEquals(getExpected(document), bytes);
+        }
+    }
+
+    /*
+    the channel accepts only a few bytes per write, so that every byte buffer is drained in several writes
+     */
+    @Test
+    public void countsEveryByteWrittenToTheChannel() throws Exception {
+        Document document = newDocument(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long size = DocumentWriter.write(document, new WritableByteChannel() {
+            @Override
+            public int write(final ByteBuffer src) {
+                int n = Math.min(src.remaining(), 7);
+                for (int i = 0; i < n; i++) {
+                    out.write(src.get());
+                }
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() { }
+        });
+        assertEquals(out.size(), size);
+        assertArrayEquals(getExpected(document), out.toByteArray());
+    }
+
+    /*
+    a small document is written with the buffers pooled by a large one, so that no state is carried over
+     */
+    @Test
+    public void pooledBuffersCarryNothingOver() throws Exception {
+        DocumentWriter.write(newDocument(1), folder.newFile("large.html"));
+        Document document = Jsoup.parse("<p>" + EMOJI + "</p>");
+        File file = folder.newFile("small.html");
+        long size = DocumentWriter.write(document, file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        assertEquals(bytes.length, size);
+        assertArrayEquals(getExpected(document), bytes);
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.wnebyte.crawler;
+
+import com.github.wnebyte.crawler.util.Hashes;
+import com.sun.net.httpserver.HttpServer;
+import org.jsoup.nodes.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+
+public class FetcherTest {
+
+    private static final byte[] PAGE =
+            "<html><body><p>caf\u00e9</p></body></html>".getBytes(StandardCharsets.UTF_8);
+
+    // a page whose closing paragraph lies beyond the max body size
+    private static final byte[] LARGE_PAGE = newLargePage();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+
+    private Fetcher fetcher;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serve("/page.html", 200, "text/html; charset=UTF-8", PAGE);
+        serve("/large.html", 200, "text/html; charset=UTF-8", LARGE_PAGE);
+        serve("/image.png", 200, "image/png", new byte[64 * 1024]);
+        serve("/missing.html", 404, "text/html", PAGE);
+        server.start();
+        fetcher = new Fetcher(new CrawlerContextBuilder()
+                .setRootUrl(url("/"))
+                .setLinkDepth(1)
+                .setHtmlDirectory(folder.newFolder().getPath())
+                .build());
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static byte[] newLargePage() {
+        StringBuilder sb = new StringBuilder("<html><body><p id=\"first\">first</p>");
+        while (sb.length() < Fetcher.MAX_BODY_SIZE) {
+            sb.append("<span>filler</span>");
+        }
+        return sb.append("<p id=\"last\">last</p></body></html>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void serve(final String path, final int status, final String contentType, final byte[] body) {
+        server.createContext(path, exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", contentType);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+    }
+
+    private String url(final String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    @Test
+    public void digestsOnlyBufferedBodies() throws Exception {
+        Page streamed = fetcher.fetch(url("/page.html"), null, false);
+        assertNull(streamed.getDigest());
+        assertEquals("caf\u00e9", streamed.parse().select("p").text());
+
+        Page buffered = fetcher.fetch(url("/page.html"), null, true);
+        assertEquals(Hashes.sha256Hex(PAGE), buffered.getDigest());
+        assertEquals("caf\u00e9", buffered.parse().select("p").text());
+    }
+
+    @Test
+    public void truncatesBodiesAfterMaxBodySize() throws Exception {
+        Document document = fetcher.get(url("/large.html"));
+        assertNotNull(document.getElementById("first"));
+        assertNull(document.getElementById("last"));
+
+        Page buffered = fetcher.fetch(url("/large.html"), null, true);
+        assertEquals(Hashes.sha256Hex(Arrays.copyOf(LARGE_PAGE, Fetcher.MAX_BODY_SIZE)), buffered.getDigest());
+        document = buffered.parse();
+        assertNotNull(document.getElementById("first"));
+        assertNull(document.getElementById("last"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsBodiesThatCanNotBeParsed() throws Exception {
+        fetcher.fetch(url("/image.png"), null, true);
+    }
+
+    @Test
+    public void rejectsUnsuccessfulResponses() throws Exception {
+        try {
+            fetcher.fetch(url("/missing.html"), null, false);
+            fail();
+        } catch (StatusCodeException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+    }
+}
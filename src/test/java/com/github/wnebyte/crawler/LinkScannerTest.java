@@ -0,0 +1,175 @@
+package com.github.wnebyte.crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+
+/*
+every document is also scanned split at each of its bytes, as the tokenizer must carry its state across
+the buffers of a response
+ */
+public class LinkScannerTest {
+
+    private static final String URL = "http://example.com/dir/page.html";
+
+    private static final Charset LATIN_1 = StandardCharsets.ISO_8859_1;
+
+    private static List<String> scan(final byte[] html, final Charset charset, final int from, final int to) {
+        List<String> urls = new ArrayList<>();
+        LinkScanner scanner = new LinkScanner(URL, urls::add);
+        scanner.setCharset(charset);
+        scanner.scan(html, 0, from);
+        scanner.scan(ByteBuffer.wrap(html, from, to - from));
+        ByteBuffer direct = ByteBuffer.allocateDirect(html.length - to);
+        direct.put(html, to, html.length - to).flip();
+        scanner.scan(direct);
+        return urls;
+    }
+
+    private static void assertScans(final List<String> expected, final String html) {
+        assertScans(expected, html.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    private static void assertScans(final List<String> expected, final byte[] html, final Charset charset) {
+        assertEquals(expected, scan(html, charset, 0, html.length));
+        for (int i = 0; i <= html.length; i++) {
+            assertEquals("split at " + i, expected, scan(html, charset, i, html.length));
+            assertEquals("split at " + i + " and " + (i + 1),
+                    expected, scan(html, charset, i, Math.min(i + 1, html.length)));
+        }
+    }
+
+    @Test
+    public void resolvesHrefsOfAnchorTags() {
+        assertScans(List.of(
+                "http://example.com/dir/a",
+                "http://example.com/b",
+                "http://other.com/c",
+                "https://example.com:8443/d?q=1#f",
+                "http://cdn.example.com/e",
+                "http://example.com/dir/page.html?p=2",
+                "http://example.com/f"
+        ), "<html><body>" +
+                "<a href=\"a\">a</a>" +
+                "<A HREF='/b'>b</A>" +
+                "<a class=x href=http://other.com/c>c</a>" +
+                "<a\nhref = \"https://example.com:8443/d?q=1#f\">d</a>" +
+                "<a href=\"//cdn.example.com/e\"/>" +
+                "<a href=\"?p=2\">" +
+                "<a href=\"sub/../../f\">" +
+                "<p href=\"not-an-anchor\"><abbr href=\"nor-this\"></abbr>" +
+                "<a name=\"no-href\">" +
+                "</body></html>");
+    }
+
+    @Test
+    public void onlyFirstHrefOfTagCounts() {
+        assertScans(List.of("http://example.com/dir/first"),
+                "<a href=\"first\" href=\"second\" HREF=third>");
+    }
+
+    @Test
+    public void ignoresAttributesOfEndTags() {
+        assertScans(List.of("http://example.com/dir/kept"),
+                "<a></a href=\"ignored\"><a href=kept>");
+    }
+
+    @Test
+    public void skipsCommentsDeclarationsAndProcessingInstructions() {
+        assertScans(List.of("http://example.com/dir/1", "http://example.com/dir/2", "http://example.com/dir/3",
+                "http://example.com/dir/4"),
+                "<!DOCTYPE html><?xml version=\"1.0\"?>" +
+                        "<!-- <a href=\"comment\"> -- still a comment --->" +
+                        "<a href=1>" +
+                        "<!----><a href=2>" +
+                        "<!-- ends only at -- followed by > ---><a href=3>" +
+                        "<![CDATA[ <a href=\"bogus\"> ]]>" +
+                        "<a href=4>");
+    }
+
+    @Test
+    public void skipsRawTextOfScriptsAndStyles() {
+        assertScans(List.of("http://example.com/dir/1", "http://example.com/dir/2", "http://example.com/dir/3"),
+                "<script>document.write('<a href=\"script\">'); if (a </b) {}</script>" +
+                        "<a href=1>" +
+                        "<SCRIPT type=\"text/javascript\">'</scriptx><a href=\"not-ended\">'</SCRIPT >" +
+                        "<a href=2>" +
+                        "<style>a[href=\"style\"] { }</style/>" +
+                        "<title><a href=\"title\"></title>" +
+                        "<textarea><a href=\"textarea\"></textarea>" +
+                        "<a href=3>");
+    }
+
+    /*
+    an unclosed tag swallows the next one as attributes, as it does in a browser
+     */
+    @Test
+    public void tolerantOfMalformedMarkup() {
+        assertScans(List.of("http://example.com/dir/1", "http://example.com/dir/2", "http://example.com/dir/4"),
+                "a < b <<a href=1> 3 <> 4 </> <a href=2 <a href=3>" +
+                        "<a href=4><a href=\"unterminated");
+    }
+
+    @Test
+    public void unescapesCharacterReferences() {
+        assertScans(List.of(
+                "http://example.com/dir/a?x=1&y=2",
+                "http://example.com/dir/b?q=%22%3C%3E",
+                "http://example.com/dir/c?copy=\u00a9&amp=1"
+        ), "<a href=\"a?x=1&amp;y=2\">" +
+                "<a href=\"b?q=%22%3C%3E\">" +
+                "<a href=\"c?copy=&copy;&amp;amp=1\">");
+    }
+
+    @Test
+    public void resolvesAgainstFirstBaseTag() {
+        assertScans(List.of("http://base.com/x/a", "http://base.com/b"),
+                "<head><base href=\"http://base.com/x/\"><base href=\"http://ignored.com/\"></head>" +
+                        "<a href=a><a href=/b>");
+        assertScans(List.of("http://example.com/base/a"),
+                "<base target=_blank href=\"/base/\"><a href=a>");
+    }
+
+    @Test
+    public void decodesWithCharset() {
+        String html = "<a href=\"/caf\u00e9\"><a href=\"/\u00fcber\">";
+        List<String> expected = List.of("http://example.com/caf\u00e9", "http://example.com/\u00fcber");
+        assertScans(expected, html.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        assertScans(expected, html.getBytes(LATIN_1), LATIN_1);
+    }
+
+    @Test
+    public void dropsValuesTooLongToBeUrls() {
+        StringBuilder sb = new StringBuilder("<a href=\"");
+        for (int i = 0; i < 70_000; i++) {
+            sb.append('x');
+        }
+        sb.append("\"><a href=next>");
+        List<String> urls = new ArrayList<>();
+        new LinkScanner(URL, urls::add).scan(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        assertEquals(List.of("http://example.com/dir/next"), urls);
+    }
+
+    /*
+    the scanner resolves urls the way jsoup does for a document of ordinary markup
+     */
+    @Test
+    public void agreesWithJsoup() {
+        String html = "<!DOCTYPE html><html><head><title>t</title></head><body>" +
+                "<nav><a href=\"/\">home</a><a href=\"../up\">up</a><a href=\"./here?x=1&amp;y=2#top\">here</a></nav>" +
+                "<a href=\"https://www.example.org/path/to?q\">out</a><a href='#frag'>frag</a>" +
+                "<a href=\"mailto:someone@example.com\">mail</a>" +
+                "</body></html>";
+        List<String> expected = new ArrayList<>();
+        for (Element anchorTag : Jsoup.parse(html, URL).select("a[href]")) {
+            expected.add(anchorTag.absUrl("href"));
+        }
+        assertScans(expected, html);
+    }
+}
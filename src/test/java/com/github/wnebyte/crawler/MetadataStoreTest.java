@@ -0,0 +1,114 @@
+package com.github.wnebyte.crawler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+
+public class MetadataStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String url(final int i) {
+        return "http://example.com/" + i;
+    }
+
+    private static List<String> links(final int i) {
+        List<String> links = new ArrayList<>();
+        for (int j = 0; j < i % 5; j++) {
+            links.add(url(i * 10 + j));
+        }
+        return links;
+    }
+
+    private static Metadata metadata(final int i) {
+        return new Metadata((i % 2 == 0) ? "\"" + i + "\"" : null, "Mon, 0" + (i % 10) + " Jan 2024", "h" + i,
+                i, links(i));
+    }
+
+    @Test
+    public void readsLinksBackOnDemand() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("metadata");
+        MetadataStore store = new MetadataStore(file);
+        store.open();
+        for (int i = 0; i < 1000; i++) {
+            store.put(url(i), metadata(i));
+        }
+        // still buffered
+        assertEquals(links(999), store.getLinks(url(999)));
+        assertTrue(store.get(url(999)).getLinks().isEmpty());
+        store.refetched(url(3), 12345L);
+        store.close();
+
+        MetadataStore reopened = new MetadataStore(file);
+        reopened.open();
+        assertEquals(1000, reopened.size());
+        for (int i = 0; i < 1000; i++) {
+            Metadata metadata = reopened.get(url(i));
+            assertEquals(metadata(i).getETag(), metadata.getETag());
+            assertEquals(metadata(i).getLastModified(), metadata.getLastModified());
+            assertEquals(metadata(i).getContentHash(), metadata.getContentHash());
+            assertEquals((i == 3) ? 12345L : i, metadata.getFetchTime());
+            assertEquals(links(i), reopened.getLinks(url(i)));
+        }
+        assertNull(reopened.get(url(1000)));
+        assertTrue(reopened.getLinks(url(1000)).isEmpty());
+        reopened.close();
+    }
+
+    /*
+    a refetched url only appends its validators, and its links survive compaction
+     */
+    @Test
+    public void refetchedUrlKeepsItsLinks() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("metadata");
+        MetadataStore store = new MetadataStore(file);
+        store.open();
+        store.put(url(4), metadata(4));
+        store.close();
+        long size = Files.size(file);
+
+        store = new MetadataStore(file);
+        store.open();
+        for (int i = 0; i < 10; i++) {
+            store.refetched(url(4), 100L + i);
+        }
+        store.close();
+        assertEquals(size, Files.size(file));
+
+        store = new MetadataStore(file);
+        store.open();
+        assertEquals(109L, store.get(url(4)).getFetchTime());
+        assertEquals(links(4), store.getLinks(url(4)));
+        store.close();
+    }
+
+    /*
+    the appended records of a store that was never closed are restored, up to a partially written record
+     */
+    @Test
+    public void restoresAppendedRecordsAfterCrash() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("metadata");
+        MetadataStore store = new MetadataStore(file);
+        store.open();
+        for (int i = 0; i < 100; i++) {
+            store.put(url(i), metadata(i));
+        }
+        // flushes the buffered records, without closing the store
+        store.getLinks(url(99));
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        MetadataStore reopened = new MetadataStore(file);
+        reopened.open();
+        assertEquals(99, reopened.size());
+        assertEquals(links(98), reopened.getLinks(url(98)));
+        reopened.close();
+    }
+}
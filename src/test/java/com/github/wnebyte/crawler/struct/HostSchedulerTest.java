@@ -0,0 +1,96 @@
+package com.github.wnebyte.crawler.struct;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+
+public class HostSchedulerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void handsOutLinksOfOtherHostsWhileAHostIsAtItsMaximumConnections() {
+        HostScheduler scheduler = new HostScheduler(1, 0.0, DepthFrontier::new);
+        scheduler.offer(new Link("http://a.com/1", 0));
+        scheduler.offer(new Link("http://a.com/2", 0));
+        scheduler.offer(new Link("http://b.com/1", 0));
+        Link a = scheduler.poll();
+        assertEquals("http://a.com/1", a.getUrl());
+        assertEquals("http://b.com/1", scheduler.poll().getUrl());
+        assertNull(scheduler.poll());
+        scheduler.release(a);
+        assertEquals("http://a.com/2", scheduler.poll().getUrl());
+    }
+
+    @Test
+    public void handsOutTheShallowestLinkFirst() {
+        HostScheduler scheduler = new HostScheduler(0, 0.0, DepthFrontier::new);
+        scheduler.offer(new Link("http://a.com/deep", 2));
+        scheduler.offer(new Link("http://b.com/shallow", 1));
+        scheduler.offer(new Link("http://a.com/shallow", 1));
+        assertEquals(1, scheduler.poll().getDepth());
+        assertEquals(1, scheduler.poll().getDepth());
+        assertEquals(2, scheduler.poll().getDepth());
+    }
+
+    @Test
+    public void doesNotHandOutLinksOfAPenalizedHost() {
+        HostScheduler scheduler = new HostScheduler(0, 0.0, DepthFrontier::new);
+        Link link = new Link("http://a.com/1", 0);
+        scheduler.offer(link);
+        scheduler.penalize(link, 1, TimeUnit.HOURS);
+        assertNull(scheduler.poll());
+        assertTrue(0 < scheduler.getDelay(Integer.MAX_VALUE, TimeUnit.MINUTES));
+    }
+
+    @Test
+    public void evictsIdleHosts() throws InterruptedException {
+        HostScheduler scheduler = new HostScheduler(1, 0.0, DepthFrontier::new);
+        Link idle = new Link("http://idle.com/", 0);
+        Link busy = new Link("http://busy.com/", 0);
+        Link penalized = new Link("http://penalized.com/", 0);
+        scheduler.offer(idle);
+        scheduler.offer(busy);
+        scheduler.offer(penalized);
+        for (int i = 0; i < 3; i++) {
+            scheduler.poll();
+        }
+        scheduler.release(idle);
+        scheduler.release(penalized);
+        scheduler.penalize(penalized, 1, TimeUnit.HOURS);
+        assertEquals(3, scheduler.getHostCount());
+        Thread.sleep(1100L);
+        assertNull(scheduler.poll());
+        // the busy host still has a connection, and the penalized host's penalty must be kept
+        assertEquals(2, scheduler.getHostCount());
+        scheduler.offer(new Link("http://idle.com/again", 1));
+        assertEquals("http://idle.com/again", scheduler.poll().getUrl());
+    }
+
+    @Test
+    public void handsOutSpilledLinksOfEveryHostInOrder() throws Exception {
+        try (SpillStore store = new SpillStore(folder.getRoot().toPath(), 16, 512)) {
+            HostScheduler scheduler = new HostScheduler(0, 0.0,
+                    () -> new DepthFrontier(() -> new SpillingFrontier(store)));
+            for (int i = 0; i < 1000; i++) {
+                scheduler.offer(new Link("http://" + (char) ('a' + i % 3) + ".com/" + i, i / 500));
+            }
+            assertTrue(0L < store.getSpilled());
+            int[] next = {0, 1, 2};
+            for (int i = 0; i < 1000; i++) {
+                Link link = scheduler.poll();
+                int host = link.getUrl().charAt(7) - 'a';
+                assertEquals("http://" + (char) ('a' + host) + ".com/" + next[host], link.getUrl());
+                assertEquals(next[host] / 500, link.getDepth());
+                next[host] += 3;
+                scheduler.release(link);
+            }
+            assertNull(scheduler.poll());
+            assertEquals(0, scheduler.size());
+            assertEquals(0L, store.getSpilled());
+        }
+    }
+}
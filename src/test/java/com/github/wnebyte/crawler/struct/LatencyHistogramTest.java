@@ -0,0 +1,108 @@
+package com.github.wnebyte.crawler.struct;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void reportsZeroWhenEmpty() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0L, snapshot.getCount());
+        assertEquals(0L, snapshot.getMean());
+        assertEquals(0L, snapshot.getMax());
+        assertEquals(0L, snapshot.getP50());
+        assertEquals(0L, snapshot.getP99());
+    }
+
+    /*
+    durations below 32 ns have a bucket each, so that they are reported exactly
+     */
+    @Test
+    public void reportsShortDurationsExactly() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 0; nanos < 32; nanos++) {
+            histogram.record(nanos);
+        }
+        histogram.record(-1L);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(33L, snapshot.getCount());
+        assertEquals(496L / 33L, snapshot.getMean());
+        assertEquals(31L, snapshot.getMax());
+        assertEquals(0L, snapshot.getPercentile(0.0));
+        assertEquals(0L, snapshot.getPercentile(2.0));
+        assertEquals(15L, snapshot.getP50());
+        assertEquals(28L, snapshot.getP90());
+        assertEquals(31L, snapshot.getP99());
+        assertEquals(31L, snapshot.getPercentile(100.0));
+    }
+
+    /*
+    32 and 33 share the first bucket that is two ns wide, which is reported as its highest duration,
+    unless that exceeds the longest recorded duration
+     */
+    @Test
+    public void reportsTheHighestDurationOfABucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(32L);
+        assertEquals(32L, histogram.snapshot().getP50());
+        histogram.record(34L);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(33L, snapshot.getP50());
+        assertEquals(34L, snapshot.getPercentile(100.0));
+        histogram.record(33L);
+        histogram.record(35L);
+        snapshot = histogram.snapshot();
+        assertEquals(33L, snapshot.getP50());
+        assertEquals(35L, snapshot.getP99());
+    }
+
+    @Test
+    public void reportsLongDurationsWithinASixteenth() {
+        long[] durations = { 1_000L, 999_999L, 1_000_000L, 123_456_789L, 60_000_000_000L };
+        for (long nanos : durations) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(nanos);
+            histogram.record(2 * nanos);
+            long p50 = histogram.snapshot().getP50();
+            assertTrue(nanos <= p50);
+            assertTrue(p50 <= nanos + nanos / 16);
+        }
+    }
+
+    @Test
+    public void recordsTheLongestDuration() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1L, snapshot.getCount());
+        assertEquals(Long.MAX_VALUE, snapshot.getMax());
+        assertEquals(Long.MAX_VALUE, snapshot.getP99());
+    }
+
+    /*
+    every thread records 1..10_000 ns, the median of which falls within the bucket of 4864..5119 ns
+     */
+    @Test
+    public void recordsConcurrently() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (long nanos = 1; nanos <= 10_000; nanos++) {
+                    histogram.record(nanos);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(80_000L, snapshot.getCount());
+        assertEquals(5_000L, snapshot.getMean());
+        assertEquals(10_000L, snapshot.getMax());
+        assertEquals(5_119L, snapshot.getP50());
+        assertEquals(10_000L, snapshot.getPercentile(100.0));
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.wnebyte.crawler.struct;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import static org.junit.Assert.*;
+
+public class LinkGraphBuilderTest {
+
+    // enough urls, links and url bytes to grow every array of the builder several times
+    private static final int URLS = 5_000;
+
+    private static final int PAGES = 2_000;
+
+    private static final int MAX_LINKS = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String url(final int i) {
+        return "http://example.com/" + ((i % 3 == 0) ? "caf\u00e9/" : "page/") + i;
+    }
+
+    /*
+    checks the graph against the links, by url, and the lowest depths of every url
+     */
+    private static void assertGraph(final Map<String, Set<String>> links, final Map<String, Integer> depths,
+                                    final LinkGraph graph) {
+        assertEquals(depths.size(), graph.getNodeCount());
+        int linkCount = 0;
+        int[] inDegrees = new int[graph.getNodeCount()];
+        Map<String, Integer> nodes = new HashMap<>();
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            assertNull(nodes.put(graph.getUrl(node), node));
+        }
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            String url = graph.getUrl(node);
+            assertEquals(depths.get(url).intValue(), graph.getDepth(node));
+            int[] targets = graph.getTargets(node);
+            assertEquals(targets.length, graph.getOutDegree(node));
+            Set<String> expected = links.getOrDefault(url, new TreeSet<>());
+            assertEquals(expected.size(), targets.length);
+            for (int i = 0; i < targets.length; i++) {
+                // ascending and unique
+                assertTrue((i == 0) || (targets[i - 1] < targets[i]));
+                assertEquals(targets[i], graph.getTarget(node, i));
+                assertTrue(expected.contains(graph.getUrl(targets[i])));
+                inDegrees[targets[i]]++;
+            }
+            linkCount += targets.length;
+        }
+        assertEquals(linkCount, graph.getLinkCount());
+        assertArrayEquals(inDegrees, graph.getInDegrees());
+    }
+
+    @Test
+    public void buildsSortedUniqueLinksOfEveryNode() {
+        LinkGraphBuilder builder = new LinkGraphBuilder();
+        builder.addLinks("http://example.com/", 0, List.of("http://example.com/a", "http://example.com/",
+                "http://example.com/b", "http://example.com/a"));
+        builder.addLinks("http://example.com/b", 1, List.of("http://example.com/a"));
+        builder.addLinks("http://example.com/a", 1, List.of());
+        builder.addLinks("http://example.com/c", 2, List.of("http://example.com/"));
+        assertEquals(4, builder.getNodeCount());
+        assertEquals(6, builder.getLinkCount());
+        LinkGraph graph = builder.build();
+        assertEquals(4, graph.getNodeCount());
+        // the duplicate link from the root is counted once, but its link to itself is kept
+        assertEquals(5, graph.getLinkCount());
+        assertEquals("http://example.com/", graph.getUrl(0));
+        assertArrayEquals(new int[] { 0, 1, 2 }, graph.getTargets(0));
+        assertArrayEquals(new int[] { 1 }, graph.getTargets(2));
+        assertArrayEquals(new int[0], graph.getTargets(1));
+        assertArrayEquals(new int[] { 0 }, graph.getTargets(3));
+        // every node has the lowest depth it was discovered at
+        assertArrayEquals(new int[] { 0, 1, 1, 2 },
+                new int[] { graph.getDepth(0), graph.getDepth(1), graph.getDepth(2), graph.getDepth(3) });
+        assertArrayEquals(new int[] { 2, 2, 1, 0 }, graph.getInDegrees());
+    }
+
+    @Test
+    public void buildsLargeRandomGraphs() throws Exception {
+        Random random = new Random(42L);
+        LinkGraphBuilder builder = new LinkGraphBuilder();
+        Map<String, Set<String>> links = new HashMap<>();
+        Map<String, Integer> depths = new HashMap<>();
+        int recorded = 0;
+        for (int i = 0; i < PAGES; i++) {
+            String url = url(random.nextInt(URLS));
+            int depth = random.nextInt(5);
+            List<String> targets = new ArrayList<>();
+            for (int j = random.nextInt(MAX_LINKS); j > 0; j--) {
+                targets.add(url(random.nextInt(URLS)));
+            }
+            builder.addLinks(url, depth, targets);
+            recorded += targets.size();
+            links.computeIfAbsent(url, key -> new TreeSet<>()).addAll(targets);
+            depths.merge(url, depth, Math::min);
+            for (String target : targets) {
+                depths.merge(target, depth + 1, Math::min);
+            }
+        }
+        assertEquals(recorded, builder.getLinkCount());
+        LinkGraph graph = builder.build();
+        assertGraph(links, depths, graph);
+
+        Path file = folder.getRoot().toPath().resolve("graph.bin");
+        graph.writeTo(file);
+        assertGraph(links, depths, LinkGraph.read(file));
+    }
+
+    /*
+    the links recorded by concurrent crawlers are all kept
+     */
+    @Test
+    public void recordsLinksConcurrently() throws Exception {
+        LinkGraphBuilder builder = new LinkGraphBuilder();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = offset; i < URLS; i += 4) {
+                    builder.addLinks(url(i), 1, List.of(url((i + 1) % URLS), url((i + 2) % URLS)));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        LinkGraph graph = builder.build();
+        assertEquals(URLS, graph.getNodeCount());
+        assertEquals(2 * URLS, graph.getLinkCount());
+        for (int inDegree : graph.getInDegrees()) {
+            assertEquals(2, inDegree);
+        }
+    }
+}
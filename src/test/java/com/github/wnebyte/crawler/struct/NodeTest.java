@@ -0,0 +1,152 @@
+package com.github.wnebyte.crawler.struct;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import static org.junit.Assert.*;
+
+public class NodeTest {
+
+    // deep enough to overflow the stack of a recursive traversal
+    private static final int DEPTH = 100_000;
+
+    /*
+    1
+    +-- 2
+    |   +-- 4
+    |   +-- 5
+    +-- 3
+        +-- 6
+            +-- 7
+     */
+    private static Node<Integer> tree() {
+        return new Node<>(1,
+                new Node<>(2, new Node<>(4), new Node<>(5)),
+                new Node<>(3, new Node<>(6, new Node<>(7))));
+    }
+
+    /*
+    a chain of only children, whose last node has fan-out children of its own
+     */
+    private static Node<Integer> chain(final int depth, final int fanOut) {
+        Node<Integer> root = new Node<>(0);
+        Node<Integer> node = root;
+        for (int i = 1; i < depth; i++) {
+            Node<Integer> child = new Node<>(i);
+            node.addChild(child);
+            node = child;
+        }
+        for (int i = 0; i < fanOut; i++) {
+            node.addChild(new Node<>(depth + i));
+        }
+        return root;
+    }
+
+    /*
+    a complete tree of the specified height, whose values are unique
+     */
+    private static Node<Integer> complete(final int height, final int fanOut) {
+        int[] next = { 0 };
+        Node<Integer> root = new Node<>(next[0]++);
+        List<Node<Integer>> level = new ArrayList<>();
+        level.add(root);
+        for (int h = 1; h < height; h++) {
+            List<Node<Integer>> children = new ArrayList<>();
+            for (Node<Integer> node : level) {
+                for (int i = 0; i < fanOut; i++) {
+                    Node<Integer> child = new Node<>(next[0]++);
+                    node.addChild(child);
+                    children.add(child);
+                }
+            }
+            level = children;
+        }
+        return root;
+    }
+
+    private static List<Integer> values(final Iterator<Node<Integer>> iterator) {
+        List<Integer> values = new ArrayList<>();
+        iterator.forEachRemaining(node -> values.add(node.getValue()));
+        return values;
+    }
+
+    @Test
+    public void traversesDepthFirstInPreOrder() {
+        Node<Integer> tree = tree();
+        List<Integer> expected = List.of(1, 2, 4, 5, 3, 6, 7);
+        assertEquals(expected, values(tree.iterator()));
+        List<Integer> consumed = new ArrayList<>();
+        tree.consume(node -> consumed.add(node.getValue()));
+        assertEquals(expected, consumed);
+        assertEquals(expected, tree.stream().map(Node::getValue).collect(Collectors.toList()));
+        assertEquals(List.of(4, 5, 7), tree.leafNodes().stream().map(Node::getValue).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void traversesBreadthFirst() {
+        Node<Integer> tree = tree();
+        List<Integer> expected = List.of(1, 2, 3, 4, 5, 6, 7);
+        assertEquals(expected, values(tree.breadthFirstIterator()));
+        List<Integer> consumed = new ArrayList<>();
+        tree.consumeBreadthFirst(node -> consumed.add(node.getValue()));
+        assertEquals(expected, consumed);
+    }
+
+    @Test
+    public void traversesDeepTreesWithoutRecursion() {
+        Node<Integer> root = chain(DEPTH, 0);
+        assertEquals(DEPTH, values(root.iterator()).size());
+        assertEquals(1, root.leafNodes().size());
+        assertEquals(DEPTH - 1, root.leafNodes().get(0).getDepth());
+        assertEquals(DEPTH, root.stream().count());
+        Set<Integer> visited = ConcurrentHashMap.newKeySet();
+        root.consumeParallel(node -> assertTrue(visited.add(node.getValue())));
+        assertEquals(DEPTH, visited.size());
+    }
+
+    @Test
+    public void cachedDepthsAreRecomputedWhenReattached() {
+        Node<Integer> tree = tree();
+        Node<Integer> six = tree.getChildren().get(1).getChildren().get(0);
+        Node<Integer> seven = six.getChildren().get(0);
+        assertEquals(3, seven.getDepth());
+        assertEquals(2, six.getDepth());
+
+        // moves the subtree of 6 below 4
+        Node<Integer> four = tree.getChildren().get(0).getChildren().get(0);
+        four.addChild(six);
+        assertEquals(4, seven.getDepth());
+        assertEquals(3, six.getDepth());
+
+        // and makes it a tree of its own
+        six.setParent(null);
+        assertEquals(0, six.getDepth());
+        assertEquals(1, seven.getDepth());
+        assertTrue(six.isRoot());
+    }
+
+    /*
+    every node is visited exactly once, however the tree is split between threads
+     */
+    @Test
+    public void parallelTraversalsVisitEveryNodeOnce() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (Node<Integer> root : List.of(complete(8, 4), chain(5_000, 1_000))) {
+                long size = root.stream().count();
+                Set<Integer> visited = ConcurrentHashMap.newKeySet();
+                root.consumeParallel(node -> assertTrue(visited.add(node.getValue())), pool);
+                assertEquals(size, visited.size());
+                assertEquals(size, root.parallelStream().map(Node::getValue).distinct().count());
+                assertEquals(size, pool.submit(() -> root.parallelStream().count()).join().longValue());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
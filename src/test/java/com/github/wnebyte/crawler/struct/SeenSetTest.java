@@ -0,0 +1,132 @@
+package com.github.wnebyte.crawler.struct;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+@RunWith(Parameterized.class)
+public class SeenSetTest {
+
+    private static final int THREADS = 8;
+
+    private static final int URLS = 20_000;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> sets() {
+        return Arrays.asList(new Object[][]{
+                {"FingerprintSet", (Supplier<SeenSet>) () -> new FingerprintSet(16)},
+                {"BloomFilterSet", (Supplier<SeenSet>) () -> new BloomFilterSet(URLS, 1e-9)}
+        });
+    }
+
+    private final Supplier<SeenSet> supplier;
+
+    public SeenSetTest(final String name, final Supplier<SeenSet> supplier) {
+        this.supplier = supplier;
+    }
+
+    @Test
+    public void addReportsNewUrlsOnce() {
+        SeenSet set = supplier.get();
+        assertTrue(set.add("http://example.com/a"));
+        assertFalse(set.add("http://example.com/a"));
+        assertTrue(set.contains("http://example.com/a"));
+        assertFalse(set.contains("http://example.com/b"));
+        assertEquals(1L, set.size());
+    }
+
+    /*
+    every thread adds the same urls in the same order, so that threads race to add each url
+     */
+    @Test
+    public void concurrentAddsOfTheSameUrlReportItNewExactlyOnce() throws Exception {
+        SeenSet set = supplier.get();
+        AtomicInteger added = new AtomicInteger();
+        CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            Future<?>[] futures = new Future<?>[THREADS];
+            for (int t = 0; t < THREADS; t++) {
+                futures[t] = executor.submit(() -> {
+                    barrier.await();
+                    for (int i = 0; i < URLS; i++) {
+                        if (set.add("http://example.com/" + i)) {
+                            added.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(URLS, added.get());
+        assertEquals(URLS, set.size());
+    }
+
+    @Test
+    public void readFromRestoresWrittenUrls() throws Exception {
+        SeenSet set = supplier.get();
+        for (int i = 0; i < 1000; i++) {
+            set.add("http://example.com/" + i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        set.writeTo(new DataOutputStream(bytes));
+        SeenSet copy = supplier.get();
+        copy.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(copy.add("http://example.com/" + i));
+        }
+        assertEquals(1000L, copy.size());
+    }
+
+    /*
+    only a fingerprint set keeps the depths of its urls
+     */
+    @Test
+    public void addAtDepthKeepsLowestDepth() throws Exception {
+        SeenSet set = supplier.get();
+        assumeTrue(set instanceof FingerprintSet);
+        assertEquals(-1, set.addAtDepth("http://example.com/a", 3));
+        assertEquals(3, set.addAtDepth("http://example.com/a", 5));
+        assertEquals(3, set.getDepth("http://example.com/a"));
+        assertEquals(3, set.addAtDepth("http://example.com/a", 1));
+        assertEquals(1, set.getDepth("http://example.com/a"));
+        assertEquals(-1, set.getDepth("http://example.com/b"));
+        assertEquals(-1, set.addAtDepth("http://example.com/b", 1_000));
+        assertEquals(255, set.getDepth("http://example.com/b"));
+        assertFalse(set.add("http://example.com/b"));
+        assertEquals(2L, set.size());
+
+        for (int i = 0; i < 1000; i++) {
+            set.addAtDepth("http://example.com/" + i, i % 7);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        set.writeTo(new DataOutputStream(bytes));
+        SeenSet copy = supplier.get();
+        copy.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(set.size(), copy.size());
+        assertEquals(1, copy.getDepth("http://example.com/a"));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 7, copy.getDepth("http://example.com/" + i));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.github.wnebyte.crawler.struct;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import static org.junit.Assert.*;
+
+public class SpillingFrontierTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SpillStore newStore(final int capacity, final int segmentSize) {
+        return new SpillStore(folder.getRoot().toPath(), capacity, segmentSize);
+    }
+
+    @Test
+    public void handsOutSpilledLinksInOrder() throws Exception {
+        try (SpillStore store = newStore(4, 256)) {
+            SpillingFrontier frontier = new SpillingFrontier(store);
+            for (int i = 0; i < 100; i++) {
+                frontier.offer(new Link("http://example.com/" + i, i % 3, i % 2));
+            }
+            assertEquals(100, frontier.size());
+            assertEquals(96, frontier.getSpilled());
+            for (int i = 0; i < 100; i++) {
+                frontier.flush();
+                assertEquals("http://example.com/" + i, frontier.peek().getUrl());
+                Link link = frontier.poll();
+                assertEquals("http://example.com/" + i, link.getUrl());
+                assertEquals(i % 3, link.getDepth());
+                assertEquals(i % 2, link.getAttempts());
+            }
+            assertNull(frontier.poll());
+            assertTrue(frontier.isEmpty());
+        }
+    }
+
+    /*
+    interleaves offers and polls of frontiers sharing a store, and compares each to an in-memory queue
+     */
+    @Test
+    public void sharedStoreKeepsEachFrontierInOrder() throws Exception {
+        Random random = new Random(0L);
+        try (SpillStore store = newStore(8, 1024)) {
+            SpillingFrontier[] frontiers = new SpillingFrontier[5];
+            List<Queue<String>> expected = new ArrayList<>();
+            for (int i = 0; i < frontiers.length; i++) {
+                frontiers[i] = new SpillingFrontier(store);
+                expected.add(new ArrayDeque<>());
+            }
+            for (int step = 0; step < 20_000; step++) {
+                int i = random.nextInt(frontiers.length);
+                if (random.nextInt(10) < 6) {
+                    String url = "http://example.com/" + i + "/" + step;
+                    frontiers[i].offer(new Link(url, 0));
+                    frontiers[i].flush();
+                    expected.get(i).add(url);
+                } else {
+                    Link link = frontiers[i].poll();
+                    frontiers[i].flush();
+                    assertEquals(expected.get(i).poll(), (link == null) ? null : link.getUrl());
+                }
+                assertTrue(store.getHeld() <= 8);
+            }
+            for (int i = 0; i < frontiers.length; i++) {
+                assertEquals(expected.get(i).size(), frontiers[i].size());
+                Link link;
+                while ((link = frontiers[i].poll()) != null) {
+                    frontiers[i].flush();
+                    assertEquals(expected.get(i).poll(), link.getUrl());
+                }
+                assertTrue(expected.get(i).isEmpty());
+            }
+            assertEquals(0L, store.getSpilled());
+            // only the segment still being appended to is kept once everything has been read back
+            assertTrue(store.getSegmentCount() <= 1);
+        }
+        File[] files = folder.getRoot().listFiles();
+        assertEquals(0, files.length);
+    }
+
+    @Test
+    public void readsBackUrlsLongerThanASegment() throws Exception {
+        StringBuilder sb = new StringBuilder("http://example.com/");
+        for (int i = 0; i < 2000; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        String url = sb.toString();
+        try (SpillStore store = newStore(0, 64)) {
+            SpillingFrontier frontier = new SpillingFrontier(store);
+            // a block of its own, which is handed out from memory
+            String first = "http://example.com/first-block-of-the-frontier-xxxxxxxxxxxxxxxx";
+            frontier.offer(new Link(first, 1));
+            frontier.offer(new Link(url, 1));
+            frontier.offer(new Link("http://example.com/short", 1));
+            frontier.flush();
+            assertEquals(1L, store.getSpilled());
+            assertEquals(first, frontier.poll().getUrl());
+            assertNull(frontier.poll());
+            frontier.flush();
+            assertEquals(url, frontier.poll().getUrl());
+            assertEquals("http://example.com/short", frontier.poll().getUrl());
+        }
+    }
+
+    @Test
+    public void deletesSegmentsOnceDrained() throws Exception {
+        try (SpillStore store = newStore(0, 128)) {
+            SpillingFrontier frontier = new SpillingFrontier(store);
+            for (int i = 0; i < 100; i++) {
+                frontier.offer(new Link("http://example.com/" + i, 0));
+            }
+            frontier.flush();
+            int segments = store.getSegmentCount();
+            assertTrue(10 < segments);
+            for (int i = 0; i < 50; i++) {
+                frontier.poll();
+                frontier.flush();
+            }
+            assertTrue(store.getSegmentCount() < segments);
+            assertEquals(store.getSegmentCount(), folder.getRoot().listFiles().length);
+        }
+        assertEquals(0, folder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void onlyFlushingWritesAndReadsBackBlocks() throws Exception {
+        try (SpillStore store = newStore(0, 1 << 20)) {
+            SpillingFrontier frontier = new SpillingFrontier(store);
+            int blockSize = store.getBlockSize();
+            int n = 0;
+            // three full blocks, and a partial block
+            while (n < 4 * blockSize / SpillStore.sizeOf(new Link("http://example.com/0000", 0))) {
+                frontier.offer(new Link(String.format("http://example.com/%04d", n++), 0));
+            }
+            assertEquals(0, store.getSegmentCount());
+            assertTrue(frontier.flush());
+            assertFalse(frontier.flush());
+            assertEquals(1, store.getSegmentCount());
+            // the oldest block is handed out from memory, and the newest has yet to be filled
+            long written = store.getSpilled();
+            assertTrue((0 < written) && (written < n));
+            int i = 0;
+            Link link;
+            while ((link = frontier.poll()) != null) {
+                assertEquals(String.format("http://example.com/%04d", i++), link.getUrl());
+            }
+            // the next links have been written to disk
+            assertEquals(n - i, frontier.size());
+            assertNull(frontier.peek());
+            assertTrue(frontier.flush());
+            while ((link = frontier.poll()) != null) {
+                assertEquals(String.format("http://example.com/%04d", i++), link.getUrl());
+                frontier.flush();
+            }
+            assertEquals(n, i);
+            assertTrue(frontier.isEmpty());
+            assertEquals(0L, store.getSpilled());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.wnebyte.crawler.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class UrlViewTest {
+
+    private static String canonicalize(final String url) {
+        return Urls.canonicalize(url);
+    }
+
+    private static boolean isInDomain(final String url, final String domain) {
+        UrlView view = new UrlView();
+        return view.parse(url) && view.isInDomain(domain);
+    }
+
+    @Test
+    public void lowerCasesSchemeAndHostOnly() {
+        assertEquals("http://example.com/Path/To?Q=A", canonicalize("HTTP://Example.COM/Path/To?Q=A"));
+    }
+
+    @Test
+    public void removesDefaultPorts() {
+        assertEquals("http://example.com/x", canonicalize("http://example.com:80/x"));
+        assertEquals("https://example.com/x", canonicalize("https://example.com:443/x"));
+        assertEquals("http://example.com:443/x", canonicalize("http://example.com:443/x"));
+        assertEquals("https://example.com:8443/x", canonicalize("https://example.com:8443/x"));
+    }
+
+    @Test
+    public void removesEmptyPorts() {
+        assertEquals("http://a.com/x", canonicalize("http://a.com:/x"));
+        assertEquals("http://a.com/", canonicalize("http://a.com:"));
+        UrlView view = new UrlView();
+        assertTrue(view.parse("http://a.com:/x"));
+        assertEquals("a.com", view.getHost());
+        assertEquals(-1, view.getPort());
+    }
+
+    @Test
+    public void replacesEmptyPathsAndRemovesEmptyQueries() {
+        assertEquals("http://example.com/", canonicalize("http://example.com"));
+        assertEquals("http://example.com/", canonicalize("http://example.com?"));
+        assertEquals("http://example.com/x", canonicalize("http://example.com/x?"));
+        assertEquals("http://example.com/?a=1", canonicalize("http://example.com?a=1"));
+    }
+
+    @Test
+    public void removesFragments() {
+        assertEquals("http://example.com/x", canonicalize("http://example.com/x#top"));
+        assertEquals("http://example.com/", canonicalize("http://example.com#top"));
+        assertEquals("http://example.com/x?a=1", canonicalize("http://example.com/x?a=1#b?c=2"));
+        // a '?' within the fragment does not start a query
+        assertEquals("http://example.com/x", canonicalize("http://example.com/x#a?b=1"));
+    }
+
+    @Test
+    public void ordersParametersByNameStably() {
+        assertEquals("http://example.com/?a=2&a=1&b=1", canonicalize("http://example.com/?b=1&a=2&a=1"));
+        assertEquals("http://example.com/?a&b=1", canonicalize("http://example.com/?b=1&&a&"));
+        assertEquals(canonicalize("http://example.com/?b=1&a=1"), canonicalize("http://example.com/?a=1&b=1"));
+    }
+
+    @Test
+    public void returnsCanonicalUrlsAsIs() {
+        String url = "http://example.com:8080/x?a=1&b=2";
+        assertSame(url, canonicalize(url));
+    }
+
+    @Test
+    public void rejectsUrlsWithoutAnAuthorityOrWithAMalformedPort() {
+        assertNull(canonicalize("example.com/x"));
+        assertNull(canonicalize("mailto:someone@example.com"));
+        assertNull(canonicalize("http:///x"));
+        assertNull(canonicalize("http://example.com:8o/x"));
+        assertNull(canonicalize("http://example.com:65536/x"));
+    }
+
+    @Test
+    public void matchesDomainsOnLabelBoundaries() {
+        assertTrue(isInDomain("http://example.com/", "example.com"));
+        assertTrue(isInDomain("http://www.Example.com/", "example.com"));
+        assertTrue(isInDomain("http://www.example.com./", "example.com"));
+        assertTrue(isInDomain("http://user@www.example.com:8080/", "example.com"));
+        assertFalse(isInDomain("http://evilexample.com/", "example.com"));
+        assertFalse(isInDomain("http://example.com.evil.net/", "example.com"));
+        assertFalse(isInDomain("http://example.org/", "example.com"));
+        assertFalse(isInDomain("http://evil.net/?example.com", "example.com"));
+    }
+
+    @Test
+    public void registrableDomainsOfHosts() {
+        assertEquals("example.com", Urls.getRegistrableDomain("www.example.com"));
+        assertEquals("example.com", Urls.getRegistrableDomain("a.b.Example.COM."));
+        assertEquals("example.co.uk", Urls.getRegistrableDomain("www.example.co.uk"));
+        assertEquals("example.com.au", Urls.getRegistrableDomain("shop.example.com.au"));
+        assertEquals("co.uk", Urls.getRegistrableDomain("co.uk"));
+        // a three-letter top-level domain has no second-level labels
+        assertEquals("co.net", Urls.getRegistrableDomain("www.co.net"));
+        assertEquals("192.168.0.1", Urls.getRegistrableDomain("192.168.0.1"));
+        assertEquals("[::1]", Urls.getRegistrableDomain("[::1]"));
+        assertEquals("localhost", Urls.getRegistrableDomain("localhost"));
+        assertEquals("example.com", Urls.getDomainName("http://www.example.com:8080/x"));
+    }
+}